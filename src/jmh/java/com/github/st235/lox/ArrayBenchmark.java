@@ -0,0 +1,77 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores numbers and sums them up, either in a chain of instances linked by fields
+ * or in an array, which keeps them unboxed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayBenchmark {
+
+    private static final String LINKED = """
+            class Node {
+                init(value, next) {
+                    this.value = value;
+                    this.next = next;
+                }
+            }
+            var head = nil;
+            for (var i = 0; i < 100000; i = i + 1) head = Node(i * 0.5, head);
+            var sum = 0;
+            var node = head;
+            while (node != nil) {
+                sum = sum + node.value;
+                node = node.next;
+            }
+            print sum;
+            """;
+
+    private static final String ARRAY = """
+            var values = array();
+            for (var i = 0; i < 100000; i = i + 1) push(values, i * 0.5);
+            var sum = 0;
+            for (var i = 0; i < length(values); i = i + 1) sum = sum + values[i];
+            print sum;
+            """;
+
+    @Param({"LINKED", "ARRAY"})
+    public String storage;
+
+    private List<Stmt> statements;
+    private Resolution resolution;
+
+    @Setup
+    public void setUp() {
+        String script = storage.equals("ARRAY") ? ARRAY : LINKED;
+        statements = new Parser(new Scanner(script).scan()).parse();
+        resolution = new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream());
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+}
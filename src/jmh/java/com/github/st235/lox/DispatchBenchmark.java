@@ -0,0 +1,73 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs loops, recursive calls and method calls with either way
+ * of dispatching nodes in the {@link Interpreter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final String SCRIPT = """
+            fun fib(n) {
+                if (n < 2) return n;
+                return fib(n - 1) + fib(n - 2);
+            }
+
+            class Counter {
+                init() { this.count = 0; }
+                add(value) { this.count = this.count + value; }
+            }
+
+            var counter = Counter();
+            var sum = 0;
+            for (var i = 0; i < 20000; i = i + 1) {
+                if (i / 2 > 10 and i != 15) {
+                    sum = sum + i * 2 - 1;
+                }
+                counter.add(i);
+            }
+            print fib(18) + sum + counter.count;
+            """;
+
+    // Names of Interpreter.Dispatch, the enum itself is not visible to the generated code.
+    @Param({"SWITCH", "VISITOR"})
+    public String dispatch;
+
+    private List<Stmt> statements;
+    private Resolution resolution;
+
+    @Setup
+    public void setUp() {
+        statements = new Parser(new Scanner(SCRIPT).scan()).parse();
+        resolution = new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream(), Interpreter.Dispatch.valueOf(dispatch));
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+}
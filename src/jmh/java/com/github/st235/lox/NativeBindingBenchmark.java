@@ -0,0 +1,87 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls native functions written as subclasses of {@link NativeFunction}, which take a list,
+ * or bound from static methods by {@link NativeBinding}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeBindingBenchmark {
+
+    private static final String SCRIPT = """
+            var sum = 0;
+            for (var i = 0; i < 100000; i = i + 1) {
+                sum = sum + mod(floor(i / 3), 7);
+            }
+            print sum;
+            """;
+
+    public static final class Maths implements NativeLibrary {
+
+        @LoxNative
+        public static double floor(double value) {
+            return Math.floor(value);
+        }
+
+        @LoxNative
+        public static double mod(double value, double divisor) {
+            return value % divisor;
+        }
+    }
+
+    @Param({"LIST", "BOUND"})
+    public String natives;
+
+    private List<Stmt> statements;
+    private Resolution resolution;
+
+    @Setup
+    public void setUp() {
+        statements = new Parser(new Scanner(SCRIPT).scan()).parse();
+        resolution = new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream());
+        if (natives.equals("BOUND")) {
+            interpreter.addFunctions(Maths.class);
+        } else {
+            interpreter.addFunction(new NativeFunction("floor", 1) {
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return Math.floor((double) arguments.get(0));
+                }
+            });
+            interpreter.addFunction(new NativeFunction("mod", 2) {
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return (double) arguments.get(0) % (double) arguments.get(1);
+                }
+            });
+        }
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the numbers of a report, counters and amounts of money, into text
+ * either through {@link Double#toString(double)} or through {@link NumberFormatter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberFormatterBenchmark {
+
+    private final double[] numbers = new double[1024];
+    private final char[] text = new char[NumberFormatter.MAX_LENGTH];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = i % 2 == 0 ? random.nextInt(100_000) : random.nextInt(10_000_000) / 100.0;
+        }
+    }
+
+    @Benchmark
+    public void doubleToString(Blackhole blackhole) {
+        for (double number: numbers) {
+            String value = Double.toString(number);
+            if (value.endsWith(".0")) {
+                value = value.substring(0, value.length() - 2);
+            }
+            blackhole.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void numberFormatter(Blackhole blackhole) {
+        for (double number: numbers) {
+            blackhole.consume(NumberFormatter.format(number, false, text));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a generated script made of many top-level functions and classes,
+ * one by one and on the fork/join pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelResolverBenchmark {
+
+    @Param({"false", "true"})
+    public boolean resolveFunctionsInParallel;
+
+    @Param({"2000"})
+    public int functions;
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            script.append("fun f").append(i).append("(a, b) {\n");
+            for (int j = 0; j < 20; j++) {
+                script.append("var v").append(j).append(" = a * b + ").append(j).append(";\n");
+                script.append("if (v").append(j).append(" > a) { var w = v").append(j).append(" - b; a = w; }\n");
+            }
+            script.append("return a;\n}\n");
+            script.append("class C").append(i).append(" {\n");
+            script.append("init(x) { this.x = x; }\n");
+            script.append("get() { var y = this.x; fun twice() { return y + y; } return twice(); }\n");
+            script.append("}\n");
+        }
+
+        statements = new Parser(new Scanner(script.toString()).scan()).parse();
+    }
+
+    @Benchmark
+    public Resolution resolve() {
+        return new Resolver(resolveFunctionsInParallel).resolve(statements);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares expression parsing strategies on a generated, expression-heavy script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    // Names of Parser.ExpressionParser, the enum itself is not visible to the generated code.
+    @Param({"PRATT", "RECURSIVE_DESCENT"})
+    public String expressionParser;
+
+    @Param({"20000"})
+    public int lines;
+
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            switch (i % 4) {
+                case 0 -> script.append("var v").append(i).append(" = 1;\n");
+                case 1 -> script.append("v").append(i - 1).append(" = a * (b + ").append(i)
+                        .append(") - c / d >= e or !f and g == -h;\n");
+                case 2 -> script.append("print object.field.method(1, \"two\", x + y * z).other;\n");
+                default -> script.append("if (a < b and c != d) print a + b + c + d + e + f + g + h;\n");
+            }
+        }
+        tokens = new Scanner(script.toString()).scan();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens.iterator(), false, Parser.ExpressionParser.valueOf(expressionParser)).parse();
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves generated code where every block is nested into the previous one
+ * and keeps referring to variables declared at the outermost levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xss16m")
+public class ResolverBenchmark {
+
+    @Param({"100", "200", "400", "800"})
+    public int depth;
+
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        StringBuilder script = new StringBuilder("fun outer(p0) {\n");
+        for (int i = 1; i <= depth; i++) {
+            script.append("var v").append(i).append(" = p0 + v").append(i - 1 == 0 ? "1" : i - 1).append(";\n");
+            script.append("fun f").append(i).append("(p").append(i).append(") {\n");
+            script.append("print p0 + p").append(i).append(" + v1 + v").append(i).append(";\n");
+        }
+        for (int i = 1; i <= depth; i++) {
+            script.append("}\n");
+        }
+        script.append("}\n");
+
+        statements = new Parser(new Scanner(script.toString()).scan()).parse();
+    }
+
+    @Benchmark
+    public Resolution resolve() {
+        return new Resolver().resolve(statements);
+    }
+}
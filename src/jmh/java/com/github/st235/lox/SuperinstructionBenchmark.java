@@ -0,0 +1,74 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs counting loops and field reads on the {@link VirtualMachine},
+ * compiled with and without superinstructions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuperinstructionBenchmark {
+
+    private static final String SCRIPT = """
+            class Box {
+                init(value) { this.value = value; }
+                twice() { return this.value + this.value; }
+            }
+
+            fun run(n) {
+                var box = Box(1);
+                var sum = 0;
+                var i = 0;
+                while (i < n) {
+                    sum = sum + box.twice();
+                    i = i + 1;
+                }
+                var j = 0;
+                while (j < sum) {
+                    j = j + 4;
+                }
+                return j;
+            }
+            var result = run(50000);
+            print result;
+            """;
+
+    @Param({"true", "false"})
+    public boolean fusesInstructions;
+
+    private Image image;
+
+    @Setup
+    public void setUp() {
+        List<Stmt> statements = new Parser(new Scanner(SCRIPT).scan()).parse();
+        byte[] bytes = BytecodeCompiler.compile(statements, new Resolver().resolve(statements), fusesInstructions);
+        image = Image.load(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public Interpreter run() {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream());
+        interpreter.interpret(image);
+        return interpreter;
+    }
+}
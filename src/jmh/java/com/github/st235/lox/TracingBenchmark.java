@@ -0,0 +1,96 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs hot loops with numeric work, branches and calls either interpreted
+ * or replaced with {@link Trace traces}, which are recorded in the run
+ * or specialised for a profile of an earlier run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingBenchmark {
+
+    private static final String SCRIPT = """
+            fun square(x) { return x * x; }
+
+            fun sumOfSquares(limit) {
+                var sum = 0;
+                for (var i = 0; i < limit; i = i + 1) {
+                    if (i / 2 > 10 and i != 15) {
+                        sum = sum + square(i) - 1;
+                    } else {
+                        sum = sum - i;
+                    }
+                }
+                return sum;
+            }
+
+            var total = 0;
+            for (var j = 0; j < 10; j = j + 1) {
+                total = total + sumOfSquares(5000);
+            }
+            print total;
+            """;
+
+    @Param({"NONE", "RECORDED", "PROFILED"})
+    public String tracing;
+
+    private List<Stmt> statements;
+    private Resolution resolution;
+    private Map<Expr, Tracing.Observation> profile;
+
+    @Setup
+    public void setUp() {
+        statements = new Parser(new Scanner(SCRIPT).scan()).parse();
+        resolution = new Resolver().resolve(statements);
+
+        // Goes through the file format, so no values of the recording run leak into the profile.
+        Tracing recording = Tracing.recordingEverything();
+        newInterpreter(recording).interpret(statements);
+        byte[] hash = ProgramCache.hash(ByteBuffer.wrap(SCRIPT.getBytes(StandardCharsets.UTF_8)));
+        profile = ProfileReader.read(
+                ByteBuffer.wrap(ProfileWriter.write(hash, statements, recording.observations())), hash, statements);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        Interpreter interpreter = switch (tracing) {
+            case "RECORDED" -> newInterpreter(new Tracing());
+            case "PROFILED" -> newInterpreter(new Tracing(profile));
+            default -> newInterpreter(null);
+        };
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+
+    private Interpreter newInterpreter(Tracing tracing) {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream());
+        if (tracing != null) {
+            interpreter.enableTracing(tracing);
+        }
+        interpreter.resolve(resolution);
+        return interpreter;
+    }
+}
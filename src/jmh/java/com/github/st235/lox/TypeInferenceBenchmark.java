@@ -0,0 +1,67 @@
+package com.github.st235.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs numeric code in locals with operands either checked at runtime
+ * or proven to be numbers by {@link TypeInference}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeInferenceBenchmark {
+
+    private static final String SCRIPT = """
+            fun integrate(steps) {
+                var sum = 0;
+                var width = 1 / steps;
+                for (var i = 0; i < steps; i = i + 1) {
+                    var x = (i + 0.5) * width;
+                    sum = sum + 4 / (1 + x * x) * width;
+                }
+                return sum;
+            }
+
+            print integrate(50000);
+            """;
+
+    @Param({"false", "true"})
+    public boolean infersTypes;
+
+    private List<Stmt> statements;
+    private Resolution resolution;
+
+    @Setup
+    public void setUp() {
+        statements = new Parser(new Scanner(SCRIPT).scan()).parse();
+        resolution = new Resolver().resolve(statements);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        Interpreter interpreter = new Interpreter(OutputStream.nullOutputStream());
+        if (!infersTypes) {
+            interpreter.disableTypeInference();
+        }
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+        return interpreter;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.st235.lox;
+
+/**
+ * Native functions, which create and resize {@link LoxArray arrays}.
+ * Elements are read and written by indexing, as in {@code values[i] = values[i - 1]}.
+ */
+final class ArrayFunctions {
+
+    private ArrayFunctions() {
+    }
+
+    @LoxNative
+    public static LoxArray array() {
+        return new LoxArray();
+    }
+
+    @LoxNative
+    public static LoxArray filled(double length, Object value) {
+        if (length < 0 || length > Integer.MAX_VALUE || length != Math.floor(length)) {
+            throw new NativeError("Length of an array must be a non-negative integer.");
+        }
+        return LoxArray.filled((int) length, value);
+    }
+
+    @LoxNative
+    public static double length(LoxArray array) {
+        return array.size();
+    }
+
+    @LoxNative
+    public static void push(LoxArray array, Object value) {
+        array.push(value);
+    }
+
+    @LoxNative
+    public static Object pop(LoxArray array) {
+        return array.pop();
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.st235.lox.AstWriter.*;
+
+/**
+ * Reads statements written by {@link AstWriter}.
+ */
+final class AstReader {
+
+    private static final Token.Type[] TOKEN_TYPES = Token.Type.values();
+
+    @NotNull
+    private final ByteBuffer buffer;
+    @NotNull
+    private final String[] strings;
+
+    @NotNull
+    private final Map<Expr, Integer> depths = new HashMap<>();
+    @NotNull
+    private final Map<Stmt.Import, Path> imports = new HashMap<>();
+
+    private int line = 0;
+
+    private AstReader(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a Lox syntax tree.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported version %d, expected %d.", version, VERSION));
+        }
+
+        strings = new String[readVarInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads statements starting at the position of the buffer.
+     *
+     * @throws IllegalArgumentException or {@link java.nio.BufferUnderflowException}
+     * if the buffer does not hold statements of the current {@link AstWriter#VERSION}.
+     */
+    @NotNull
+    static Program read(@NotNull ByteBuffer buffer) {
+        AstReader reader = new AstReader(buffer);
+        List<Stmt> statements = reader.readStatements();
+        return new Program(statements, new Resolution(reader.depths, List.of(), reader.imports, List.of()));
+    }
+
+    @NotNull
+    private List<Stmt> readStatements() {
+        int size = readVarInt();
+        List<Stmt> statements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            statements.add(readStatement());
+        }
+        return statements;
+    }
+
+    @NotNull
+    private List<Expr> readExpressions() {
+        int size = readVarInt();
+        List<Expr> expressions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private int @NotNull [] readNames() {
+        int[] names = new int[readVarInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = readName();
+        }
+        return names;
+    }
+
+    @Nullable
+    private Stmt readStatement() {
+        byte tag = buffer.get();
+        if (tag == NULL) {
+            return null;
+        }
+        int line = readLine();
+        return switch (tag) {
+            case EXPRESSION -> new Stmt.Expression(line, readExpression());
+            case PRINT -> new Stmt.Print(line, readExpression());
+            case VAR -> new Stmt.Var(line, readName(), readExpression());
+            case BLOCK -> new Stmt.Block(line, readStatements());
+            case IF -> new Stmt.If(line, readExpression(), readStatement(), readStatement());
+            case WHILE -> new Stmt.While(line, readExpression(), readStatement());
+            case FUNCTION -> readFunction(line);
+            case RETURN -> new Stmt.Return(line, readExpression());
+            case CLASS -> {
+                int name = readName();
+                Expr.Variable superclass = (Expr.Variable) readExpression();
+                int size = readVarInt();
+                List<Stmt.Function> methods = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    if (buffer.get() != FUNCTION) {
+                        throw new IllegalArgumentException("Expected a method.");
+                    }
+                    methods.add(readFunction(readLine()));
+                }
+                yield new Stmt.Class(line, name, superclass, methods);
+            }
+            case IMPORT -> {
+                Stmt.Import node = new Stmt.Import(line, readString());
+                String module = readString();
+                if (!module.isEmpty()) {
+                    imports.put(node, Path.of(module));
+                }
+                yield node;
+            }
+            default -> throw new IllegalArgumentException(String.format("Unknown statement %d.", tag));
+        };
+    }
+
+    @NotNull
+    private Stmt.Function readFunction(int line) {
+        return new Stmt.Function(line, readName(), readNames(), readStatements());
+    }
+
+    @Nullable
+    private Expr readExpression() {
+        byte tag = buffer.get();
+        if (tag == NULL) {
+            return null;
+        }
+        int line = readLine();
+        return switch (tag) {
+            case BINARY -> new Expr.Binary(line, readExpression(), readOperator(), readExpression());
+            case GROUPING -> new Expr.Grouping(line, readExpression());
+            case LITERAL -> new Expr.Literal(line, readValue());
+            case UNARY -> new Expr.Unary(line, readOperator(), readExpression());
+            case VARIABLE -> readDepth(new Expr.Variable(line, readName()));
+            case ASSIGN -> readDepth(new Expr.Assign(line, readName(), readExpression()));
+            case LOGICAL -> new Expr.Logical(line, readExpression(), readOperator(), readExpression());
+            case CALL -> new Expr.Call(line, readExpression(), readExpressions());
+            case GET -> new Expr.Get(line, readExpression(), readName());
+            case SET -> new Expr.Set(line, readExpression(), readName(), readExpression());
+            case THIS -> readDepth(new Expr.This(line));
+            case SUPER -> readDepth(new Expr.Super(line, readName()));
+            case INDEX -> new Expr.Index(line, readExpression(), readExpression());
+            case INDEX_SET -> new Expr.IndexSet(line, readExpression(), readExpression(), readExpression());
+            default -> throw new IllegalArgumentException(String.format("Unknown expression %d.", tag));
+        };
+    }
+
+    @NotNull
+    private Expr readDepth(@NotNull Expr expression) {
+        int depth = readVarInt();
+        if (depth > 0) {
+            depths.put(expression, depth - 1);
+        }
+        return expression;
+    }
+
+    private int readLine() {
+        int delta = readVarInt();
+        line += (delta >>> 1) ^ -(delta & 1);
+        return line;
+    }
+
+    @NotNull
+    private Token.Type readOperator() {
+        return TOKEN_TYPES[buffer.get() & 0xFF];
+    }
+
+    private int readName() {
+        return Names.idOf(readString());
+    }
+
+    @Nullable
+    private Object readValue() {
+        byte tag = buffer.get();
+        return switch (tag) {
+            case NIL_VALUE -> null;
+            case FALSE_VALUE -> false;
+            case TRUE_VALUE -> true;
+            case NUMBER_VALUE -> buffer.getDouble();
+            case STRING_VALUE -> readString();
+            default -> throw new IllegalArgumentException(String.format("Unknown value %d.", tag));
+        };
+    }
+
+    @NotNull
+    private String readString() {
+        return strings[readVarInt()];
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte part = buffer.get();
+            value |= (part & 0x7F) << shift;
+            if (part >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed number.");
+    }
+}
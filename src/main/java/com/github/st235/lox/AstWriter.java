@@ -0,0 +1,416 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes resolved statements in a compact binary form, which {@link AstReader} reads back.
+ *
+ * <p>The layout is:
+ * <pre>
+ * magic: int, version: short,
+ * strings: varint count, then every string as varint length and UTF-8 bytes,
+ * statements: varint count, then every statement as a tree in pre-order.
+ * </pre>
+ * Every node starts with a tag byte and its line, written as the difference with
+ * the line of the previous node, followed by its fields in their order. Operators
+ * are written as the ordinal of their token type. Names, paths and string literals
+ * are kept once in the string table and referred to by index.
+ * Variables, assignments, {@code this} and {@code super} carry their resolved depth
+ * and imports carry the path of the module, so no resolution is needed after reading.
+ */
+final class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    static final int MAGIC = 0x4C4F5841;
+    // Has to change every time nodes, tokens or the layout change.
+    static final short VERSION = 3;
+
+    // Tags of nodes, 0 stands for a missing node.
+    static final byte NULL = 0;
+    static final byte BINARY = 1;
+    static final byte GROUPING = 2;
+    static final byte LITERAL = 3;
+    static final byte UNARY = 4;
+    static final byte VARIABLE = 5;
+    static final byte ASSIGN = 6;
+    static final byte LOGICAL = 7;
+    static final byte CALL = 8;
+    static final byte GET = 9;
+    static final byte SET = 10;
+    static final byte THIS = 11;
+    static final byte SUPER = 12;
+    static final byte EXPRESSION = 13;
+    static final byte PRINT = 14;
+    static final byte VAR = 15;
+    static final byte BLOCK = 16;
+    static final byte IF = 17;
+    static final byte WHILE = 18;
+    static final byte FUNCTION = 19;
+    static final byte RETURN = 20;
+    static final byte CLASS = 21;
+    static final byte IMPORT = 22;
+    static final byte INDEX = 23;
+    static final byte INDEX_SET = 24;
+
+    // Tags of literal values.
+    static final byte NIL_VALUE = 0;
+    static final byte FALSE_VALUE = 1;
+    static final byte TRUE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+
+    @NotNull
+    private final Resolution resolution;
+
+    @NotNull
+    private final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+    @NotNull
+    private final DataOutputStream out = new DataOutputStream(tree);
+
+    @NotNull
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    @NotNull
+    private final List<String> strings = new ArrayList<>();
+
+    private int line = 0;
+
+    private AstWriter(@NotNull Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * @param statements resolved without errors and parsed eagerly,
+     *                   lazy function bodies cannot be written.
+     */
+    static byte @NotNull [] write(@NotNull List<Stmt> statements,
+                                  @NotNull Resolution resolution) {
+        try {
+            AstWriter writer = new AstWriter(resolution);
+            writer.writeStatements(statements);
+            return writer.toByteArray();
+        } catch (IOException exception) {
+            // Nothing is written anywhere but into memory.
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private byte @NotNull [] toByteArray() throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream(tree.size() + strings.size() * 8 + 16);
+        DataOutputStream header = new DataOutputStream(image);
+
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        writeVarInt(header, strings.size());
+        for (String string: strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(header, bytes.length);
+            header.write(bytes);
+        }
+
+        tree.writeTo(image);
+        return image.toByteArray();
+    }
+
+    private void writeStatements(@NotNull List<? extends Stmt> statements) throws IOException {
+        if (statements instanceof LazyFunctionBody) {
+            throw new IllegalArgumentException("Lazy function bodies cannot be written.");
+        }
+
+        writeVarInt(out, statements.size());
+        for (Stmt statement: statements) {
+            write(statement);
+        }
+    }
+
+    private void writeExpressions(@NotNull List<Expr> expressions) throws IOException {
+        writeVarInt(out, expressions.size());
+        for (Expr expression: expressions) {
+            write(expression);
+        }
+    }
+
+    private void write(@Nullable Stmt statement) throws IOException {
+        if (statement == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        statement.visit(this);
+    }
+
+    private void write(@Nullable Expr expression) throws IOException {
+        if (expression == null) {
+            out.writeByte(NULL);
+            return;
+        }
+        expression.visit(this);
+    }
+
+    private void writeLine(int line) throws IOException {
+        int delta = line - this.line;
+        // Zigzag encoding keeps small negative differences short.
+        writeVarInt(out, (delta << 1) ^ (delta >> 31));
+        this.line = line;
+    }
+
+    private void write(@NotNull Token.Type operator) throws IOException {
+        out.writeByte(operator.ordinal());
+    }
+
+    private void writeName(int name) throws IOException {
+        writeString(Names.of(name));
+    }
+
+    private void writeNames(int @NotNull [] names) throws IOException {
+        writeVarInt(out, names.length);
+        for (int name: names) {
+            writeName(name);
+        }
+    }
+
+    private void writeValue(@Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL_VALUE);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof Double number) {
+            out.writeByte(NUMBER_VALUE);
+            out.writeDouble(number);
+        } else if (value instanceof String string) {
+            out.writeByte(STRING_VALUE);
+            writeString(string);
+        } else {
+            throw new IllegalArgumentException(String.format("Cannot write literal %s.", value));
+        }
+    }
+
+    // The depth is shifted by one, so global variables are written as 0.
+    private void writeDepth(@NotNull Expr expression) throws IOException {
+        Integer depth = resolution.depths().get(expression);
+        writeVarInt(out, depth == null ? 0 : depth + 1);
+    }
+
+    private void writeString(@NotNull String string) throws IOException {
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = strings.size();
+            stringIndices.put(string, index);
+            strings.add(string);
+        }
+        writeVarInt(out, index);
+    }
+
+    private static void writeVarInt(@NotNull DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private interface Writing {
+        void run() throws IOException;
+    }
+
+    // Visitors cannot throw checked exceptions, so they are tunnelled through.
+    private Void tag(byte tag, int line, @NotNull Writing writing) {
+        try {
+            out.writeByte(tag);
+            writeLine(line);
+            writing.run();
+            return null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary node) {
+        return tag(BINARY, node.line, () -> {
+            write(node.left);
+            write(node.operator);
+            write(node.right);
+        });
+    }
+
+    @Override
+    public Void visitGrouping(Expr.Grouping node) {
+        return tag(GROUPING, node.line, () -> write(node.expression));
+    }
+
+    @Override
+    public Void visitLiteral(Expr.Literal node) {
+        return tag(LITERAL, node.line, () -> writeValue(node.value));
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary node) {
+        return tag(UNARY, node.line, () -> {
+            write(node.operator);
+            write(node.right);
+        });
+    }
+
+    @Override
+    public Void visitVariable(Expr.Variable node) {
+        return tag(VARIABLE, node.line, () -> {
+            writeName(node.name);
+            writeDepth(node);
+        });
+    }
+
+    @Override
+    public Void visitAssign(Expr.Assign node) {
+        return tag(ASSIGN, node.line, () -> {
+            writeName(node.name);
+            write(node.expression);
+            writeDepth(node);
+        });
+    }
+
+    @Override
+    public Void visitLogical(Expr.Logical node) {
+        return tag(LOGICAL, node.line, () -> {
+            write(node.left);
+            write(node.operator);
+            write(node.right);
+        });
+    }
+
+    @Override
+    public Void visitCall(Expr.Call node) {
+        return tag(CALL, node.line, () -> {
+            write(node.callee);
+            writeExpressions(node.arguments);
+        });
+    }
+
+    @Override
+    public Void visitGet(Expr.Get node) {
+        return tag(GET, node.line, () -> {
+            write(node.object);
+            writeName(node.name);
+        });
+    }
+
+    @Override
+    public Void visitSet(Expr.Set node) {
+        return tag(SET, node.line, () -> {
+            write(node.object);
+            writeName(node.name);
+            write(node.value);
+        });
+    }
+
+    @Override
+    public Void visitIndex(Expr.Index node) {
+        return tag(INDEX, node.line, () -> {
+            write(node.object);
+            write(node.index);
+        });
+    }
+
+    @Override
+    public Void visitIndexSet(Expr.IndexSet node) {
+        return tag(INDEX_SET, node.line, () -> {
+            write(node.object);
+            write(node.index);
+            write(node.value);
+        });
+    }
+
+    @Override
+    public Void visitThis(Expr.This node) {
+        return tag(THIS, node.line, () -> writeDepth(node));
+    }
+
+    @Override
+    public Void visitSuper(Expr.Super node) {
+        return tag(SUPER, node.line, () -> {
+            writeName(node.method);
+            writeDepth(node);
+        });
+    }
+
+    @Override
+    public Void visitExpression(Stmt.Expression node) {
+        return tag(EXPRESSION, node.line, () -> write(node.expression));
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print node) {
+        return tag(PRINT, node.line, () -> write(node.expression));
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var node) {
+        return tag(VAR, node.line, () -> {
+            writeName(node.name);
+            write(node.initializer);
+        });
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block node) {
+        return tag(BLOCK, node.line, () -> writeStatements(node.statements));
+    }
+
+    @Override
+    public Void visitIf(Stmt.If node) {
+        return tag(IF, node.line, () -> {
+            write(node.condition);
+            write(node.thenBranch);
+            write(node.elseBranch);
+        });
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While node) {
+        return tag(WHILE, node.line, () -> {
+            write(node.condition);
+            write(node.body);
+        });
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function node) {
+        return tag(FUNCTION, node.line, () -> {
+            writeName(node.name);
+            writeNames(node.params);
+            writeStatements(node.body);
+        });
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return node) {
+        return tag(RETURN, node.line, () -> write(node.value));
+    }
+
+    @Override
+    public Void visitClass(Stmt.Class node) {
+        return tag(CLASS, node.line, () -> {
+            writeName(node.name);
+            write(node.superclass);
+            writeStatements(node.methods);
+        });
+    }
+
+    @Override
+    public Void visitImport(Stmt.Import node) {
+        return tag(IMPORT, node.line, () -> {
+            writeString(node.path);
+            Path module = resolution.imports().get(node);
+            writeString(module == null ? "" : module.toString());
+        });
+    }
+}
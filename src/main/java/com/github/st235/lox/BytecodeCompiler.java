@@ -0,0 +1,691 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.st235.lox.OpCode.*;
+
+/**
+ * Compiles resolved statements into an {@link Image}.
+ *
+ * <p>Unless told otherwise, the most frequent shapes of code are fused into
+ * superinstructions, see {@link OpCode}: incrementing a local variable by a constant,
+ * comparing a local variable with another one or with a constant, printing a variable
+ * and reading a field of {@code this}. Each of them takes a single dispatch
+ * and keeps the intermediate values off the operand stack.
+ */
+final class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    // Index of the function compiled by compileFunction in its image.
+    static final int FUNCTION_PROTOTYPE = 1;
+
+    /**
+     * Code of a single function, compiled separately from the others.
+     */
+    private static final class FunctionCode {
+
+        @NotNull
+        final String name;
+        @NotNull
+        final int[] params;
+        final boolean isInitialiser;
+
+        // Set for loops replaced on the stack, their returns belong to the interpreted function around them.
+        boolean unwindsReturns = false;
+
+        byte[] code = new byte[64];
+        int size = 0;
+
+        // Pairs of offset and line.
+        int[] lines = new int[16];
+        int linesCount = 0;
+
+        FunctionCode(@NotNull String name, @NotNull int[] params, boolean isInitialiser) {
+            this.name = name;
+            this.params = params;
+            this.isInitialiser = isInitialiser;
+        }
+
+        void ensureCapacity(int bytes) {
+            if (size + bytes > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, size + bytes));
+            }
+        }
+
+        void mark(int line) {
+            if (linesCount > 0 && lines[linesCount * 2 - 1] == line) {
+                return;
+            }
+            if (linesCount * 2 == lines.length) {
+                lines = Arrays.copyOf(lines, lines.length * 2);
+            }
+            lines[linesCount * 2] = size;
+            lines[linesCount * 2 + 1] = line;
+            linesCount++;
+        }
+    }
+
+    @NotNull
+    private final Resolution resolution;
+
+    private final boolean fusesInstructions;
+
+    @NotNull
+    private final List<FunctionCode> functions = new ArrayList<>();
+    @NotNull
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    @NotNull
+    private final List<Object> constants = new ArrayList<>();
+
+    @NotNull
+    private FunctionCode function;
+    private int line = 0;
+
+    private BytecodeCompiler(@NotNull Resolution resolution, boolean fusesInstructions) {
+        this.resolution = resolution;
+        this.fusesInstructions = fusesInstructions;
+        this.function = new FunctionCode("script", new int[0], false);
+        this.functions.add(function);
+    }
+
+    /**
+     * @param statements resolved without errors.
+     * @return bytes of the image, see {@link Image}.
+     */
+    static byte @NotNull [] compile(@NotNull List<Stmt> statements,
+                                    @NotNull Resolution resolution) {
+        return compile(statements, resolution, true);
+    }
+
+    /**
+     * Compiles a single function, which becomes the prototype {@link #FUNCTION_PROTOTYPE} of the image.
+     *
+     * @param resolution has to hold the depths of the function body.
+     */
+    static byte @NotNull [] compileFunction(@NotNull Stmt.Function declaration,
+                                            boolean isInitialiser,
+                                            @NotNull Resolution resolution) {
+        BytecodeCompiler compiler = new BytecodeCompiler(resolution, true);
+        compiler.emit(NIL);
+        compiler.emit(RETURN);
+        compiler.compileFunction(declaration, isInitialiser);
+        return compiler.toByteArray();
+    }
+
+    /**
+     * Compiles a loop into the script of the image, so the loop can continue in the environment
+     * where the interpreter has been running it. Its {@code return} statements
+     * throw {@link Return} to leave the interpreted function around the loop.
+     *
+     * @param resolution has to hold the depths of the loop.
+     */
+    static byte @NotNull [] compileLoop(@NotNull Stmt.While loop,
+                                        @NotNull Resolution resolution) {
+        BytecodeCompiler compiler = new BytecodeCompiler(resolution, true);
+        compiler.function.unwindsReturns = true;
+        loop.visit(compiler);
+        compiler.emit(NIL);
+        compiler.emit(RETURN);
+        return compiler.toByteArray();
+    }
+
+    /**
+     * @param fusesInstructions emits superinstructions where possible.
+     */
+    static byte @NotNull [] compile(@NotNull List<Stmt> statements,
+                                    @NotNull Resolution resolution,
+                                    boolean fusesInstructions) {
+        BytecodeCompiler compiler = new BytecodeCompiler(resolution, fusesInstructions);
+        compiler.compileAll(statements);
+        compiler.emit(NIL);
+        compiler.emit(RETURN);
+        return compiler.toByteArray();
+    }
+
+    private byte @NotNull [] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream image = new DataOutputStream(bytes);
+
+            image.writeInt(Image.MAGIC);
+            image.writeShort(Image.VERSION);
+
+            // Names of functions and parameters are constants too.
+            int[] names = new int[functions.size()];
+            int[][] params = new int[functions.size()][];
+            for (int i = 0; i < functions.size(); i++) {
+                FunctionCode code = functions.get(i);
+                names[i] = constant(code.name);
+                params[i] = Arrays.stream(code.params).map(param -> constant(Names.of(param))).toArray();
+            }
+
+            image.writeInt(constants.size());
+            for (Object constant: constants) {
+                if (constant instanceof Double number) {
+                    image.writeByte(Image.NUMBER_CONSTANT);
+                    image.writeDouble(number);
+                } else {
+                    byte[] string = ((String) constant).getBytes(StandardCharsets.UTF_8);
+                    image.writeByte(Image.STRING_CONSTANT);
+                    image.writeInt(string.length);
+                    image.write(string);
+                }
+            }
+
+            image.writeInt(functions.size());
+            int codeOffset = 0;
+            int linesStart = 0;
+            for (int i = 0; i < functions.size(); i++) {
+                FunctionCode code = functions.get(i);
+                image.writeInt(names[i]);
+                image.writeByte(code.isInitialiser ? Image.INITIALISER_FLAG : 0);
+                image.writeShort(params[i].length);
+                for (int param: params[i]) {
+                    image.writeInt(param);
+                }
+                image.writeInt(codeOffset);
+                image.writeInt(linesStart);
+                image.writeInt(code.linesCount);
+                codeOffset += code.size;
+                linesStart += code.linesCount;
+            }
+
+            image.writeInt(codeOffset);
+            for (FunctionCode code: functions) {
+                image.write(code.code, 0, code.size);
+            }
+
+            image.writeInt(linesStart);
+            for (FunctionCode code: functions) {
+                for (int i = 0; i < code.linesCount * 2; i++) {
+                    image.writeInt(code.lines[i]);
+                }
+            }
+
+            return bytes.toByteArray();
+        } catch (IOException exception) {
+            // Nothing is written anywhere but into memory.
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void compileAll(@NotNull List<? extends Stmt> statements) {
+        for (Stmt statement: statements) {
+            statement.visit(this);
+        }
+    }
+
+    private void compile(@NotNull Expr expression) {
+        expression.visit(this);
+    }
+
+    private int constant(@NotNull Object value) {
+        Integer index = constantIndices.get(value);
+        if (index == null) {
+            index = constants.size();
+            constantIndices.put(value, index);
+            constants.add(value);
+        }
+        return index;
+    }
+
+    // Following instructions report errors at the line.
+    private void at(int line) {
+        this.line = line;
+    }
+
+    private void emit(byte opCode) {
+        function.mark(line);
+        function.ensureCapacity(1);
+        function.code[function.size++] = opCode;
+    }
+
+    private void emitByte(int value) {
+        function.ensureCapacity(1);
+        function.code[function.size++] = (byte) value;
+    }
+
+    private void emitShort(int value) {
+        if (value > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("%d does not fit an instruction.", value));
+        }
+        function.ensureCapacity(2);
+        function.code[function.size++] = (byte) (value >>> 8);
+        function.code[function.size++] = (byte) value;
+    }
+
+    private void emitInt(int value) {
+        function.ensureCapacity(4);
+        patchInt(function.size, value);
+        function.size += 4;
+    }
+
+    private void patchInt(int offset, int value) {
+        function.code[offset] = (byte) (value >>> 24);
+        function.code[offset + 1] = (byte) (value >>> 16);
+        function.code[offset + 2] = (byte) (value >>> 8);
+        function.code[offset + 3] = (byte) value;
+    }
+
+    private void emit(byte opCode, @NotNull String name) {
+        emit(opCode);
+        emitInt(constant(name));
+    }
+
+    /**
+     * @return offset of the target, to {@link #patchJump(int) patch} it once it is known.
+     */
+    private int emitJump(byte opCode) {
+        emit(opCode);
+        emitInt(-1);
+        return function.size - 4;
+    }
+
+    private void patchJump(int jump) {
+        patchInt(jump, function.size);
+    }
+
+    private void emitLoop(int start) {
+        emit(JUMP);
+        emitInt(start);
+    }
+
+    private void emitVariable(@NotNull Expr expression, @NotNull String name, boolean isAssignment) {
+        at(expression.line);
+        Integer depth = resolution.depths().get(expression);
+        if (depth == null) {
+            emit(isAssignment ? SET_GLOBAL : GET_GLOBAL, name);
+        } else {
+            emit(isAssignment ? SET_LOCAL : GET_LOCAL);
+            emitShort(depth);
+            emitInt(constant(name));
+        }
+    }
+
+    /**
+     * @return depth of the variable if the expression reads a local one, {@code null} otherwise.
+     */
+    @Nullable
+    private Integer localDepth(@Nullable Expr expression) {
+        if (!fusesInstructions || !(expression instanceof Expr.Variable)) {
+            return null;
+        }
+        return resolution.depths().get(expression);
+    }
+
+    @Nullable
+    private static Double numberConstant(@Nullable Expr expression) {
+        if (expression instanceof Expr.Literal literal && literal.value instanceof Double number) {
+            return number;
+        }
+        return null;
+    }
+
+    private void emitLocal(int depth, int name) {
+        emitShort(depth);
+        emitInt(constant(Names.of(name)));
+    }
+
+    // Fuses x = x + c, where x is a local variable and c is a number.
+    private boolean compileAddLocalConstant(@NotNull Expr.Assign node) {
+        if (!(node.expression instanceof Expr.Binary binary) || binary.operator != Token.Type.PLUS) {
+            return false;
+        }
+
+        Integer depth = localDepth(binary.left);
+        Double constant = numberConstant(binary.right);
+        if (depth == null || constant == null
+                || !depth.equals(resolution.depths().get(node))
+                || ((Expr.Variable) binary.left).name != node.name) {
+            return false;
+        }
+
+        at(binary.line);
+        emit(ADD_LOCAL_CONSTANT);
+        emitLocal(depth, node.name);
+        emitInt(constant(constant));
+        return true;
+    }
+
+    // Fuses x < y and x < c, where x and y are local variables and c is a number.
+    private boolean compileLessLocal(@NotNull Expr.Binary node) {
+        Integer depth = localDepth(node.left);
+        if (node.operator != Token.Type.LESS || depth == null) {
+            return false;
+        }
+
+        Integer rightDepth = localDepth(node.right);
+        Double constant = numberConstant(node.right);
+        if (rightDepth != null) {
+            at(node.line);
+            emit(LESS_LOCALS);
+            emitLocal(depth, ((Expr.Variable) node.left).name);
+            emitLocal(rightDepth, ((Expr.Variable) node.right).name);
+            return true;
+        } else if (constant != null) {
+            at(node.line);
+            emit(LESS_LOCAL_CONSTANT);
+            emitLocal(depth, ((Expr.Variable) node.left).name);
+            emitInt(constant(constant));
+            return true;
+        }
+        return false;
+    }
+
+    private int compileFunction(@NotNull Stmt.Function declaration, boolean isInitialiser) {
+        FunctionCode enclosing = function;
+        int enclosingLine = line;
+
+        function = new FunctionCode(Names.of(declaration.name), declaration.params, isInitialiser);
+        functions.add(function);
+        int prototype = functions.size() - 1;
+
+        at(declaration.line);
+        compileAll(declaration.body);
+        emit(NIL);
+        emit(RETURN);
+
+        function = enclosing;
+        line = enclosingLine;
+        return prototype;
+    }
+
+    @Override
+    public Void visitBinary(Expr.Binary node) {
+        if (compileLessLocal(node)) {
+            return null;
+        }
+
+        compile(node.left);
+        compile(node.right);
+        at(node.line);
+
+        switch (node.operator) {
+            case PLUS -> emit(ADD);
+            case MINUS -> emit(SUBTRACT);
+            case STAR -> emit(MULTIPLY);
+            case SLASH -> emit(DIVIDE);
+            case GREATER -> emit(GREATER);
+            case GREATER_EQUAL -> emit(GREATER_EQUAL);
+            case LESS -> emit(LESS);
+            case LESS_EQUAL -> emit(LESS_EQUAL);
+            case EQUAL_EQUAL -> emit(EQUAL);
+            case NOT_EQUAL -> emit(NOT_EQUAL);
+            default -> throw new IllegalArgumentException(String.format("Unknown operator %s.", Scanner.lexemeOf(node.operator)));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expr.Grouping node) {
+        compile(node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(Expr.Literal node) {
+        Object value = node.value;
+        if (value == null) {
+            emit(NIL);
+        } else if (value instanceof Boolean bool) {
+            emit(bool ? TRUE : FALSE);
+        } else {
+            emit(CONSTANT);
+            emitInt(constant(value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expr.Unary node) {
+        compile(node.right);
+        at(node.line);
+        emit(node.operator == Token.Type.MINUS ? NEGATE : NOT);
+        return null;
+    }
+
+    @Override
+    public Void visitVariable(Expr.Variable node) {
+        emitVariable(node, Names.of(node.name), false);
+        return null;
+    }
+
+    @Override
+    public Void visitAssign(Expr.Assign node) {
+        if (compileAddLocalConstant(node)) {
+            return null;
+        }
+
+        compile(node.expression);
+        emitVariable(node, Names.of(node.name), true);
+        return null;
+    }
+
+    @Override
+    public Void visitLogical(Expr.Logical node) {
+        compile(node.left);
+        int end = emitJump(node.operator == Token.Type.OR ? JUMP_IF_TRUE : JUMP_IF_FALSE);
+        emit(POP);
+        compile(node.right);
+        patchJump(end);
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Expr.Call node) {
+        compile(node.callee);
+        for (Expr argument: node.arguments) {
+            compile(argument);
+        }
+        at(node.line);
+        emit(CALL);
+        emitByte(node.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGet(Expr.Get node) {
+        if (fusesInstructions && node.object instanceof Expr.This self) {
+            at(node.line);
+            emit(GET_THIS_PROPERTY);
+            emitLocal(resolution.depths().get(self), node.name);
+            return null;
+        }
+
+        compile(node.object);
+        at(node.line);
+        emit(GET_PROPERTY, Names.of(node.name));
+        return null;
+    }
+
+    @Override
+    public Void visitSet(Expr.Set node) {
+        compile(node.object);
+        at(node.line);
+        // The value is not evaluated if there is nothing to set it on.
+        emit(ENSURE_INSTANCE);
+        compile(node.value);
+        at(node.line);
+        emit(SET_PROPERTY, Names.of(node.name));
+        return null;
+    }
+
+    @Override
+    public Void visitIndex(Expr.Index node) {
+        compile(node.object);
+        compile(node.index);
+        at(node.line);
+        emit(GET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSet(Expr.IndexSet node) {
+        compile(node.object);
+        compile(node.index);
+        compile(node.value);
+        at(node.line);
+        emit(SET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitThis(Expr.This node) {
+        emitVariable(node, "this", false);
+        return null;
+    }
+
+    @Override
+    public Void visitSuper(Expr.Super node) {
+        at(node.line);
+        emit(GET_SUPER);
+        emitShort(resolution.depths().get(node));
+        emitInt(constant(Names.of(node.method)));
+        return null;
+    }
+
+    @Override
+    public Void visitExpression(Stmt.Expression node) {
+        compile(node.expression);
+        emit(POP);
+        return null;
+    }
+
+    @Override
+    public Void visitPrint(Stmt.Print node) {
+        if (fusesInstructions && node.expression instanceof Expr.Variable variable) {
+            Integer depth = resolution.depths().get(variable);
+            at(variable.line);
+            if (depth == null) {
+                emit(PRINT_GLOBAL, Names.of(variable.name));
+            } else {
+                emit(PRINT_LOCAL);
+                emitLocal(depth, variable.name);
+            }
+            return null;
+        }
+
+        compile(node.expression);
+        emit(PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitVar(Stmt.Var node) {
+        if (node.initializer != null) {
+            compile(node.initializer);
+        } else {
+            emit(NIL);
+        }
+        at(node.line);
+        emit(DEFINE, Names.of(node.name));
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(Stmt.Block node) {
+        emit(BEGIN_SCOPE);
+        compileAll(node.statements);
+        emit(END_SCOPE);
+        return null;
+    }
+
+    @Override
+    public Void visitIf(Stmt.If node) {
+        compile(node.condition);
+        int elseBranch = emitJump(JUMP_IF_FALSE);
+        emit(POP);
+        node.thenBranch.visit(this);
+        int end = emitJump(JUMP);
+
+        patchJump(elseBranch);
+        emit(POP);
+        if (node.elseBranch != null) {
+            node.elseBranch.visit(this);
+        }
+        patchJump(end);
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(Stmt.While node) {
+        int start = function.size;
+        compile(node.condition);
+        int exit = emitJump(JUMP_IF_FALSE);
+        emit(POP);
+        node.body.visit(this);
+        emitLoop(start);
+
+        patchJump(exit);
+        emit(POP);
+        return null;
+    }
+
+    @Override
+    public Void visitFunction(Stmt.Function node) {
+        int prototype = compileFunction(node, false);
+        at(node.line);
+        emit(CLOSURE);
+        emitInt(prototype);
+        emit(DEFINE, Names.of(node.name));
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(Stmt.Return node) {
+        if (node.value != null) {
+            compile(node.value);
+        } else {
+            emit(NIL);
+        }
+        at(node.line);
+        emit(function.unwindsReturns ? UNWIND_RETURN : RETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitClass(Stmt.Class node) {
+        at(node.line);
+        emit(NIL);
+        emit(DEFINE, Names.of(node.name));
+
+        if (node.superclass != null) {
+            compile(node.superclass);
+            at(node.superclass.line);
+            emit(INHERIT);
+        }
+
+        for (Stmt.Function method: node.methods) {
+            int prototype = compileFunction(method, Names.of(method.name).equals("init"));
+            emit(CLOSURE);
+            emitInt(prototype);
+        }
+
+        at(node.line);
+        emit(CLASS, Names.of(node.name));
+        emitShort(node.methods.size());
+        emitByte(node.superclass != null ? 1 : 0);
+        emit(DEFINE, Names.of(node.name));
+        return null;
+    }
+
+    @Override
+    public Void visitImport(Stmt.Import node) {
+        Path path = resolution.imports().get(node);
+        at(node.line);
+        emit(IMPORT, path.toString());
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Function of a compiled program, executed by the {@link VirtualMachine}.
+ */
+final class CompiledFunction implements LoxMethod {
+
+    @NotNull
+    private final Image image;
+    @NotNull
+    private final Image.Prototype prototype;
+    @NotNull
+    private final Environment closure;
+
+    CompiledFunction(@NotNull Image image,
+                     @NotNull Image.Prototype prototype,
+                     @NotNull Environment closure) {
+        this.image = image;
+        this.prototype = prototype;
+        this.closure = closure;
+    }
+
+    @NotNull
+    String name() {
+        return prototype.name();
+    }
+
+    @NotNull
+    @Override
+    public CompiledFunction bind(@NotNull LoxInstance instance) {
+        Environment environment = new Environment(closure);
+        environment.define("this", instance);
+        return new CompiledFunction(image, prototype, environment);
+    }
+
+    @Override
+    public int arity() {
+        return prototype.params().length;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, arguments.toArray());
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return run(interpreter, new Environment(closure));
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object first) {
+        Environment environment = new Environment(closure);
+        environment.define(prototype.params()[0], first);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object first, Object second) {
+        String[] params = prototype.params();
+        Environment environment = new Environment(closure);
+        environment.define(params[0], first);
+        environment.define(params[1], second);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+        String[] params = prototype.params();
+        Environment environment = new Environment(closure);
+        environment.define(params[0], first);
+        environment.define(params[1], second);
+        environment.define(params[2], third);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        String[] params = prototype.params();
+        Environment environment = new Environment(closure);
+        for (int i = 0; i < params.length; i++) {
+            environment.define(params[i], arguments[i]);
+        }
+        return run(interpreter, environment);
+    }
+
+    private Object run(@NotNull Interpreter interpreter, @NotNull Environment environment) {
+        Object value = VirtualMachine.execute(interpreter, image, prototype, environment);
+
+        if (prototype.isInitialiser()) {
+            return closure.getAt(0, "this");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<fn %s>", prototype.name());
+    }
+}
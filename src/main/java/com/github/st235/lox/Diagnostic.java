@@ -0,0 +1,14 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Error collected while processing a script, kept around
+ * to be reported later instead of being printed straight away.
+ */
+record Diagnostic(int line, @NotNull String message) {
+
+    void reportTo(@NotNull ErrorReporter reporter) {
+        reporter.error(line, message);
+    }
+}
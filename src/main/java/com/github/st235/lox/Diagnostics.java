@@ -0,0 +1,47 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects errors instead of reporting them,
+ * so they can be inspected or reported later in one go.
+ */
+final class Diagnostics implements ErrorReporter {
+
+    @NotNull
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    @Override
+    public void error(int line, @NotNull String message) {
+        diagnostics.add(new Diagnostic(line, message));
+    }
+
+    boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+
+    @NotNull
+    List<Diagnostic> asList() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * @return the errors collected so far, which are forgotten.
+     */
+    @NotNull
+    List<Diagnostic> drain() {
+        List<Diagnostic> drained = new ArrayList<>(diagnostics);
+        diagnostics.clear();
+        return drained;
+    }
+
+    void reportTo(@NotNull ErrorReporter reporter) {
+        for (Diagnostic diagnostic: diagnostics) {
+            diagnostic.reportTo(reporter);
+        }
+    }
+}
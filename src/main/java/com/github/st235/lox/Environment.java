@@ -3,6 +3,7 @@ package com.github.st235.lox;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,39 +28,57 @@ final class Environment {
         return parent;
     }
 
+    @NotNull
+    Map<String, Object> values() {
+        return Collections.unmodifiableMap(lookup);
+    }
+
     void define(@NotNull String name, @Nullable Object value) {
         lookup.put(name, value);
     }
 
-    void assign(@NotNull Token name, @Nullable Object value) {
-        if (lookup.containsKey(name.lexeme())) {
-            lookup.put(name.lexeme(), value);
+    /**
+     * @param line to report an undefined variable at.
+     */
+    void assign(@NotNull String name, int line, @Nullable Object value) {
+        if (lookup.containsKey(name)) {
+            lookup.put(name, value);
             return;
         }
 
         if (parent != null) {
-            parent.assign(name, value);
+            parent.assign(name, line, value);
             return;
         }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
     }
 
-    void assignAt(int depth, @NotNull Token name, @Nullable Object value) {
+    void assignAt(int depth, @NotNull String name, @Nullable Object value) {
         Map<String, Object> lookup = findAt(depth);
-        lookup.put(name.lexeme(), value);
+        lookup.put(name, value);
     }
 
-    Object get(@NotNull Token name) {
-        if (lookup.containsKey(name.lexeme())) {
-            return lookup.get(name.lexeme());
+    /**
+     * @param line to report an undefined variable at.
+     */
+    Object get(@NotNull String name, int line) {
+        if (lookup.containsKey(name)) {
+            return lookup.get(name);
         }
 
         if (parent != null) {
-            return parent.get(name);
+            return parent.get(name, line);
         }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
+        throw new RuntimeError(line, "Undefined variable '" + name + "'.");
+    }
+
+    boolean has(@NotNull String name) {
+        if (lookup.containsKey(name)) {
+            return true;
+        }
+        return parent != null && parent.has(name);
     }
 
     Object getAt(int depth, @NotNull String name) {
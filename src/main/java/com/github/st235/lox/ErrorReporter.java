@@ -0,0 +1,13 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives errors found while processing a script.
+ * {@link Lox#error(int, String)} is the default destination.
+ */
+@FunctionalInterface
+interface ErrorReporter {
+
+    void error(int line, @NotNull String message);
+}
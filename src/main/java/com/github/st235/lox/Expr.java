@@ -2,17 +2,59 @@ package com.github.st235.lox;
 
 import java.util.List;
 
-public abstract class Expr {
+public abstract sealed class Expr permits
+        Expr.Binary,
+        Expr.Grouping,
+        Expr.Literal,
+        Expr.Unary,
+        Expr.Variable,
+        Expr.Assign,
+        Expr.Logical,
+        Expr.Call,
+        Expr.Get,
+        Expr.Set,
+        Expr.This,
+        Expr.Super,
+        Expr.Index,
+        Expr.IndexSet {
+
+    enum Kind {
+        BINARY,
+        GROUPING,
+        LITERAL,
+        UNARY,
+        VARIABLE,
+        ASSIGN,
+        LOGICAL,
+        CALL,
+        GET,
+        SET,
+        THIS,
+        SUPER,
+        INDEX,
+        INDEX_SET,
+    }
+
+    final Kind kind;
+
+    // Nodes keep no tokens, errors are reported at this line.
+    final int line;
+
+    private Expr(Kind kind, int line) {
+        this.kind = kind;
+        this.line = line;
+    }
 
     abstract <R> R visit(Visitor<R> visitor);
 
-    public static class Binary extends Expr {
+    public static final class Binary extends Expr {
 
         final Expr left;
-        final Token operator;
+        final Token.Type operator;
         final Expr right;
 
-        Binary(Expr left,  Token operator,  Expr right) {
+        Binary(int line, Expr left,  Token.Type operator,  Expr right) {
+            super(Kind.BINARY, line);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -25,11 +67,12 @@ public abstract class Expr {
 
     }
 
-    public static class Grouping extends Expr {
+    public static final class Grouping extends Expr {
 
         final Expr expression;
 
-        Grouping(Expr expression) {
+        Grouping(int line, Expr expression) {
+            super(Kind.GROUPING, line);
             this.expression = expression;
         }
 
@@ -40,11 +83,12 @@ public abstract class Expr {
 
     }
 
-    public static class Literal extends Expr {
+    public static final class Literal extends Expr {
 
         final Object value;
 
-        Literal(Object value) {
+        Literal(int line, Object value) {
+            super(Kind.LITERAL, line);
             this.value = value;
         }
 
@@ -55,12 +99,13 @@ public abstract class Expr {
 
     }
 
-    public static class Unary extends Expr {
+    public static final class Unary extends Expr {
 
-        final Token operator;
+        final Token.Type operator;
         final Expr right;
 
-        Unary(Token operator,  Expr right) {
+        Unary(int line, Token.Type operator,  Expr right) {
+            super(Kind.UNARY, line);
             this.operator = operator;
             this.right = right;
         }
@@ -72,11 +117,12 @@ public abstract class Expr {
 
     }
 
-    public static class Variable extends Expr {
+    public static final class Variable extends Expr {
 
-        final Token name;
+        final int name;
 
-        Variable(Token name) {
+        Variable(int line, int name) {
+            super(Kind.VARIABLE, line);
             this.name = name;
         }
 
@@ -87,12 +133,13 @@ public abstract class Expr {
 
     }
 
-    public static class Assign extends Expr {
+    public static final class Assign extends Expr {
 
-        final Token name;
+        final int name;
         final Expr expression;
 
-        Assign(Token name,  Expr expression) {
+        Assign(int line, int name,  Expr expression) {
+            super(Kind.ASSIGN, line);
             this.name = name;
             this.expression = expression;
         }
@@ -104,13 +151,14 @@ public abstract class Expr {
 
     }
 
-    public static class Logical extends Expr {
+    public static final class Logical extends Expr {
 
         final Expr left;
-        final Token operator;
+        final Token.Type operator;
         final Expr right;
 
-        Logical(Expr left,  Token operator,  Expr right) {
+        Logical(int line, Expr left,  Token.Type operator,  Expr right) {
+            super(Kind.LOGICAL, line);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -123,15 +171,14 @@ public abstract class Expr {
 
     }
 
-    public static class Call extends Expr {
+    public static final class Call extends Expr {
 
         final Expr callee;
-        final Token paren;
         final List<Expr> arguments;
 
-        Call(Expr callee,  Token paren,  List<Expr> arguments) {
+        Call(int line, Expr callee,  List<Expr> arguments) {
+            super(Kind.CALL, line);
             this.callee = callee;
-            this.paren = paren;
             this.arguments = arguments;
         }
 
@@ -142,12 +189,13 @@ public abstract class Expr {
 
     }
 
-    public static class Get extends Expr {
+    public static final class Get extends Expr {
 
         final Expr object;
-        final Token name;
+        final int name;
 
-        Get(Expr object,  Token name) {
+        Get(int line, Expr object,  int name) {
+            super(Kind.GET, line);
             this.object = object;
             this.name = name;
         }
@@ -159,13 +207,14 @@ public abstract class Expr {
 
     }
 
-    public static class Set extends Expr {
+    public static final class Set extends Expr {
 
         final Expr object;
-        final Token name;
+        final int name;
         final Expr value;
 
-        Set(Expr object,  Token name,  Expr value) {
+        Set(int line, Expr object,  int name,  Expr value) {
+            super(Kind.SET, line);
             this.object = object;
             this.name = name;
             this.value = value;
@@ -178,12 +227,10 @@ public abstract class Expr {
 
     }
 
-    public static class This extends Expr {
-
-        final Token keyword;
+    public static final class This extends Expr {
 
-        This(Token keyword) {
-            this.keyword = keyword;
+        This(int line) {
+            super(Kind.THIS, line);
         }
 
         @Override
@@ -193,13 +240,12 @@ public abstract class Expr {
 
     }
 
-    public static class Super extends Expr {
+    public static final class Super extends Expr {
 
-        final Token keyword;
-        final Token method;
+        final int method;
 
-        Super(Token keyword,  Token method) {
-            this.keyword = keyword;
+        Super(int line, int method) {
+            super(Kind.SUPER, line);
             this.method = method;
         }
 
@@ -210,6 +256,44 @@ public abstract class Expr {
 
     }
 
+    public static final class Index extends Expr {
+
+        final Expr object;
+        final Expr index;
+
+        Index(int line, Expr object,  Expr index) {
+            super(Kind.INDEX, line);
+            this.object = object;
+            this.index = index;
+        }
+
+        @Override
+        <R> R visit(Visitor<R> visitor) {
+            return visitor.visitIndex(this);
+        }
+
+    }
+
+    public static final class IndexSet extends Expr {
+
+        final Expr object;
+        final Expr index;
+        final Expr value;
+
+        IndexSet(int line, Expr object,  Expr index,  Expr value) {
+            super(Kind.INDEX_SET, line);
+            this.object = object;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        <R> R visit(Visitor<R> visitor) {
+            return visitor.visitIndexSet(this);
+        }
+
+    }
+
     public interface Visitor<R> {
         R visitBinary(Binary node);
         R visitGrouping(Grouping node);
@@ -223,6 +307,8 @@ public abstract class Expr {
         R visitSet(Set node);
         R visitThis(This node);
         R visitSuper(Super node);
+        R visitIndex(Index node);
+        R visitIndexSet(IndexSet node);
     }
 
 }
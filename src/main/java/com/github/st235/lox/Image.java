@@ -0,0 +1,153 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compiled program, usually stored in a {@code .loxc} file.
+ *
+ * <p>The layout, every number is big-endian:
+ * <pre>
+ * magic: int, version: short,
+ * constants: int count, then every constant as a tag byte and
+ *            a double or an int length and UTF-8 bytes,
+ * prototypes: int count, then for every function its name constant, flags byte,
+ *             short count and constants of parameters, code offset, line table index and size,
+ * code: int size and bytes,
+ * lines: int count, then pairs of int offset within the function code and line, sorted within a prototype.
+ * </pre>
+ * Only the constants and the prototypes become Java objects when an image is loaded,
+ * the {@link VirtualMachine} executes the code right from the buffer, so a mapped
+ * image is shared with every other process which maps the same file.
+ * The first prototype is the script itself.
+ */
+final class Image {
+
+    static final int MAGIC = 0x4C4F5843;
+    // Has to change every time instructions or the layout change.
+    static final short VERSION = 2;
+
+    static final byte NUMBER_CONSTANT = 1;
+    static final byte STRING_CONSTANT = 2;
+
+    static final byte INITIALISER_FLAG = 1;
+
+    /**
+     * @param codeOffset of the first instruction of the function from the start of the code.
+     */
+    record Prototype(@NotNull String name,
+                     @NotNull String[] params,
+                     boolean isInitialiser,
+                     int codeOffset,
+                     int linesStart,
+                     int linesCount) {
+    }
+
+    @NotNull
+    final ByteBuffer code;
+    @NotNull
+    final Object[] constants;
+    @NotNull
+    final Prototype[] prototypes;
+
+    // Absolute position of the code in the buffer.
+    final int codeBase;
+    private final int linesBase;
+
+    private Image(@NotNull ByteBuffer buffer) {
+        this.code = buffer;
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a compiled Lox program.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported version %d, expected %d.", version, VERSION));
+        }
+
+        constants = new Object[buffer.getInt()];
+        for (int i = 0; i < constants.length; i++) {
+            byte tag = buffer.get();
+            if (tag == NUMBER_CONSTANT) {
+                constants[i] = buffer.getDouble();
+            } else if (tag == STRING_CONSTANT) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                constants[i] = new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException(String.format("Unknown constant %d.", tag));
+            }
+        }
+
+        prototypes = new Prototype[buffer.getInt()];
+        for (int i = 0; i < prototypes.length; i++) {
+            String name = (String) constants[buffer.getInt()];
+            boolean isInitialiser = (buffer.get() & INITIALISER_FLAG) != 0;
+            String[] params = new String[buffer.getShort()];
+            for (int j = 0; j < params.length; j++) {
+                params[j] = (String) constants[buffer.getInt()];
+            }
+            prototypes[i] = new Prototype(name, params, isInitialiser, buffer.getInt(), buffer.getInt(), buffer.getInt());
+        }
+
+        int codeSize = buffer.getInt();
+        codeBase = buffer.position();
+        buffer.position(codeBase + codeSize);
+        int linesCount = buffer.getInt();
+        linesBase = buffer.position();
+        if (buffer.remaining() != linesCount * 2 * Integer.BYTES) {
+            throw new IllegalArgumentException("Malformed line table.");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException or {@link java.nio.BufferUnderflowException}
+     * if the buffer does not hold an image of the current {@link #VERSION}.
+     */
+    @NotNull
+    static Image load(@NotNull ByteBuffer buffer) {
+        return new Image(buffer);
+    }
+
+    @NotNull
+    static Image map(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @NotNull
+    Prototype script() {
+        return prototypes[0];
+    }
+
+    /**
+     * Looks up the line of an instruction, only needed to report errors.
+     *
+     * @param offset of the instruction from the start of the function code.
+     */
+    int line(@NotNull Prototype prototype, int offset) {
+        int low = 0;
+        int high = prototype.linesCount() - 1;
+        int line = 0;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = linesBase + (prototype.linesStart() + middle) * 2 * Integer.BYTES;
+            if (code.getInt(entry) <= offset) {
+                line = code.getInt(entry + Integer.BYTES);
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return line;
+    }
+}
@@ -1,19 +1,49 @@
 package com.github.st235.lox;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
+    /**
+     * Ways to get from a node to the method evaluating it. Both run the same methods,
+     * switching over the {@link Expr.Kind kind} of the node saves the double
+     * dispatch of the visitor in the hot loop of the interpreter.
+     */
+    enum Dispatch {
+        SWITCH,
+        VISITOR,
+    }
+
+    @NotNull
+    private final Output output;
+
+    @NotNull
+    private final Dispatch dispatch;
+
+    // Moves hot functions and loops to the virtual machine, if enabled.
+    @Nullable
+    private Tiering tiering;
+    // Replaces hot loops with traces, if enabled.
+    @Nullable
+    private Tracing tracing;
+
+    // Operations which operands are always numbers, see TypeInference.
     @NotNull
-    private final PrintWriter outputWriter;
+    private final Set<Expr> numericOperations = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean infersTypes = true;
 
     @NotNull
     private final Environment global = new Environment();
@@ -24,12 +54,29 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @NotNull
     private Map<Expr, Integer> localsDepthLookup = new HashMap<>();
 
-    Interpreter() {
-        this(System.out);
-    }
+    @NotNull
+    private final Map<Stmt.Import, Path> modulePaths = new HashMap<>();
+    // Every module runs once per interpreter, however many times it is imported.
+    @NotNull
+    private final Set<Path> importedModules = new HashSet<>();
 
     Interpreter(@NotNull OutputStream outputStream) {
-        this.outputWriter = new PrintWriter(new OutputStreamWriter(outputStream));
+        this(outputStream, Dispatch.SWITCH);
+    }
+
+    /**
+     * Writes every printed line to the stream right away.
+     */
+    Interpreter(@NotNull OutputStream outputStream, @NotNull Dispatch dispatch) {
+        this(new Output(outputStream, Output.FlushPolicy.LINE), dispatch);
+    }
+
+    /**
+     * Writes printed lines as the output flushes them, see {@link #flush()}.
+     */
+    Interpreter(@NotNull Output output, @NotNull Dispatch dispatch) {
+        this.output = output;
+        this.dispatch = dispatch;
 
         addFunction(new NativeFunction("clock", 0) {
             @Override
@@ -37,110 +84,311 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 return System.currentTimeMillis() / 1000.0;
             }
         });
+        addFunctions(ArrayFunctions.class);
     }
 
     private static String stringify(Object value) {
         if (value == null) return "nil";
 
-        if (value instanceof Double) {
-            String text = value.toString();
+        return String.valueOf(value);
+    }
 
-            if (text.endsWith(".0")) {
-                text = text.replace(".0", "");
-            }
+    void addFunction(@NotNull NativeFunction function) {
+        global.define(function.name, function);
+    }
 
-            return text;
+    /**
+     * Adds every {@link LoxNative} function of the library, see {@link NativeBinding}.
+     */
+    void addFunctions(@NotNull Class<?> library) {
+        for (NativeFunction function: NativeBinding.bind(library)) {
+            addFunction(function);
         }
+    }
 
-        return String.valueOf(value);
+    void enableTiering(@NotNull Tiering tiering) {
+        this.tiering = tiering;
     }
 
-    void addFunction(@NotNull NativeFunction function) {
-        global.define(function.name, function);
+    @Nullable
+    Tiering tiering() {
+        return tiering;
+    }
+
+    void enableTracing(@NotNull Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Checks the operands of every operation, as if nothing was known about their types.
+     */
+    void disableTypeInference() {
+        this.infersTypes = false;
+    }
+
+    @NotNull
+    Environment globals() {
+        return global;
+    }
+
+    /**
+     * @return depths and module paths of everything resolved so far.
+     */
+    @NotNull
+    Resolution resolution() {
+        return new Resolution(localsDepthLookup, List.of(), modulePaths, List.of());
+    }
+
+    @NotNull
+    Set<Path> importedModules() {
+        return importedModules;
     }
 
-    void resolve(@NotNull Expr expression, int depth) {
-        localsDepthLookup.put(expression, depth);
+    void print(@Nullable Object value) {
+        if (value instanceof Double number) {
+            output.println((double) number);
+            return;
+        }
+        output.println(stringify(value));
+    }
+
+    /**
+     * Writes out whatever has been printed but is still buffered.
+     */
+    void flush() {
+        output.flush();
+    }
+
+    /**
+     * Takes the depths of local variables found by {@link Resolver},
+     * including the ones of lazy function bodies once they get resolved.
+     */
+    void resolve(@NotNull Resolution resolution) {
+        localsDepthLookup.putAll(resolution.depths());
+        modulePaths.putAll(resolution.imports());
+        for (LazyFunctionBody body: resolution.lazyBodies()) {
+            body.whenResolved(this::resolve);
+        }
     }
 
-    public void interpret(@NotNull List<Stmt> statements) {
+    /**
+     * Runs a compiled program on the {@link VirtualMachine}, sharing
+     * the global scope with the statements interpreted before.
+     */
+    public void interpret(@NotNull Image image) {
+        try {
+            VirtualMachine.run(this, image);
+        } catch (RuntimeError error) {
+            Lox.error(error.line, error.getMessage());
+        }
+    }
+
+    /**
+     * @return {@code false} if a runtime error has stopped the statements, it is reported already.
+     */
+    public boolean interpret(@NotNull List<Stmt> statements) {
+        inferTypes(statements);
         try {
             for (Stmt statement: statements) {
-                statement.visit(this);
+                execute(statement);
             }
+            return true;
         } catch (RuntimeError error) {
-            Lox.error(error.token.line(), error.getMessage());
+            Lox.error(error.line, error.getMessage());
+            return false;
         }
     }
 
     private Object eval(Expr expression) {
-        return expression.visit(this);
+        if (tracing != null && tracing.isRecording()) {
+            return tracing.observe(expression, evalNode(expression));
+        }
+        return evalNode(expression);
+    }
+
+    private Object evalNode(Expr expression) {
+        if (dispatch == Dispatch.VISITOR) {
+            return expression.visit(this);
+        }
+
+        return switch (expression.kind) {
+            case BINARY -> visitBinary((Expr.Binary) expression);
+            case GROUPING -> visitGrouping((Expr.Grouping) expression);
+            case LITERAL -> visitLiteral((Expr.Literal) expression);
+            case UNARY -> visitUnary((Expr.Unary) expression);
+            case VARIABLE -> visitVariable((Expr.Variable) expression);
+            case ASSIGN -> visitAssign((Expr.Assign) expression);
+            case LOGICAL -> visitLogical((Expr.Logical) expression);
+            case CALL -> visitCall((Expr.Call) expression);
+            case GET -> visitGet((Expr.Get) expression);
+            case SET -> visitSet((Expr.Set) expression);
+            case THIS -> visitThis((Expr.This) expression);
+            case SUPER -> visitSuper((Expr.Super) expression);
+            case INDEX -> visitIndex((Expr.Index) expression);
+            case INDEX_SET -> visitIndexSet((Expr.IndexSet) expression);
+        };
+    }
+
+    private void execute(Stmt statement) {
+        if (dispatch == Dispatch.VISITOR) {
+            statement.visit(this);
+            return;
+        }
+
+        switch (statement.kind) {
+            case EXPRESSION -> visitExpression((Stmt.Expression) statement);
+            case PRINT -> visitPrint((Stmt.Print) statement);
+            case VAR -> visitVar((Stmt.Var) statement);
+            case BLOCK -> visitBlock((Stmt.Block) statement);
+            case IF -> visitIf((Stmt.If) statement);
+            case WHILE -> visitWhile((Stmt.While) statement);
+            case FUNCTION -> visitFunction((Stmt.Function) statement);
+            case RETURN -> visitReturn((Stmt.Return) statement);
+            case CLASS -> visitClass((Stmt.Class) statement);
+            case IMPORT -> visitImport((Stmt.Import) statement);
+        }
     }
 
     @Override
     public Object visitUnary(Expr.Unary node) {
-        Object right = eval(node.right);
-        Token operator = node.operator;
+        if (isNumeric(node)) {
+            return -number(node.right);
+        }
+        return unary(node.operator, node.line, eval(node.right));
+    }
 
-        return switch (operator.type()) {
+    Object unary(@NotNull Token.Type operator, int line, Object right) {
+        return switch (operator) {
             case NOT -> !isTruthy(right);
             case MINUS -> {
-                checkIfNumberOperand(operator, right);
+                checkIfNumberOperand(line, right);
                 yield -(double) right;
             }
             default -> null;
         };
     }
 
+    private void inferTypes(@NotNull List<Stmt> statements) {
+        if (infersTypes) {
+            numericOperations.addAll(TypeInference.numericOperations(statements, localsDepthLookup));
+        }
+    }
+
+    /**
+     * Operands of numeric operations are computed without boxing or checking them,
+     * unless a loop is being recorded, which needs to observe every value.
+     */
+    private boolean isNumeric(@NotNull Expr expression) {
+        return numericOperations.contains(expression) && (tracing == null || !tracing.isRecording());
+    }
+
+    /**
+     * @param expression which value is always a number.
+     */
+    private double number(@NotNull Expr expression) {
+        switch (expression.kind) {
+            case BINARY -> {
+                Expr.Binary node = (Expr.Binary) expression;
+                if (isNumeric(node)) {
+                    return arithmetic(node.operator, node.line, number(node.left), number(node.right));
+                }
+            }
+            case UNARY -> {
+                Expr.Unary node = (Expr.Unary) expression;
+                if (isNumeric(node)) {
+                    return -number(node.right);
+                }
+            }
+            case GROUPING -> {
+                return number(((Expr.Grouping) expression).expression);
+            }
+            case LITERAL -> {
+                return (double) ((Expr.Literal) expression).value;
+            }
+            default -> {
+            }
+        }
+        return (double) eval(expression);
+    }
+
+    private double arithmetic(@NotNull Token.Type operator, int line, double left, double right) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case STAR -> left * right;
+            case SLASH -> {
+                if (right == 0) {
+                    throw new RuntimeError(line, "Divide by 0");
+                }
+                yield left / right;
+            }
+            default -> throw new IllegalArgumentException(String.format("%s is not arithmetic.", Scanner.lexemeOf(operator)));
+        };
+    }
+
     @Override
     public Object visitBinary(Expr.Binary node) {
+        if (isNumeric(node)) {
+            double left = number(node.left);
+            double right = number(node.right);
+            return switch (node.operator) {
+                case GREATER -> left > right;
+                case GREATER_EQUAL -> left >= right;
+                case LESS -> left < right;
+                case LESS_EQUAL -> left <= right;
+                default -> arithmetic(node.operator, node.line, left, right);
+            };
+        }
+
         Object left = eval(node.left);
         Object right = eval(node.right);
-        Token operator = node.operator;
+        return binary(node.operator, node.line, left, right);
+    }
 
-        return switch (operator.type()) {
+    Object binary(@NotNull Token.Type operator, int line, Object left, Object right) {
+        return switch (operator) {
             case PLUS -> {
                 if (left instanceof Double && right instanceof Double) {
                     yield (double) left + (double) right;
                 }
 
-                if (left instanceof String || right instanceof String) {
-                    yield String.valueOf(left) + String.valueOf(right);
+                if (Rope.isText(left) || Rope.isText(right)) {
+                    yield Rope.concat(left, right);
                 }
 
-                throw new RuntimeError(operator, "Operand supports only strings or doubles.");
+                throw new RuntimeError(line, "Operand supports only strings or doubles.");
             }
             case MINUS -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left - (double) right;
             }
             case SLASH -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
 
                 if ((double) right == 0) {
-                    throw new RuntimeError(operator, "Divide by 0");
+                    throw new RuntimeError(line, "Divide by 0");
                 }
 
                 yield (double) left / (double) right;
             }
             case STAR -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left * (double) right;
             }
             case GREATER -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left > (double) right;
             }
             case GREATER_EQUAL -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left >= (double) right;
             }
             case LESS -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left < (double) right;
             }
             case LESS_EQUAL -> {
-                checkIfNumberOperand(operator, left, right);
+                checkIfNumberOperand(line, left, right);
                 yield (double) left <= (double) right;
             }
             case NOT_EQUAL -> !isEqual(left, right);
@@ -157,15 +405,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariable(Expr.Variable node) {
-        return lookupVariable(node.name, node);
+        return lookupVariable(Names.of(node.name), node);
     }
 
-    private Object lookupVariable(@NotNull Token name, @NotNull Expr expression) {
+    private Object lookupVariable(@NotNull String name, @NotNull Expr expression) {
         Integer localDepth = localsDepthLookup.get(expression);
         if (localDepth == null) {
-            return global.get(name);
+            return global.get(name, expression.line);
         }
-        return environment.getAt(localDepth, name.lexeme());
+        return environment.getAt(localDepth, name);
     }
 
     @Override
@@ -177,7 +425,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visitLogical(Expr.Logical node) {
         Object left = eval(node.left);
 
-        if (node.operator.type() == Token.Type.OR) {
+        if (node.operator == Token.Type.OR) {
             if (isTruthy(left)) {
                 return left;
             }
@@ -198,8 +446,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitPrint(Stmt.Print node) {
-        outputWriter.println(stringify(eval(node.expression)));
-        outputWriter.flush();
+        print(eval(node.expression));
         return null;
     }
 
@@ -209,7 +456,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (node.initializer != null) {
             value = eval(node.initializer);
         }
-        environment.define(node.name.lexeme(), value);
+        environment.define(Names.of(node.name), value);
         return null;
     }
 
@@ -219,11 +466,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         if (object instanceof LoxInstance) {
             Object value = eval(node.value);
-            ((LoxInstance) object).set(node.name, value);
+            ((LoxInstance) object).set(Names.of(node.name), value);
             return value;
         }
 
-        throw new RuntimeError(node.name, "Only instances have fields.");
+        throw new RuntimeError(node.line, "Only instances have fields.");
     }
 
     @Override
@@ -231,10 +478,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         Object object = eval(node.object);
 
         if (object instanceof LoxInstance) {
-            return ((LoxInstance) object).get(node.name);
+            return ((LoxInstance) object).get(Names.of(node.name), node.line);
         }
 
-        throw new RuntimeError(node.name, "Only instances have properties.");
+        throw new RuntimeError(node.line, "Only instances have properties.");
     }
 
     @Override
@@ -243,9 +490,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         Integer localDepth = localsDepthLookup.get(node);
         if (localDepth == null) {
-            global.assign(node.name, value);
+            global.assign(Names.of(node.name), node.line, value);
         } else {
-            environment.assignAt(localDepth, node.name, value);
+            environment.assignAt(localDepth, Names.of(node.name), value);
         }
 
         return value;
@@ -260,7 +507,24 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhile(Stmt.While node) {
         while (isTruthy(eval(node.condition))) {
-            node.body.visit(this);
+            execute(node.body);
+
+            if (tracing != null && tracing.onBackEdge(node, this, environment)) {
+                return null;
+            }
+
+            if (tiering != null) {
+                Tiering.Code code = tiering.onBackEdge(node, this);
+                if (code != null) {
+                    // The rest of the loop runs compiled, right where the interpreter has stopped.
+                    VirtualMachine.execute(this, code.image(), code.prototype(), environment);
+                    return null;
+                }
+            }
+        }
+
+        if (tracing != null) {
+            tracing.onExit(node);
         }
         return null;
     }
@@ -268,12 +532,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitIf(Stmt.If node) {
         if (isTruthy(eval(node.condition))) {
-            node.thenBranch.visit(this);
+            execute(node.thenBranch);
             return null;
         }
 
         if (node.elseBranch != null) {
-            node.elseBranch.visit(this);
+            execute(node.elseBranch);
             return null;
         }
 
@@ -284,26 +548,72 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visitCall(Expr.Call node) {
         Object callee = eval(node.callee);
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr expr: node.arguments) {
-            arguments.add(eval(expr));
+        // Arguments are passed one by one, so most calls need no list of them.
+        List<Expr> arguments = node.arguments;
+        try {
+            switch (arguments.size()) {
+                case 0 -> {
+                    return callable(node.line, callee, 0).call0(this);
+                }
+                case 1 -> {
+                    Object first = eval(arguments.get(0));
+                    return callable(node.line, callee, 1).call1(this, first);
+                }
+                case 2 -> {
+                    Object first = eval(arguments.get(0));
+                    Object second = eval(arguments.get(1));
+                    return callable(node.line, callee, 2).call2(this, first, second);
+                }
+                case 3 -> {
+                    Object first = eval(arguments.get(0));
+                    Object second = eval(arguments.get(1));
+                    Object third = eval(arguments.get(2));
+                    return callable(node.line, callee, 3).call3(this, first, second, third);
+                }
+                default -> {
+                    Object[] values = new Object[arguments.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = eval(arguments.get(i));
+                    }
+                    return call(node.line, callee, values);
+                }
+            }
+        } catch (NativeError error) {
+            throw new RuntimeError(node.line, error.getMessage());
+        }
+    }
+
+    /**
+     * @param line to report errors of the call at.
+     */
+    Object call(int line, Object callee, @NotNull Object[] arguments) {
+        try {
+            return callable(line, callee, arguments.length).call(this, arguments);
+        } catch (NativeError error) {
+            throw new RuntimeError(line, error.getMessage());
         }
+    }
 
+    /**
+     * Checks that the callee can be called with that many arguments.
+     */
+    @NotNull
+    private static LoxCallable callable(int line, Object callee, int argumentsCount) {
         if (!(callee instanceof LoxCallable function)) {
-            throw new RuntimeError(node.paren, "Can only call functions and classes.");
+            throw new RuntimeError(line, "Can only call functions and classes.");
         }
 
-        if (function.arity() != arguments.size()) {
-            throw new RuntimeError(node.paren,
-                    String.format("Expected %d arguments but got %d.", function.arity(), arguments.size()));
+        if (function.arity() != argumentsCount) {
+            throw new RuntimeError(line,
+                    String.format("Expected %d arguments but got %d.", function.arity(), argumentsCount));
         }
 
-        return function.call(this, arguments);
+        return function;
     }
 
     @Override
     public Void visitFunction(Stmt.Function node) {
-        environment.define(node.name.lexeme(), new LoxFunction(node, environment, false));
+        environment.define(Names.of(node.name), new LoxFunction(node, environment, false));
         return null;
     }
 
@@ -316,56 +626,145 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitClass(Stmt.Class node) {
-        environment.define(node.name.lexeme(), null);
+        String name = Names.of(node.name);
+        environment.define(name, null);
 
         Object superclass = null;
         if (node.superclass != null) {
             superclass = eval(node.superclass);
 
             if (!(superclass instanceof LoxClass)) {
-                throw new RuntimeError(node.superclass.name, "Superclass must be class");
+                throw new RuntimeError(node.superclass.line, "Superclass must be class");
             }
 
             environment = new Environment(environment);
             environment.define("super", superclass);
         }
 
-        Map<String, LoxFunction> methods = new HashMap<>();
+        Map<String, LoxMethod> methods = new HashMap<>();
         for (Stmt.Function method: node.methods) {
-            LoxFunction function = new LoxFunction(method, environment,
-                    method.name.lexeme().equals("init"));
-            methods.put(method.name.lexeme(), function);
+            String methodName = Names.of(method.name);
+            LoxFunction function = new LoxFunction(method, environment, methodName.equals("init"));
+            methods.put(methodName, function);
         }
 
-        LoxClass klass = new LoxClass(node.name.lexeme(), (LoxClass) superclass, methods);
+        LoxClass klass = new LoxClass(name, (LoxClass) superclass, methods);
 
         if (superclass != null) {
             environment = environment.getParent();
         }
 
-        environment.assign(node.name, klass);
+        environment.assign(name, node.line, klass);
         return null;
     }
 
+    @Override
+    public Void visitImport(Stmt.Import node) {
+        importModule(modulePaths.get(node), node.line);
+        return null;
+    }
+
+    /**
+     * Runs a module in the global scope, unless it has already run.
+     *
+     * @param line to report errors at.
+     */
+    void importModule(@NotNull Path path, int line) {
+        if (!importedModules.add(path)) {
+            return;
+        }
+
+        Module module;
+        try {
+            module = ModuleCache.shared().load(path);
+        } catch (IOException exception) {
+            throw new RuntimeError(line, String.format("Cannot read module '%s': %s", path, exception.getMessage()));
+        } catch (CompletionException exception) {
+            // Compiling the module has failed, maybe on another thread.
+            Throwable cause = exception.getCause() != null ? exception.getCause() : exception;
+            String reason = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            throw new RuntimeError(line, String.format("Cannot compile module '%s': %s", path, reason));
+        }
+
+        if (module.hasErrors()) {
+            Diagnostic error = module.diagnostics().get(0);
+            throw new RuntimeError(line, String.format("Cannot import '%s', line %d: %s",
+                    path, error.line(), error.message()));
+        }
+
+        resolve(module.resolution());
+        inferTypes(module.statements());
+        // Imports are only allowed at the top level, so the module runs right in the global scope.
+        executeBlock(module.statements(), global);
+    }
+
     @Override
     public Object visitThis(Expr.This node) {
-        return lookupVariable(node.keyword, node);
+        return lookupVariable("this", node);
     }
 
     @Override
     public Object visitSuper(Expr.Super node) {
         int distance = localsDepthLookup.get(node);
-        LoxClass superclass = (LoxClass) environment.getAt(distance, node.keyword.lexeme());
+        LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
         LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
-        LoxFunction method = superclass.findMethod(node.method.lexeme());
+        LoxMethod method = superclass.findMethod(Names.of(node.method));
 
         if (method == null) {
-            throw new RuntimeError(node.method, String.format("Undefined property '%s'.", node.method.lexeme()));
+            throw new RuntimeError(node.line, String.format("Undefined property '%s'.", Names.of(node.method)));
         }
 
         return method.bind(object);
     }
 
+    @Override
+    public Object visitIndex(Expr.Index node) {
+        Object object = eval(node.object);
+        return index(node.line, object, eval(node.index));
+    }
+
+    @Override
+    public Object visitIndexSet(Expr.IndexSet node) {
+        Object object = eval(node.object);
+        Object index = eval(node.index);
+        return setIndex(node.line, object, index, eval(node.value));
+    }
+
+    static Object index(int line, Object object, Object index) {
+        if (object instanceof LoxArray array) {
+            return array.get(line, index);
+        }
+
+        throw new RuntimeError(line, "Only arrays can be indexed.");
+    }
+
+    static Object setIndex(int line, Object object, Object index, Object value) {
+        if (object instanceof LoxArray array) {
+            array.set(line, index, value);
+            return value;
+        }
+
+        throw new RuntimeError(line, "Only arrays can be indexed.");
+    }
+
+    /**
+     * Evaluates the expression in the given environment, for code that keeps environments on its own.
+     */
+    Object evaluate(@NotNull Expr expression, @NotNull Environment currentEnvironment) {
+        Environment previous = environment;
+
+        try {
+            this.environment = currentEnvironment;
+            return eval(expression);
+        } finally {
+            this.environment = previous;
+        }
+    }
+
+    void execute(@NotNull Stmt statement, @NotNull Environment currentEnvironment) {
+        executeBlock(List.of(statement), currentEnvironment);
+    }
+
     void executeBlock(@NotNull List<Stmt> statements, @NotNull Environment currentEnvironment) {
         Environment previous = environment;
 
@@ -373,32 +772,33 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             this.environment = currentEnvironment;
 
             for (Stmt statement: statements) {
-                statement.visit(this);
+                execute(statement);
             }
         } finally {
             this.environment = previous;
         }
     }
 
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
 
-    private boolean isEqual(Object one, Object another) {
+    static boolean isEqual(Object one, Object another) {
         if (one == null && another == null) return true;
         if (one == null) return false;
+        if (Rope.isText(one) && Rope.isText(another)) return one.toString().equals(another.toString());
         return one.equals(another);
     }
 
-    private void checkIfNumberOperand(Token operator, Object left, Object right) {
-        checkIfNumberOperand(operator, left);
-        checkIfNumberOperand(operator, right);
+    private void checkIfNumberOperand(int line, Object left, Object right) {
+        checkIfNumberOperand(line, left);
+        checkIfNumberOperand(line, right);
     }
 
-    private void checkIfNumberOperand(Token operator, Object operand) {
+    private void checkIfNumberOperand(int line, Object operand) {
         if (operand instanceof Double) return;
-        throw new RuntimeError(operator, "Operand must be a number.");
+        throw new RuntimeError(line, "Operand must be a number.");
     }
 }
@@ -0,0 +1,127 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Body of a function, which is kept as tokens until it is first needed.
+ *
+ * <p>The parser only checks that the braces and parentheses of the body are
+ * balanced, the statements are parsed when the list is accessed for the first
+ * time, usually when {@link LoxFunction#call(Interpreter, List)} executes the body.
+ * The resolver cannot visit the statements before that, so it leaves a
+ * {@link #deferResolution(Function) deferred resolution} which runs right after parsing,
+ * and interpreters {@link #whenResolved(Consumer) wait} for its outcome.
+ */
+final class LazyFunctionBody extends AbstractList<Stmt> {
+
+    // Symbol id of the name of the function and the line it is declared at.
+    private final int name;
+    private final int line;
+
+    @Nullable
+    private List<Token> tokens;
+    @Nullable
+    private Function<List<Stmt>, Resolution> deferredResolution;
+    @Nullable
+    private Resolution resolution;
+    @NotNull
+    private final List<Consumer<Resolution>> resolutionListeners = new ArrayList<>();
+
+    @Nullable
+    private volatile List<Stmt> statements;
+
+    /**
+     * @param name of the function the body belongs to.
+     * @param tokens of the body without braces, the last one should be {@link Token.Type#EOF}.
+     */
+    LazyFunctionBody(@NotNull Token name, @NotNull List<Token> tokens) {
+        this.name = Names.idOf(name.lexeme());
+        this.line = name.line();
+        this.tokens = tokens;
+    }
+
+    boolean isParsed() {
+        return statements != null;
+    }
+
+    synchronized void deferResolution(@NotNull Function<List<Stmt>, Resolution> resolution) {
+        if (isParsed()) {
+            resolved(resolution.apply(statements));
+            return;
+        }
+        deferredResolution = resolution;
+    }
+
+    /**
+     * Passes the outcome of the deferred resolution to {@code listener}
+     * as soon as the body is resolved, or right away if it already is.
+     */
+    synchronized void whenResolved(@NotNull Consumer<Resolution> listener) {
+        if (resolution != null) {
+            listener.accept(resolution);
+            return;
+        }
+        resolutionListeners.add(listener);
+    }
+
+    private void resolved(@NotNull Resolution resolution) {
+        this.resolution = resolution;
+        for (Consumer<Resolution> listener: resolutionListeners) {
+            listener.accept(resolution);
+        }
+        resolutionListeners.clear();
+    }
+
+    @Override
+    public Stmt get(int index) {
+        return statements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return statements().size();
+    }
+
+    @NotNull
+    private List<Stmt> statements() {
+        List<Stmt> statements = this.statements;
+        if (statements != null) {
+            return statements;
+        }
+
+        synchronized (this) {
+            if (this.statements == null) {
+                Diagnostics diagnostics = new Diagnostics();
+                List<Stmt> parsed = new Parser(tokens.iterator(), true,
+                        Parser.ExpressionParser.PRATT, diagnostics).parse();
+
+                if (diagnostics.hasErrors()) {
+                    Diagnostic error = diagnostics.asList().get(0);
+                    throw new RuntimeError(line, String.format("Cannot parse body of '%s', line %d: %s",
+                            Names.of(name), error.line(), error.message()));
+                }
+
+                // Resolution errors are thrown before the body is published,
+                // so it is never executed unresolved.
+                Resolution resolution = deferredResolution != null ? deferredResolution.apply(parsed) : null;
+                deferredResolution = null;
+
+                this.statements = parsed;
+                // The tokens are not needed anymore.
+                tokens = null;
+
+                if (resolution != null) {
+                    resolved(resolution);
+                }
+            }
+            return this.statements;
+        }
+    }
+}
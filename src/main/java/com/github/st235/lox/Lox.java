@@ -1,19 +1,95 @@
 package com.github.st235.lox;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Lox {
 
+    /**
+     * How many parsed top-level statements the parser thread
+     * can get ahead of the interpreter in the streaming mode.
+     */
+    private static final int STREAMING_QUEUE_CAPACITY = 256;
+
+    // Marks the end of the script in the streaming mode.
+    private static final Streamed END_OF_SCRIPT = new Streamed(null, List.of());
+
+    // Modules imported by interactive or piped scripts are looked up relative to it.
+    private static final Path WORKING_DIRECTORY = Path.of("");
+
+    private static final String USAGE =
+            "Usage: jlox [--lazy] [--parallel] [--cache] [--tiered] [--tracing] [--profile=file] [--prelude=snapshot] [--flush=line|size|exit|interactive] [--check | --compile | --snapshot] [script | -]";
+
+    private static final String IMAGE_EXTENSION = ".loxc";
+    private static final String SNAPSHOT_EXTENSION = ".loxs";
+    private static final String PRELUDE_OPTION = "--prelude=";
+    private static final String PROFILE_OPTION = "--profile=";
+    private static final String FLUSH_OPTION = "--flush=";
+
     private static boolean shouldExitWithErrorCode = false;
 
+    // Lines printed before an error are written out ahead of it, see report.
+    @Nullable
+    private static Output output = null;
+
+    // Set by the --lazy option, see LazyFunctionBody.
+    private static boolean parseFunctionsLazily = false;
+
+    // Set by the --parallel option.
+    private static boolean resolveFunctionsInParallel = false;
+
+    // Set by the --cache option, see ProgramCache.
+    private static boolean shouldCachePrograms = false;
+
+    // Set by the --check option.
+    private static boolean shouldOnlyCheck = false;
+
+    // Set by the --compile option.
+    private static boolean shouldOnlyCompile = false;
+
+    // Set by the --tiered option, see Tiering.
+    private static boolean shouldTierUp = false;
+
+    // Set by the --tracing option, see Tracing.
+    private static boolean shouldTrace = false;
+
+    // Set by the --snapshot option.
+    private static boolean shouldTakeSnapshot = false;
+
+    // Set by the --prelude option, see SnapshotReader.
+    @Nullable
+    private static Path prelude = null;
+
+    // Set by the --profile option, see ProfileReader.
+    @Nullable
+    private static Path profile = null;
+
+    // Set by the --flush option, see Output.
+    @NotNull
+    private static Output.FlushPolicy flushPolicy = Output.FlushPolicy.INTERACTIVE;
+
     static void error(int line,
                       @NotNull String message) {
         report(line, "", message);
@@ -25,20 +101,83 @@ public class Lox {
     private static void report(int line,
                                @NotNull String where,
                                @NotNull String message) {
+        if (output != null) {
+            output.flush();
+        }
         System.err.printf("[line %d] Error %s: %s\n", line, where, message);
     }
 
     /**
      * Lox entry point.
-     * Supports to modes: running a supplied file or evaluating commands in the interactive mode.
+     * Supports three modes: running a supplied file, either a script or a program
+     * compiled into a {@code .loxc} image, running a script streamed
+     * through the standard input when the file is {@code -}, or evaluating commands in the interactive mode.
+     * Options go before the script:
+     * <ul>
+     *     <li>{@code --lazy} parses function bodies only when they are called for the first time.</li>
+     *     <li>{@code --parallel} resolves function bodies concurrently.</li>
+     *     <li>{@code --cache} keeps parsed and resolved scripts on disk and runs them from there
+     *     while they do not change, it has no effect together with {@code --lazy}.</li>
+     *     <li>{@code --tiered} moves functions and loops that run often to the bytecode virtual machine.</li>
+     *     <li>{@code --tracing} records hot loops and runs them as traces specialised for what they do.</li>
+     *     <li>{@code --profile=file} traces loops from the first iteration, specialised for what the profile
+     *     in the file has observed. If there is no profile of the script in the file yet, the script runs
+     *     interpreted while every value is observed, and the profile is written into the file.</li>
+     *     <li>{@code --compile} compiles the script into a {@code .loxc} image next to it instead of running it.</li>
+     *     <li>{@code --snapshot} runs the script and writes its global scope into a {@code .loxs}
+     *     snapshot next to it.</li>
+     *     <li>{@code --prelude=snapshot} starts from the global scope of the snapshot instead of an empty one.</li>
+     *     <li>{@code --check} reports every syntax and resolution error without running the script.</li>
+     *     <li>{@code --flush=policy} chooses when printed lines are written out: after every {@code line},
+     *     every few kilobytes ({@code size}), only when the buffer is full or the script ends ({@code exit}),
+     *     or after every line only if the output is a terminal ({@code interactive}, the default).</li>
+     * </ul>
      *
      * @param args command line arguments, supplied by JVM.
      * @throws IOException if the file is not found.
      */
     public static void main(String[] args) throws IOException {
+        int firstArgument = 0;
+        while (firstArgument < args.length && args[firstArgument].startsWith("--")) {
+            switch (args[firstArgument]) {
+                case "--lazy" -> parseFunctionsLazily = true;
+                case "--parallel" -> resolveFunctionsInParallel = true;
+                case "--cache" -> shouldCachePrograms = true;
+                case "--check" -> shouldOnlyCheck = true;
+                case "--compile" -> shouldOnlyCompile = true;
+                case "--snapshot" -> shouldTakeSnapshot = true;
+                case "--tiered" -> shouldTierUp = true;
+                case "--tracing" -> shouldTrace = true;
+                default -> {
+                    if (args[firstArgument].startsWith(PRELUDE_OPTION)) {
+                        prelude = Path.of(args[firstArgument].substring(PRELUDE_OPTION.length()));
+                    } else if (args[firstArgument].startsWith(PROFILE_OPTION)) {
+                        profile = Path.of(args[firstArgument].substring(PROFILE_OPTION.length()));
+                    } else if (args[firstArgument].startsWith(FLUSH_OPTION) && isFlushPolicy(args[firstArgument].substring(FLUSH_OPTION.length()))) {
+                        flushPolicy = Output.FlushPolicy.valueOf(args[firstArgument].substring(FLUSH_OPTION.length()).toUpperCase(Locale.ROOT));
+                    } else {
+                        System.out.println(USAGE);
+                        System.exit(64);
+                    }
+                }
+            }
+            firstArgument += 1;
+        }
+        args = Arrays.copyOfRange(args, firstArgument, args.length);
+
         if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+            System.out.println(USAGE);
             System.exit(64);
+        } else if (args.length == 1 && args[0].equals("-")) {
+            // Running a script piped through stdin.
+            runFromStream(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        } else if (args.length == 1 && shouldOnlyCompile) {
+            compileFile(args[0]);
+        } else if (args.length == 1 && shouldTakeSnapshot) {
+            snapshotFile(args[0]);
+        } else if (args.length == 1 && args[0].endsWith(IMAGE_EXTENSION)) {
+            // Running a compiled program.
+            runImage(args[0]);
         } else if (args.length == 1) {
             // Running a script file.
             runFromFile(args[0]);
@@ -48,9 +187,27 @@ public class Lox {
         }
     }
 
+    private static boolean isFlushPolicy(@NotNull String name) {
+        for (Output.FlushPolicy policy: Output.FlushPolicy.values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void runFromFile(@NotNull String file) throws IOException {
-        byte[] bytes = Files.readAllBytes(Path.of(file));
-        run(new String(bytes, Charset.defaultCharset()), new Interpreter());
+        Path path = Path.of(file).toAbsolutePath();
+        MappedByteBuffer script = map(path);
+
+        // Checking has nothing to run, and lazy bodies cannot be cached.
+        if (profile != null && !shouldOnlyCheck) {
+            runProfiled(script, path.getParent(), profile);
+        } else if (shouldCachePrograms && !parseFunctionsLazily && !shouldOnlyCheck) {
+            runCached(script, path.getParent(), newInterpreter());
+        } else {
+            run(new Utf8Source(script), path.getParent(), newInterpreter());
+        }
 
         if (shouldExitWithErrorCode) {
             // File run has finished, though there were errors
@@ -59,6 +216,131 @@ public class Lox {
         }
     }
 
+    private static void compileFile(@NotNull String file) throws IOException {
+        Path path = Path.of(file).toAbsolutePath();
+        // Every function body has to be compiled, so none of them is parsed lazily.
+        Program program = compile(new Utf8Source(map(path)), path.getParent(), false);
+
+        if (program == null) {
+            System.exit(65);
+        }
+
+        String name = path.getFileName().toString().replaceFirst("\\.lox$", "");
+        Files.write(path.resolveSibling(name + IMAGE_EXTENSION),
+                BytecodeCompiler.compile(program.statements(), program.resolution()));
+    }
+
+    private static void snapshotFile(@NotNull String file) throws IOException {
+        Path path = Path.of(file).toAbsolutePath();
+        // Lazy bodies cannot be written, so every function is parsed right away.
+        Program program = compile(new Utf8Source(map(path)), path.getParent(), false);
+
+        if (program == null) {
+            System.exit(65);
+        }
+
+        Interpreter interpreter = newInterpreter();
+        interpret(program, interpreter);
+
+        if (shouldExitWithErrorCode) {
+            System.exit(65);
+        }
+
+        byte[] snapshot;
+        try {
+            snapshot = SnapshotWriter.write(interpreter);
+        } catch (IllegalArgumentException exception) {
+            System.err.printf("Cannot take a snapshot of %s: %s\n", file, exception.getMessage());
+            System.exit(65);
+            return;
+        }
+
+        String name = path.getFileName().toString().replaceFirst("\\.lox$", "");
+        Files.write(path.resolveSibling(name + SNAPSHOT_EXTENSION), snapshot);
+    }
+
+    /**
+     * Creates an interpreter with the functions of native libraries, which starts from the global scope
+     * of the {@link #prelude} snapshot if there is one and tiers up or traces if asked to.
+     */
+    @NotNull
+    private static Interpreter newInterpreter() throws IOException {
+        return newInterpreter(shouldTrace ? new Tracing() : null);
+    }
+
+    /**
+     * @param tracing replaces the one of the {@code --tracing} option, if any.
+     */
+    @NotNull
+    private static Interpreter newInterpreter(@Nullable Tracing tracing) throws IOException {
+        output = Output.standard(flushPolicy);
+        Interpreter interpreter = new Interpreter(output, Interpreter.Dispatch.SWITCH);
+        // Native libraries on the class path, see NativeLibrary.
+        for (NativeFunction function: NativeBinding.load(Lox.class.getClassLoader())) {
+            interpreter.addFunction(function);
+        }
+        // Runs end with System.exit in many places, buffered lines are written out on the way.
+        Runtime.getRuntime().addShutdownHook(new Thread(interpreter::flush, "lox-output"));
+        if (shouldTierUp) {
+            interpreter.enableTiering(new Tiering());
+        }
+        if (tracing != null) {
+            interpreter.enableTracing(tracing);
+        }
+        if (prelude == null) {
+            return interpreter;
+        }
+
+        try {
+            SnapshotReader.restore(map(prelude), interpreter);
+        } catch (IllegalArgumentException | BufferUnderflowException exception) {
+            System.err.printf("Cannot restore %s: %s\n", prelude, exception.getMessage());
+            System.exit(65);
+        }
+        return interpreter;
+    }
+
+    private static void runImage(@NotNull String file) throws IOException {
+        Image image;
+        try {
+            image = Image.map(Path.of(file));
+        } catch (IllegalArgumentException | BufferUnderflowException exception) {
+            System.err.printf("Cannot load %s: %s\n", file, exception.getMessage());
+            System.exit(65);
+            return;
+        }
+
+        newInterpreter().interpret(image);
+
+        if (shouldExitWithErrorCode) {
+            System.exit(65);
+        }
+    }
+
+    private static void runFromStream(@NotNull Reader reader) throws IOException {
+        runStreaming(reader, newInterpreter());
+
+        if (shouldExitWithErrorCode) {
+            System.exit(65);
+        }
+    }
+
+    /**
+     * Maps the whole file into memory, so the scanner can read it
+     * without copying it onto the heap first.
+     */
+    @NotNull
+    private static MappedByteBuffer map(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large, scripts up to %d bytes are supported.", file, Integer.MAX_VALUE));
+            }
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
     /**
      * REPL
      * (print (eval (read)))
@@ -67,7 +349,7 @@ public class Lox {
         InputStreamReader inputStreamReader = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(inputStreamReader);
 
-        Interpreter interpreter = new Interpreter();
+        Interpreter interpreter = newInterpreter();
 
         while (true) {
             System.out.print("> ");
@@ -75,33 +357,254 @@ public class Lox {
             if (line == null) {
                 break;
             }
-            run(line, interpreter);
+            run(new StringSource(line), WORKING_DIRECTORY, interpreter);
+            interpreter.flush();
             // Error may happen, though it does not mean we should terminate the session.
             shouldExitWithErrorCode = false;
         }
     }
 
-    private static void run(@NotNull String rawScript,
+    /**
+     * @param directory of the script, imported modules are looked up relative to it.
+     */
+    private static void run(@NotNull SizedSource source,
+                            @NotNull Path directory,
                             @NotNull Interpreter interpreter) {
-        Scanner scanner = new Scanner(rawScript);
+        Program program = compile(source, directory, parseFunctionsLazily);
 
-        List<Token> tokens = scanner.scan();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+        if (program == null || shouldOnlyCheck) {
+            return;
+        }
 
-        if (shouldExitWithErrorCode) {
-            System.exit(65);
+        interpret(program, interpreter);
+    }
+
+    private static void runCached(@NotNull MappedByteBuffer script,
+                                  @NotNull Path directory,
+                                  @NotNull Interpreter interpreter) {
+        ProgramCache cache = ProgramCache.inUserCacheDirectory();
+        byte[] hash = ProgramCache.hash(script);
+
+        Program program = cache.load(hash, directory);
+        if (program == null) {
+            program = compile(new Utf8Source(script), directory, false);
+            if (program == null) {
+                return;
+            }
+            cache.store(hash, directory, program);
+        }
+
+        interpret(program, interpreter);
+    }
+
+    /**
+     * Runs the script traced with the profile from the file, or records the profile
+     * if the file does not hold one of this very script. The profile decides how
+     * the script is traced, so {@code --tracing} makes no difference.
+     */
+    private static void runProfiled(@NotNull MappedByteBuffer script,
+                                    @NotNull Path directory,
+                                    @NotNull Path profile) throws IOException {
+        Program program = compile(new Utf8Source(script), directory, parseFunctionsLazily);
+        if (program == null) {
             return;
         }
 
-        Resolver resolver = new Resolver(interpreter);
+        byte[] hash = ProgramCache.hash(script);
+        Map<Expr, Tracing.Observation> observations = null;
+        if (Files.exists(profile)) {
+            try {
+                observations = ProfileReader.read(map(profile), hash, program.statements());
+            } catch (IllegalArgumentException | BufferUnderflowException exception) {
+                // Recorded for another script or by another version, recording it anew.
+            }
+        }
+
+        if (observations != null) {
+            interpret(program, newInterpreter(new Tracing(observations)));
+            return;
+        }
+
+        Tracing recording = Tracing.recordingEverything();
+        interpret(program, newInterpreter(recording));
 
         if (shouldExitWithErrorCode) {
-            System.exit(65);
+            // Runs that fail halfway through do not tell much.
             return;
         }
 
-        resolver.resolve(statements);
-        interpreter.interpret(statements);
+        // Other runs of the script may be reading the profile right now.
+        Path temporary = Files.createTempFile(profile.toAbsolutePath().getParent(), "profile", ".tmp");
+        try {
+            Files.write(temporary, ProfileWriter.write(hash, program.statements(), recording.observations()));
+            Files.move(temporary, profile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Scans, parses and resolves a script, reporting every error.
+     *
+     * @return the program or {@code null} if it has errors.
+     */
+    @Nullable
+    private static Program compile(@NotNull SizedSource source,
+                                   @NotNull Path directory,
+                                   boolean parseFunctionsLazily) {
+        Scanner scanner = new Scanner(source);
+
+        List<Token> tokens = scanner.scan();
+        Parser parser = new Parser(tokens.iterator(), parseFunctionsLazily);
+        List<Stmt> statements = parser.parse();
+
+        // Even with syntax errors the statements around them are resolved,
+        // so a single run reports as many errors as possible.
+        Resolver resolver = new Resolver(resolveFunctionsInParallel, directory);
+        Resolution resolution = resolver.resolve(statements);
+        resolution.reportTo(Lox::error);
+
+        if (shouldExitWithErrorCode) {
+            return null;
+        }
+
+        return new Program(statements, resolution);
+    }
+
+    private static void interpret(@NotNull Program program,
+                                  @NotNull Interpreter interpreter) {
+        interpreter.resolve(program.resolution());
+        interpreter.interpret(program.statements());
+    }
+
+    /**
+     * Executes every top-level statement as soon as it is parsed,
+     * without waiting for the rest of the script.
+     *
+     * <p>Scanning and parsing happen on a separate thread, which hands
+     * statements over to the interpreter through a bounded queue. Neither the
+     * tokens nor the statements that were already executed are retained.
+     * Syntax errors travel through the queue too, at the place in the script
+     * they were found at, so execution stops at the first error
+     * and every statement before it has run.
+     */
+    static void runStreaming(@NotNull Reader reader,
+                             @NotNull Interpreter interpreter) {
+        BlockingQueue<Streamed> entries = new ArrayBlockingQueue<>(STREAMING_QUEUE_CAPACITY);
+        AtomicReference<RuntimeException> parserFailure = new AtomicReference<>();
+
+        Thread parserThread = new Thread(() -> {
+            try {
+                parseStreaming(reader, entries);
+            } catch (InterruptedException exception) {
+                // The interpreter has stopped, nobody is waiting for the rest of the script.
+                return;
+            } catch (RuntimeException exception) {
+                parserFailure.set(exception);
+            }
+
+            try {
+                entries.put(END_OF_SCRIPT);
+            } catch (InterruptedException ignored) {
+                // Same as above.
+            }
+        }, "lox-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+
+        Resolver resolver = new Resolver(resolveFunctionsInParallel, WORKING_DIRECTORY);
+        boolean hasFailed = false;
+
+        try {
+            while (true) {
+                Streamed entry = entries.take();
+                if (entry == END_OF_SCRIPT) {
+                    break;
+                }
+
+                for (Diagnostic error: entry.errors()) {
+                    error.reportTo(Lox::error);
+                    hasFailed = true;
+                }
+                if (hasFailed && !shouldOnlyCheck) {
+                    break;
+                }
+                if (entry.statement() == null) {
+                    continue;
+                }
+
+                List<Stmt> unit = List.of(entry.statement());
+                Resolution resolution = resolver.resolve(unit);
+                resolution.reportTo(Lox::error);
+                hasFailed |= resolution.hasErrors();
+
+                if (hasFailed || shouldOnlyCheck) {
+                    continue;
+                }
+
+                interpreter.resolve(resolution);
+                hasFailed = !interpreter.interpret(unit);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parserThread.interrupt();
+        }
+
+        RuntimeException failure = parserFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Puts the statements of the script into the queue, each one together with
+     * the syntax errors found in it or right before it.
+     */
+    private static void parseStreaming(@NotNull Reader reader,
+                                       @NotNull BlockingQueue<Streamed> entries) throws InterruptedException {
+        Diagnostics scanErrors = new Diagnostics();
+        Diagnostics parseErrors = new Diagnostics();
+        Iterator<Token> scanned = new Scanner(reader, scanErrors).tokens();
+
+        // The parser looks a token ahead, which is not a part of the statement it has just parsed,
+        // so the errors found while scanning up to that token belong to the statements after it.
+        List<Diagnostic> settledScanErrors = new ArrayList<>();
+        Iterator<Token> tokens = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return scanned.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                settledScanErrors.addAll(scanErrors.drain());
+                return scanned.next();
+            }
+        };
+
+        Parser parser = new Parser(tokens, parseFunctionsLazily, Parser.ExpressionParser.PRATT, parseErrors);
+        while (parser.hasNext()) {
+            Stmt statement = parser.next();
+
+            List<Diagnostic> errors = new ArrayList<>(settledScanErrors);
+            errors.addAll(parseErrors.drain());
+            settledScanErrors.clear();
+            entries.put(new Streamed(statement, errors));
+        }
+
+        List<Diagnostic> trailingErrors = scanErrors.drain();
+        if (!trailingErrors.isEmpty()) {
+            entries.put(new Streamed(null, trailingErrors));
+        }
+    }
+
+    /**
+     * Entry of the queue between the parser and the interpreter in the streaming mode.
+     *
+     * @param statement {@code null} if it could not be parsed.
+     * @param errors syntax errors found in the statement or right before it.
+     */
+    private record Streamed(@Nullable Stmt statement, @NotNull List<Diagnostic> errors) {
     }
-}
\ No newline at end of file
+}
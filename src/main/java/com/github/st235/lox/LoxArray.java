@@ -0,0 +1,197 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Array of Lox values, which grows as values are pushed onto it.
+ *
+ * <p>While every element is a number, the elements are kept unboxed in a {@code double[]}.
+ * Storing anything else moves them into an {@code Object[]} for good.
+ */
+final class LoxArray {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private static final double[] NO_NUMBERS = new double[0];
+
+    // Exactly one of them is set.
+    private double @Nullable [] numbers = NO_NUMBERS;
+    private Object @Nullable [] values = null;
+
+    private int size = 0;
+
+    LoxArray() {
+    }
+
+    /**
+     * @return an array of {@code size} copies of the value.
+     */
+    @NotNull
+    static LoxArray filled(int size, @Nullable Object value) {
+        LoxArray array = new LoxArray();
+        if (value instanceof Double number) {
+            array.numbers = new double[size];
+            Arrays.fill(array.numbers, number);
+        } else {
+            array.numbers = null;
+            array.values = new Object[size];
+            Arrays.fill(array.values, value);
+        }
+        array.size = size;
+        return array;
+    }
+
+    /**
+     * @return an array of the numbers, which it keeps instead of a copy.
+     */
+    @NotNull
+    static LoxArray ofNumbers(double @NotNull [] numbers) {
+        LoxArray array = new LoxArray();
+        array.numbers = numbers;
+        array.size = numbers.length;
+        return array;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean holdsNumbers() {
+        return numbers != null;
+    }
+
+    @Nullable
+    Object get(int line, @Nullable Object index) {
+        return elementAt(position(line, index));
+    }
+
+    /**
+     * @param position has to be less than the size, it is not checked.
+     */
+    @Nullable
+    Object elementAt(int position) {
+        return numbers != null ? (Object) numbers[position] : values[position];
+    }
+
+    void set(int line, @Nullable Object index, @Nullable Object value) {
+        int position = position(line, index);
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                numbers[position] = number;
+                return;
+            }
+            box();
+        }
+        values[position] = value;
+    }
+
+    void push(@Nullable Object value) {
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, grow(size));
+                }
+                numbers[size++] = number;
+                return;
+            }
+            box();
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * @return the last element, which is removed, or {@code nil} if the array is empty.
+     */
+    @Nullable
+    Object pop() {
+        if (size == 0) {
+            return null;
+        }
+
+        size -= 1;
+        if (numbers != null) {
+            return numbers[size];
+        }
+        Object value = values[size];
+        // Lets the value be collected.
+        values[size] = null;
+        return value;
+    }
+
+    /**
+     * Moves the elements into an array, where any value fits.
+     */
+    private void box() {
+        Object[] boxed = new Object[Math.max(numbers.length, MIN_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = numbers[i];
+        }
+        values = boxed;
+        numbers = null;
+    }
+
+    private static int grow(int capacity) {
+        int grown = Math.max(MIN_CAPACITY, capacity + (capacity >> 1));
+        if (grown < 0) {
+            throw new OutOfMemoryError("Arrays cannot be longer than " + Integer.MAX_VALUE + " elements.");
+        }
+        return grown;
+    }
+
+    private int position(int line, @Nullable Object index) {
+        if (!(index instanceof Double number) || number != Math.floor(number)) {
+            throw new RuntimeError(line, "Index must be an integer.");
+        }
+        if (number < 0 || number >= size) {
+            throw new RuntimeError(line,
+                    String.format("Index %d is out of bounds of array of length %d.", (long) (double) number, size));
+        }
+        return (int) (double) number;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        appendTo(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return text.toString();
+    }
+
+    /**
+     * Writes the elements as print does, an array inside itself as {@code [...]}.
+     */
+    private void appendTo(@NotNull StringBuilder text, @NotNull Set<LoxArray> enclosing) {
+        if (!enclosing.add(this)) {
+            text.append("[...]");
+            return;
+        }
+
+        text.append('[');
+        char[] digits = new char[NumberFormatter.MAX_LENGTH];
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+
+            Object value = elementAt(i);
+            if (value instanceof Double number) {
+                text.append(digits, 0, NumberFormatter.format(number, false, digits));
+            } else if (value instanceof LoxArray array) {
+                array.appendTo(text, enclosing);
+            } else {
+                text.append(value == null ? "nil" : value);
+            }
+        }
+        text.append(']');
+        enclosing.remove(this);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.st235.lox;
 
+import java.util.Arrays;
 import java.util.List;
 
 public interface LoxCallable {
@@ -8,4 +9,30 @@ public interface LoxCallable {
 
     Object call(Interpreter interpreter, List<Object> arguments);
 
+    /*
+     * Calls with as many arguments as the name says, which callers have checked against the arity.
+     * They spare callers a list per call, callables that can take arguments
+     * one by one override them, the rest get the arguments as a list.
+     */
+
+    default Object call0(Interpreter interpreter) {
+        return call(interpreter, List.of());
+    }
+
+    default Object call1(Interpreter interpreter, Object first) {
+        return call(interpreter, Arrays.asList(first));
+    }
+
+    default Object call2(Interpreter interpreter, Object first, Object second) {
+        return call(interpreter, Arrays.asList(first, second));
+    }
+
+    default Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+        return call(interpreter, Arrays.asList(first, second, third));
+    }
+
+    default Object call(Interpreter interpreter, Object[] arguments) {
+        return call(interpreter, Arrays.asList(arguments));
+    }
+
 }
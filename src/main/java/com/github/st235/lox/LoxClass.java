@@ -12,19 +12,24 @@ class LoxClass implements LoxCallable {
     final String name;
 
     @NotNull
-    final Map<String, LoxFunction> methods;
+    final Map<String, LoxMethod> methods;
 
     @Nullable
     private final LoxClass superclass;
 
     public LoxClass(@NotNull String name,
                     @Nullable LoxClass superclass,
-                    @NotNull Map<String, LoxFunction> methods) {
+                    @NotNull Map<String, LoxMethod> methods) {
         this.name = name;
         this.superclass = superclass;
         this.methods = methods;
     }
 
+    @Nullable
+    LoxClass superclass() {
+        return superclass;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -32,7 +37,7 @@ class LoxClass implements LoxCallable {
 
     @Override
     public int arity() {
-        LoxFunction initialiser = findMethod("init");
+        LoxMethod initialiser = findMethod("init");
         if (initialiser != null) {
             return initialiser.arity();
         }
@@ -41,8 +46,53 @@ class LoxClass implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, arguments.toArray());
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        LoxInstance instance = new LoxInstance(this);
+        LoxMethod initialiser = findMethod("init");
+        if (initialiser != null) {
+            initialiser.bind(instance).call0(interpreter);
+        }
+        return instance;
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object first) {
+        LoxInstance instance = new LoxInstance(this);
+        LoxMethod initialiser = findMethod("init");
+        if (initialiser != null) {
+            initialiser.bind(instance).call1(interpreter, first);
+        }
+        return instance;
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object first, Object second) {
+        LoxInstance instance = new LoxInstance(this);
+        LoxMethod initialiser = findMethod("init");
+        if (initialiser != null) {
+            initialiser.bind(instance).call2(interpreter, first, second);
+        }
+        return instance;
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+        LoxInstance instance = new LoxInstance(this);
+        LoxMethod initialiser = findMethod("init");
+        if (initialiser != null) {
+            initialiser.bind(instance).call3(interpreter, first, second, third);
+        }
+        return instance;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
         LoxInstance instance = new LoxInstance(this);
-        LoxFunction initialiser = findMethod("init");
+        LoxMethod initialiser = findMethod("init");
         if (initialiser != null) {
             initialiser.bind(instance).call(interpreter, arguments);
         }
@@ -50,7 +100,7 @@ class LoxClass implements LoxCallable {
     }
 
     @Nullable
-    LoxFunction findMethod(@NotNull String name) {
+    LoxMethod findMethod(@NotNull String name) {
         if (methods.containsKey(name)) {
             return methods.get(name);
         }
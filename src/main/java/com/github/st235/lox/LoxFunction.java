@@ -1,10 +1,11 @@
 package com.github.st235.lox;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
-class LoxFunction implements LoxCallable {
+class LoxFunction implements LoxMethod {
 
     @NotNull
     private final Stmt.Function declaration;
@@ -20,7 +21,22 @@ class LoxFunction implements LoxCallable {
     }
 
     @NotNull
-    LoxFunction bind(@NotNull LoxInstance instance) {
+    Stmt.Function declaration() {
+        return declaration;
+    }
+
+    @NotNull
+    Environment closure() {
+        return closure;
+    }
+
+    boolean isInitialiser() {
+        return isInitialiser;
+    }
+
+    @NotNull
+    @Override
+    public LoxFunction bind(@NotNull LoxInstance instance) {
         Environment environment = new Environment(closure);
         environment.define("this", instance);
         return new LoxFunction(declaration, environment, isInitialiser);
@@ -28,18 +44,100 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public int arity() {
-        return declaration.params.size();
+        return declaration.params.length;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, arguments.toArray());
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        CompiledFunction compiled = tierUp(interpreter);
+        if (compiled != null) {
+            return compiled.call0(interpreter);
+        }
+
+        return run(interpreter, new Environment(closure));
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object first) {
+        CompiledFunction compiled = tierUp(interpreter);
+        if (compiled != null) {
+            return compiled.call1(interpreter, first);
+        }
+
         Environment environment = new Environment(closure);
-        for (int i = 0; i < arguments.size(); i++) {
-            Token identifier = declaration.params.get(i);
-            Object value = arguments.get(i);
-            environment.define(identifier.lexeme(), value);
+        environment.define(parameter(0), first);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object first, Object second) {
+        CompiledFunction compiled = tierUp(interpreter);
+        if (compiled != null) {
+            return compiled.call2(interpreter, first, second);
         }
 
+        Environment environment = new Environment(closure);
+        environment.define(parameter(0), first);
+        environment.define(parameter(1), second);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+        CompiledFunction compiled = tierUp(interpreter);
+        if (compiled != null) {
+            return compiled.call3(interpreter, first, second, third);
+        }
+
+        Environment environment = new Environment(closure);
+        environment.define(parameter(0), first);
+        environment.define(parameter(1), second);
+        environment.define(parameter(2), third);
+        return run(interpreter, environment);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        CompiledFunction compiled = tierUp(interpreter);
+        if (compiled != null) {
+            return compiled.call(interpreter, arguments);
+        }
+
+        Environment environment = new Environment(closure);
+        for (int i = 0; i < arguments.length; i++) {
+            environment.define(parameter(i), arguments[i]);
+        }
+        return run(interpreter, environment);
+    }
+
+    /**
+     * @return the function compiled for the virtual machine, once it is hot enough.
+     */
+    @Nullable
+    private CompiledFunction tierUp(@NotNull Interpreter interpreter) {
+        Tiering tiering = interpreter.tiering();
+        if (tiering == null) {
+            return null;
+        }
+
+        Tiering.Code code = tiering.onCall(declaration, isInitialiser, interpreter);
+        return code == null ? null : new CompiledFunction(code.image(), code.prototype(), closure);
+    }
+
+    @NotNull
+    private String parameter(int index) {
+        return Names.of(declaration.params[index]);
+    }
+
+    /**
+     * Executes the body in the environment, where the arguments have been defined.
+     */
+    private Object run(@NotNull Interpreter interpreter, @NotNull Environment environment) {
         try {
             interpreter.executeBlock(declaration.body, environment);
         } catch (Return ret) {
@@ -58,6 +156,6 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public String toString() {
-        return String.format("<fn %s>", declaration.name.lexeme());
+        return String.format("<fn %s>", Names.of(declaration.name));
     }
 }
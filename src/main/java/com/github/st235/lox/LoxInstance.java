@@ -8,6 +8,9 @@ import java.util.Map;
 
 class LoxInstance {
 
+    // Stands for a missing property, as nil is a valid value of a field.
+    static final Object UNDEFINED = new Object();
+
     @NotNull
     private final LoxClass klass;
 
@@ -18,22 +21,48 @@ class LoxInstance {
         this.klass = klass;
     }
 
+    @NotNull
+    LoxClass klass() {
+        return klass;
+    }
+
+    @NotNull
+    Map<String, Object> fields() {
+        return fields;
+    }
+
+    /**
+     * @param line to report an undefined property at.
+     */
+    @Nullable
+    public Object get(@NotNull String name, int line) {
+        Object value = get(name);
+        if (value == UNDEFINED) {
+            throw new RuntimeError(line, String.format("Undefined property '%s'.", name));
+        }
+        return value;
+    }
+
+    /**
+     * @return the property or {@link #UNDEFINED} if there is none.
+     */
     @Nullable
-    public Object get(@NotNull Token name) {
-        if (fields.containsKey(name.lexeme())) {
-            return fields.get(name.lexeme());
+    Object get(@NotNull String name) {
+        Object value = fields.get(name);
+        if (value != null || fields.containsKey(name)) {
+            return value;
         }
 
-        LoxFunction function = klass.findMethod(name.lexeme());
-        if (function != null) {
-            return function.bind(this);
+        LoxMethod method = klass.findMethod(name);
+        if (method != null) {
+            return method.bind(this);
         }
 
-        throw new RuntimeError(name, String.format("Undefined property '%s'.", name.lexeme()));
+        return UNDEFINED;
     }
 
-    public void set(@NotNull Token name, @Nullable Object object) {
-        fields.put(name.lexeme(), object);
+    void set(@NotNull String name, @Nullable Object object) {
+        fields.put(name, object);
     }
 
     @Override
@@ -0,0 +1,15 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Function which can be a method of a {@link LoxClass}.
+ */
+interface LoxMethod extends LoxCallable {
+
+    /**
+     * @return the same function, where {@code this} refers to the instance.
+     */
+    @NotNull
+    LoxMethod bind(@NotNull LoxInstance instance);
+}
@@ -0,0 +1,19 @@
+package com.github.st235.lox;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes a public static method of a {@link NativeLibrary} a Lox function, see {@link NativeBinding}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface LoxNative {
+
+    /**
+     * @return the name of the function in Lox, the name of the method if empty.
+     */
+    String name() default "";
+}
@@ -0,0 +1,22 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A parsed and resolved script which other scripts can import.
+ *
+ * @param path canonical path of the script.
+ * @param diagnostics syntax and resolution errors, the module cannot be imported if there are any.
+ */
+record Module(@NotNull Path path,
+              @NotNull List<Stmt> statements,
+              @NotNull Resolution resolution,
+              @NotNull List<Diagnostic> diagnostics) {
+
+    boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Modules of the process, shared by every {@link Interpreter}.
+ *
+ * <p>A module is scanned, parsed and resolved once and then kept by its canonical path
+ * together with the hash of its content. Every load reads the file again and compiles
+ * it only if the content has changed, so the work scales with the modules that changed
+ * rather than with everything imported. Modules, including the ones they import,
+ * are {@link #prefetch(Path) prefetched} on the fork/join pool as soon as the resolver
+ * meets their imports, and a module loaded by several threads at once is compiled only once.
+ */
+final class ModuleCache {
+
+    private static final ModuleCache SHARED = new ModuleCache();
+
+    private record Entry(byte @NotNull [] hash, @NotNull CompletableFuture<Module> module) {}
+
+    @NotNull
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    @NotNull
+    static ModuleCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Starts loading a module in the background.
+     * Failures are ignored, they come up again when the module is imported.
+     */
+    void prefetch(@NotNull Path path) {
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                load(path);
+            } catch (IOException | RuntimeException ignored) {
+                // Same as above.
+            }
+        });
+    }
+
+    /**
+     * @param path canonical path of the module.
+     * @return the cached module, if its content has not changed since it was compiled.
+     * @throws java.util.concurrent.CompletionException if compiling the module has failed.
+     */
+    @NotNull
+    Module load(@NotNull Path path) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        byte[] hash = hash(content);
+
+        Entry created = new Entry(hash, new CompletableFuture<>());
+        Entry entry = entries.compute(path, (key, cached) ->
+                cached != null && Arrays.equals(cached.hash(), hash) ? cached : created);
+
+        if (entry == created) {
+            try {
+                created.module().complete(compile(path, content));
+            } catch (RuntimeException | StackOverflowError exception) {
+                // Otherwise threads loading the same module would wait for it forever.
+                created.module().completeExceptionally(exception);
+            }
+        }
+
+        return entry.module().join();
+    }
+
+    @NotNull
+    private static Module compile(@NotNull Path path, byte @NotNull [] content) {
+        Diagnostics diagnostics = new Diagnostics();
+
+        List<Token> tokens = new Scanner(new Utf8Source(ByteBuffer.wrap(content)), diagnostics).scan();
+        List<Stmt> statements = new Parser(tokens.iterator(), false, Parser.ExpressionParser.PRATT, diagnostics).parse();
+
+        Resolution resolution = new Resolver(false, path.getParent()).resolve(statements);
+        resolution.reportTo(diagnostics);
+
+        return new Module(path, statements, resolution, diagnostics.asList());
+    }
+
+    private static byte @NotNull [] hash(byte @NotNull [] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException exception) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(exception);
+        }
+    }
+}
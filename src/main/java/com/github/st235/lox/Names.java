@@ -0,0 +1,58 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol ids of the names in syntax trees. Nodes keep the id of a name
+ * instead of its token, the name itself is looked up with {@link #of(int)}.
+ *
+ * <p>Ids are shared by every script and module of the process, so trees parsed
+ * on different threads or read from the {@link ProgramCache} agree on them.
+ * Names are never forgotten, there are only as many of them as distinct identifiers.
+ */
+final class Names {
+
+    @NotNull
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+
+    // Grows under the lock, a name is stored before its id is handed out.
+    @NotNull
+    private static volatile String[] names = new String[256];
+    private static int size = 0;
+
+    private Names() {
+        // Private on purpose.
+    }
+
+    static int idOf(@NotNull String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (Names.class) {
+            id = IDS.get(name);
+            if (id != null) {
+                return id;
+            }
+
+            String[] names = Names.names;
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            Names.names = names;
+            IDS.put(name, size);
+            return size++;
+        }
+    }
+
+    @NotNull
+    static String of(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Turns {@link LoxNative} methods into native functions, which call them through method handles.
+ *
+ * <p>Parameters can be {@code double}, {@code boolean}, {@link String}, {@link LoxArray} or {@link Object},
+ * which takes any Lox value. Arguments are checked and unboxed by the handle, an argument of another type
+ * fails the call with a runtime error. Methods can return the same types or nothing, which is {@code nil}.
+ */
+final class NativeBinding {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle TO_NUMBER;
+    private static final MethodHandle TO_BOOLEAN;
+    private static final MethodHandle TO_STRING;
+    private static final MethodHandle TO_ARRAY;
+
+    static {
+        try {
+            TO_NUMBER = LOOKUP.findStatic(NativeBinding.class, "toNumber",
+                    MethodType.methodType(double.class, String.class, int.class, Object.class));
+            TO_BOOLEAN = LOOKUP.findStatic(NativeBinding.class, "toBoolean",
+                    MethodType.methodType(boolean.class, String.class, int.class, Object.class));
+            TO_STRING = LOOKUP.findStatic(NativeBinding.class, "toString",
+                    MethodType.methodType(String.class, String.class, int.class, Object.class));
+            TO_ARRAY = LOOKUP.findStatic(NativeBinding.class, "toArray",
+                    MethodType.methodType(LoxArray.class, String.class, int.class, Object.class));
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    private NativeBinding() {
+    }
+
+    /**
+     * @return functions of every library found by {@link ServiceLoader} in the class loader.
+     * @throws java.util.ServiceConfigurationError if a library cannot be loaded.
+     */
+    @NotNull
+    static List<NativeFunction> load(@NotNull ClassLoader classLoader) {
+        List<NativeFunction> functions = new ArrayList<>();
+        for (NativeLibrary library: ServiceLoader.load(NativeLibrary.class, classLoader)) {
+            functions.addAll(bind(library.getClass()));
+        }
+        return functions;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a {@link LoxNative} method is not public and static,
+     * has a type Lox cannot pass or return, or has the name of another one.
+     */
+    @NotNull
+    static List<NativeFunction> bind(@NotNull Class<?> library) {
+        List<NativeFunction> functions = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Method method: library.getMethods()) {
+            LoxNative annotation = method.getAnnotation(LoxNative.class);
+            if (annotation == null) {
+                continue;
+            }
+
+            String name = annotation.name().isEmpty() ? method.getName() : annotation.name();
+            if (!names.add(name)) {
+                throw new IllegalArgumentException(String.format("%s has more than one function %s.", library.getName(), name));
+            }
+            if (!Modifier.isStatic(method.getModifiers())) {
+                throw new IllegalArgumentException(String.format("%s.%s is not static.", library.getName(), method.getName()));
+            }
+
+            try {
+                functions.add(new MethodHandleFunction(name, adapt(name, LOOKUP.unreflect(method))));
+            } catch (IllegalAccessException exception) {
+                throw new IllegalArgumentException(String.format("%s.%s is not accessible.", library.getName(), method.getName()), exception);
+            }
+        }
+        return functions;
+    }
+
+    /**
+     * @return the handle taking and returning Lox values, {@code (Object...)Object}.
+     */
+    @NotNull
+    private static MethodHandle adapt(@NotNull String name, @NotNull MethodHandle method) {
+        MethodType type = method.type();
+        MethodHandle handle = method;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            Class<?> parameter = type.parameterType(i);
+            MethodHandle conversion;
+            if (parameter == double.class) {
+                conversion = TO_NUMBER;
+            } else if (parameter == boolean.class) {
+                conversion = TO_BOOLEAN;
+            } else if (parameter == String.class) {
+                conversion = TO_STRING;
+            } else if (parameter == LoxArray.class) {
+                conversion = TO_ARRAY;
+            } else if (parameter == Object.class) {
+                continue;
+            } else {
+                throw new IllegalArgumentException(String.format("%s cannot take %s.", name, parameter.getName()));
+            }
+            handle = MethodHandles.filterArguments(handle, i, MethodHandles.insertArguments(conversion, 0, name, i));
+        }
+
+        Class<?> result = type.returnType();
+        if (result != double.class && result != boolean.class && result != String.class
+                && result != LoxArray.class && result != Object.class && result != void.class) {
+            throw new IllegalArgumentException(String.format("%s cannot return %s.", name, result.getName()));
+        }
+        // Boxes the result, nothing becomes null.
+        return handle.asType(MethodType.genericMethodType(type.parameterCount()));
+    }
+
+    private static double toNumber(@NotNull String function, int index, Object value) {
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw argumentError(function, index, "a number");
+    }
+
+    private static boolean toBoolean(@NotNull String function, int index, Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        throw argumentError(function, index, "a boolean");
+    }
+
+    private static String toString(@NotNull String function, int index, Object value) {
+        if (Rope.isText(value)) {
+            return value.toString();
+        }
+        throw argumentError(function, index, "a string");
+    }
+
+    private static LoxArray toArray(@NotNull String function, int index, Object value) {
+        if (value instanceof LoxArray array) {
+            return array;
+        }
+        throw argumentError(function, index, "an array");
+    }
+
+    @NotNull
+    private static NativeError argumentError(@NotNull String function, int index, @NotNull String type) {
+        return new NativeError(String.format("Argument %d of %s must be %s.", index + 1, function, type));
+    }
+
+    /**
+     * Native function calling a handle, which takes as many arguments as the function.
+     */
+    private static final class MethodHandleFunction extends NativeFunction {
+
+        @NotNull
+        private final MethodHandle handle;
+        // Takes the arguments as an array, for the functions of more than three arguments.
+        @NotNull
+        private final MethodHandle spreader;
+
+        MethodHandleFunction(@NotNull String name, @NotNull MethodHandle handle) {
+            super(name, handle.type().parameterCount());
+            this.handle = handle;
+            this.spreader = handle.asSpreader(Object[].class, handle.type().parameterCount());
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return call(interpreter, arguments.toArray());
+        }
+
+        @Override
+        public Object call0(Interpreter interpreter) {
+            try {
+                return (Object) handle.invokeExact();
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        public Object call1(Interpreter interpreter, Object first) {
+            try {
+                return (Object) handle.invokeExact(first);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        public Object call2(Interpreter interpreter, Object first, Object second) {
+            try {
+                return (Object) handle.invokeExact(first, second);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+            try {
+                return (Object) handle.invokeExact(first, second, third);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments) {
+            try {
+                return (Object) spreader.invokeExact(arguments);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        /**
+         * Checked exceptions of the method fail the call, as they cannot be handled in Lox.
+         */
+        @NotNull
+        private RuntimeException rethrow(@NotNull Throwable throwable) {
+            if (throwable instanceof RuntimeException exception) {
+                return exception;
+            }
+            if (throwable instanceof Error error) {
+                throw error;
+            }
+            return new NativeError(String.format("%s has failed: %s", name, throwable.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.st235.lox;
+
+/**
+ * Thrown by a native function which cannot handle its arguments.
+ * The call is reported as a runtime error, as if Lox itself has failed it.
+ */
+public class NativeError extends RuntimeException {
+
+    public NativeError(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,14 @@ package com.github.st235.lox;
 
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Function implemented in Java. Arguments are Lox values: {@code null}, {@link Boolean}, {@link Double},
+ * strings, which are either {@link String} or {@link Rope}, so should be read with {@link Object#toString()},
+ * and runtime objects.
+ *
+ * <p>Arguments come as a list unless the function overrides {@link #call1(Interpreter, Object)}
+ * and the other calls of its arity, which take them one by one.
+ */
 public abstract class NativeFunction implements LoxCallable {
 
     @NotNull
@@ -0,0 +1,10 @@
+package com.github.st235.lox;
+
+/**
+ * Class of {@link LoxNative} functions.
+ *
+ * <p>Libraries listed in {@code META-INF/services/com.github.st235.lox.NativeLibrary}
+ * are found by {@link java.util.ServiceLoader}, see {@link NativeBinding#load(ClassLoader)}.
+ */
+public interface NativeLibrary {
+}
@@ -0,0 +1,135 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Turns numbers into text without going through {@link Double#toString(double)}
+ * for the numbers scripts usually deal with.
+ *
+ * <p>The layout is the one of {@link Double#toString(double)}: plain digits from {@code 0.001}
+ * up to {@code 10^7}, scientific notation outside. Between those bounds the digits are
+ * the shortest ones that parse back into the same number, found by scaling the number
+ * by powers of ten. Any other number is left to {@link Double#toString(double)}.
+ */
+final class NumberFormatter {
+
+    /**
+     * Enough for every text of {@link Double#toString(double)}, such as {@code -2.2250738585072014E-308}.
+     */
+    static final int MAX_LENGTH = 32;
+
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+
+    // Every integer up to it is a double, so is every one of POWERS_OF_TEN.
+    private static final long MAX_EXACT = 1L << 53;
+    // Scaling anything from MIN_PLAIN up by more than 10^18 goes past MAX_EXACT.
+    private static final double[] POWERS_OF_TEN = new double[19];
+    private static final long[] LONG_POWERS_OF_TEN = new long[19];
+    // The closest digits go first.
+    private static final int[] NEIGHBOURS = { 0, -1, 1 };
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private NumberFormatter() {
+    }
+
+    /**
+     * @return the number as string concatenation shows it, {@code 2.0} for two.
+     */
+    @NotNull
+    static String toString(double value) {
+        char[] text = new char[MAX_LENGTH];
+        return new String(text, 0, format(value, true, text));
+    }
+
+    /**
+     * Writes the number into the start of the array.
+     *
+     * @param keepsPointZero whether integers get {@code .0}, as in concatenation,
+     *                       or are printed as they are.
+     * @param text at least {@link #MAX_LENGTH} long.
+     * @return how many characters have been written.
+     */
+    static int format(double value, boolean keepsPointZero, char @NotNull [] text) {
+        int length = 0;
+        if (Double.doubleToRawLongBits(value) < 0 && !Double.isNaN(value)) {
+            text[length++] = '-';
+            value = -value;
+        }
+
+        if (value == 0 || (value >= 1 && value < MAX_PLAIN && value == (long) value)) {
+            length = writeDigits((long) value, text, length);
+            return keepsPointZero ? writePointZero(text, length) : length;
+        }
+
+        if (value >= MIN_PLAIN && value < MAX_PLAIN) {
+            for (int scale = 1; scale < POWERS_OF_TEN.length; scale++) {
+                double scaled = value * POWERS_OF_TEN[scale];
+                if (scaled >= MAX_EXACT) {
+                    break;
+                }
+
+                // Rounding the scaled number may be one off, so the neighbours are tried too.
+                long digits = Math.round(scaled);
+                for (int offset: NEIGHBOURS) {
+                    long candidate = digits + offset;
+                    // Dividing two exact doubles rounds the same way as parsing the decimal does.
+                    if (candidate > 0 && candidate / POWERS_OF_TEN[scale] == value) {
+                        return writeFraction(candidate, scale, text, length);
+                    }
+                }
+            }
+        }
+
+        String fallback = Double.toString(value);
+        fallback.getChars(0, fallback.length(), text, length);
+        return length + fallback.length();
+    }
+
+    private static int writeFraction(long digits, int scale, char @NotNull [] text, int length) {
+        // A neighbour of the rounded digits may end with zeros, they are not needed.
+        while (scale > 1 && digits % 10 == 0) {
+            digits /= 10;
+            scale -= 1;
+        }
+
+        long unit = LONG_POWERS_OF_TEN[scale];
+        length = writeDigits(digits / unit, text, length);
+        text[length++] = '.';
+
+        long fraction = digits % unit;
+        for (long position = unit / 10; position > 0; position /= 10) {
+            text[length++] = (char) ('0' + fraction / position % 10);
+        }
+        return length;
+    }
+
+    private static int writeDigits(long value, char @NotNull [] text, int length) {
+        int end = length;
+        long rest = value;
+        do {
+            end += 1;
+            rest /= 10;
+        } while (rest > 0);
+
+        for (int i = end - 1; i >= length; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static int writePointZero(char @NotNull [] text, int length) {
+        text[length++] = '.';
+        text[length++] = '0';
+        return length;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.st235.lox;
+
+/**
+ * Instructions of the {@link VirtualMachine}.
+ *
+ * <p>Every instruction is a single byte followed by its operands,
+ * which are noted next to it. Names are indices of string constants,
+ * jump targets are offsets from the start of the function code.
+ */
+final class OpCode {
+
+    static final byte CONSTANT = 0;         // constant: int
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+
+    static final byte GET_LOCAL = 5;        // depth: short, name: int
+    static final byte SET_LOCAL = 6;        // depth: short, name: int
+    static final byte GET_GLOBAL = 7;       // name: int
+    static final byte SET_GLOBAL = 8;       // name: int
+    static final byte DEFINE = 9;           // name: int
+
+    static final byte GET_PROPERTY = 10;    // name: int
+    static final byte SET_PROPERTY = 11;    // name: int
+    static final byte ENSURE_INSTANCE = 12;
+    static final byte GET_SUPER = 13;       // depth: short, name: int
+
+    static final byte EQUAL = 14;
+    static final byte NOT_EQUAL = 15;
+    static final byte GREATER = 16;
+    static final byte GREATER_EQUAL = 17;
+    static final byte LESS = 18;
+    static final byte LESS_EQUAL = 19;
+    static final byte ADD = 20;
+    static final byte SUBTRACT = 21;
+    static final byte MULTIPLY = 22;
+    static final byte DIVIDE = 23;
+    static final byte NOT = 24;
+    static final byte NEGATE = 25;
+
+    static final byte PRINT = 26;
+    static final byte JUMP = 27;            // target: int
+    static final byte JUMP_IF_FALSE = 28;   // target: int, keeps the condition
+    static final byte JUMP_IF_TRUE = 29;    // target: int, keeps the condition
+    static final byte CALL = 30;            // arguments: unsigned byte
+    static final byte CLOSURE = 31;         // prototype: int
+    static final byte RETURN = 32;
+
+    static final byte BEGIN_SCOPE = 33;
+    static final byte END_SCOPE = 34;
+    static final byte INHERIT = 35;
+    static final byte CLASS = 36;           // name: int, methods: short, has superclass: byte
+    static final byte IMPORT = 37;          // path: int
+
+    // Superinstructions, each of them does the work of a common sequence of the instructions above.
+    static final byte ADD_LOCAL_CONSTANT = 38;  // depth: short, name: int, constant: int, x = x + c
+    static final byte LESS_LOCALS = 39;         // depth: short, name: int, depth: short, name: int, x < y
+    static final byte LESS_LOCAL_CONSTANT = 40; // depth: short, name: int, constant: int, x < c
+    static final byte PRINT_LOCAL = 41;         // depth: short, name: int, print x
+    static final byte PRINT_GLOBAL = 42;        // name: int, print x
+    static final byte GET_THIS_PROPERTY = 43;   // depth: short, name: int, this.x
+
+    // Returns from the interpreted function around a loop replaced on the stack, see Tiering.
+    static final byte UNWIND_RETURN = 44;
+
+    static final byte GET_INDEX = 45;
+    static final byte SET_INDEX = 46;
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Where {@code print} statements write to.
+ *
+ * <p>Lines are encoded into one reused buffer and written to the channel
+ * when the {@link FlushPolicy} says so, which saves a system call per line
+ * when a script prints a lot. Like the {@link java.io.PrintWriter} it replaces,
+ * it drops the output silently once writing has failed, for example because
+ * the reading end of a pipe has been closed.
+ *
+ * <p>Printing and flushing are synchronized, as a shutdown hook may flush
+ * the output while the interpreter is still printing.
+ */
+final class Output {
+
+    enum FlushPolicy {
+        // Writes every line right away.
+        LINE,
+        // Writes once there are SIZE_THRESHOLD bytes buffered.
+        SIZE,
+        // Writes only when the buffer is full, and when the run ends.
+        EXIT,
+        // LINE when someone is watching the terminal, SIZE otherwise.
+        INTERACTIVE,
+    }
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int SIZE_THRESHOLD = 8 * 1024;
+
+
+    @NotNull
+    private final WritableByteChannel channel;
+    @NotNull
+    private final FlushPolicy policy;
+    // Whatever went through System.out, such as the prompt, has to come out first.
+    private final boolean isStandardOutput;
+
+    @NotNull
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    @NotNull
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Numbers are formatted into it, and encoded from there.
+    private final char @NotNull [] digits = new char[NumberFormatter.MAX_LENGTH];
+    @NotNull
+    private final CharBuffer digitsBuffer = CharBuffer.wrap(digits);
+    @NotNull
+    private final CharBuffer lineSeparator = CharBuffer.wrap(System.lineSeparator());
+
+    private boolean hasFailed = false;
+
+    Output(@NotNull OutputStream outputStream, @NotNull FlushPolicy policy) {
+        this(Channels.newChannel(outputStream), policy, false);
+    }
+
+    private Output(@NotNull WritableByteChannel channel,
+                   @NotNull FlushPolicy policy,
+                   boolean isStandardOutput) {
+        this.channel = channel;
+        this.policy = policy == FlushPolicy.INTERACTIVE
+                ? (System.console() != null ? FlushPolicy.LINE : FlushPolicy.SIZE)
+                : policy;
+        this.isStandardOutput = isStandardOutput;
+    }
+
+    /**
+     * Writes to the file descriptor of the standard output,
+     * without going through the buffers of {@link System#out}.
+     */
+    @NotNull
+    static Output standard(@NotNull FlushPolicy policy) {
+        return new Output(new FileOutputStream(FileDescriptor.out).getChannel(), policy, true);
+    }
+
+    @NotNull
+    FlushPolicy policy() {
+        return policy;
+    }
+
+    synchronized void println(@NotNull CharSequence text) {
+        encode(CharBuffer.wrap(text));
+        endLine();
+    }
+
+    /**
+     * Prints the number as Lox does, integers without {@code .0}.
+     */
+    synchronized void println(double number) {
+        digitsBuffer.clear().limit(NumberFormatter.format(number, false, digits));
+        encode(digitsBuffer);
+        endLine();
+    }
+
+    private void endLine() {
+        encode(lineSeparator.rewind());
+
+        switch (policy) {
+            case LINE -> flush();
+            case SIZE -> {
+                if (buffer.position() >= SIZE_THRESHOLD) {
+                    flush();
+                }
+            }
+            // A full buffer is written while encoding.
+            case EXIT, INTERACTIVE -> {
+            }
+        }
+    }
+
+    synchronized void flush() {
+        if (isStandardOutput) {
+            System.out.flush();
+        }
+
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining() && !hasFailed) {
+                channel.write(buffer);
+            }
+        } catch (IOException exception) {
+            hasFailed = true;
+        }
+        buffer.clear();
+    }
+
+    private void encode(@NotNull CharBuffer characters) {
+        encoder.reset();
+        while (encoder.encode(characters, buffer, true).isOverflow()) {
+            flush();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flush();
+        }
+    }
+}
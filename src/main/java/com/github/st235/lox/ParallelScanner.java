@@ -0,0 +1,143 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Scans a large source by splitting it at line boundaries and running
+ * one {@link Scanner} per chunk on the common fork/join pool.
+ *
+ * <p>Comments and every token but strings end at a newline, so a chunk
+ * can be scanned on its own as long as it does not start in the middle of
+ * a multi-line string literal. When a chunk finishes inside of an open
+ * string, the chunks that follow it are re-scanned sequentially from where
+ * the literal begins up to the chunk holding its closing quote.
+ */
+final class ParallelScanner {
+
+    private ParallelScanner() {
+        // Private on purpose.
+    }
+
+    @NotNull
+    static List<Token> scan(@NotNull SizedSource source,
+                            int minChunkSize,
+                            @NotNull ErrorReporter reporter) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int[] bounds = split(source, Math.max(1, Math.max(minChunkSize / 4, source.length() / (pool.getParallelism() * 4))));
+
+        Map<String, String> symbols = new ConcurrentHashMap<>();
+        List<ForkJoinTask<Scanner.Chunk>> tasks = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            tasks.add(pool.submit(() -> Scanner.scanChunk(source, from, to, 1, symbols)));
+        }
+
+        List<Token> tokens = new ArrayList<>();
+        // Number of lines in all chunks stitched so far.
+        int linesBefore = 0;
+
+        int index = 0;
+        while (index < tasks.size()) {
+            Scanner.Chunk chunk = tasks.get(index).join();
+            index += 1;
+
+            while (chunk.hasUnterminatedString() && index < tasks.size()) {
+                // Everything after the opening quote was scanned from a wrong state.
+                // Find the chunk where the literal is closed and re-scan up to its end.
+                int closingQuote = indexOf(source, '"', bounds[index]);
+                int end = index;
+                while (end < tasks.size() && bounds[end + 1] <= closingQuote) {
+                    end += 1;
+                }
+                end = Math.min(end + 1, tasks.size());
+
+                Scanner.Chunk tail = Scanner.scanChunk(source,
+                        chunk.unterminatedStringStart(), bounds[end], chunk.unterminatedStringLine(), symbols);
+                chunk = merge(chunk, tail);
+                index = end;
+            }
+
+            for (Token token: chunk.tokens()) {
+                tokens.add(rebase(token, linesBefore));
+            }
+            for (Diagnostic diagnostic: chunk.diagnostics()) {
+                reporter.error(diagnostic.line() + linesBefore, diagnostic.message());
+            }
+            if (chunk.hasUnterminatedString()) {
+                Scanner.reportUnterminatedString(chunk.lastLine() + linesBefore, reporter);
+            }
+
+            linesBefore += chunk.lastLine() - 1;
+        }
+
+        tokens.add(Token.from(Token.Type.EOF, linesBefore + 1));
+        return tokens;
+    }
+
+    /**
+     * Returns positions the chunks start at, followed by the length of the source.
+     * Every chunk but the first one starts right after a newline.
+     */
+    @NotNull
+    private static int[] split(@NotNull SizedSource source, int chunkSize) {
+        int length = source.length();
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+
+        int position = chunkSize;
+        while (position < length) {
+            int newline = indexOf(source, '\n', position);
+            if (newline >= length - 1) {
+                break;
+            }
+            bounds.add(newline + 1);
+            position = newline + 1 + chunkSize;
+        }
+
+        bounds.add(length);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int indexOf(@NotNull SizedSource source, char c, int from) {
+        int length = source.length();
+        for (int i = from; i < length; i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Replaces whatever {@code head} produced from the beginning of its
+     * unterminated string onwards with {@code tail}, which was scanned from that position.
+     */
+    @NotNull
+    private static Scanner.Chunk merge(@NotNull Scanner.Chunk head, @NotNull Scanner.Chunk tail) {
+        List<Token> tokens = new ArrayList<>(head.tokens().size() + tail.tokens().size());
+        tokens.addAll(head.tokens());
+        tokens.addAll(tail.tokens());
+
+        List<Diagnostic> diagnostics = new ArrayList<>(head.diagnostics());
+        diagnostics.addAll(tail.diagnostics());
+
+        return new Scanner.Chunk(tokens, diagnostics, tail.lastLine(),
+                tail.unterminatedStringStart(), tail.unterminatedStringLine());
+    }
+
+    @NotNull
+    private static Token rebase(@NotNull Token token, int linesBefore) {
+        if (linesBefore == 0) {
+            return token;
+        }
+        return Token.from(token.type(), token.lexeme(), token.literal(), token.line() + linesBefore);
+    }
+}
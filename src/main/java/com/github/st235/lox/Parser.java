@@ -4,47 +4,165 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public final class Parser {
 
-    private final List<Token> tokens;
+    /**
+     * Strategies to parse expressions with. Both produce identical trees,
+     * recursive descent is kept around as the reference implementation.
+     */
+    enum ExpressionParser {
+        PRATT,
+        RECURSIVE_DESCENT,
+    }
+
+    // Binding powers of operators that can continue an expression, from the loosest to the tightest.
+    private static final int ASSIGNMENT = 1;
+    private static final int OR = 2;
+    private static final int AND = 3;
+    private static final int EQUALITY = 4;
+    private static final int COMPARISON = 5;
+    private static final int TERM = 6;
+    private static final int FACTOR = 7;
+    private static final int UNARY = 8;
+    private static final int CALL = 9;
+
+    // Indexed by Token.Type#ordinal, tokens that cannot continue an expression have zero.
+    private static final int[] BINDING_POWERS = new int[Token.Type.values().length];
+
+    static {
+        bind(ASSIGNMENT, Token.Type.EQUAL);
+        bind(OR, Token.Type.OR);
+        bind(AND, Token.Type.AND);
+        bind(EQUALITY, Token.Type.EQUAL_EQUAL, Token.Type.NOT_EQUAL);
+        bind(COMPARISON, Token.Type.LESS_EQUAL, Token.Type.LESS, Token.Type.GREATER_EQUAL, Token.Type.GREATER);
+        bind(TERM, Token.Type.PLUS, Token.Type.MINUS);
+        bind(FACTOR, Token.Type.STAR, Token.Type.SLASH);
+        bind(CALL, Token.Type.LEFT_BRACE, Token.Type.DOT, Token.Type.LEFT_BRACKET);
+    }
+
+    private static void bind(int bindingPower, @NotNull Token.Type... types) {
+        for (Token.Type type: types) {
+            BINDING_POWERS[type.ordinal()] = bindingPower;
+        }
+    }
+
+    @NotNull
+    private final Iterator<Token> tokens;
+
+    private final boolean parseFunctionsLazily;
+
+    @NotNull
+    private final ExpressionParser expressionParser;
+
+    @NotNull
+    private final ErrorReporter reporter;
+
+    // The parser never looks further than one token ahead,
+    // so only the current and the previous tokens are kept around.
+    @NotNull
+    private Token current;
+    @Nullable
+    private Token previous;
+
+    Parser(@NotNull List<Token> tokens) {
+        this(tokens.iterator());
+    }
 
-    private int pointer;
+    Parser(@NotNull Iterator<Token> tokens) {
+        this(tokens, false);
+    }
 
-    Parser(List<Token> tokens) {
+    /**
+     * @param tokens tokens to parse, the last one should be {@link Token.Type#EOF}.
+     * @param parseFunctionsLazily if {@code true}, function bodies are kept as tokens
+     *                             until they are executed, see {@link LazyFunctionBody}.
+     */
+    Parser(@NotNull Iterator<Token> tokens, boolean parseFunctionsLazily) {
+        this(tokens, parseFunctionsLazily, ExpressionParser.PRATT);
+    }
+
+    Parser(@NotNull Iterator<Token> tokens,
+           boolean parseFunctionsLazily,
+           @NotNull ExpressionParser expressionParser) {
+        this(tokens, parseFunctionsLazily, expressionParser, Lox::error);
+    }
+
+    Parser(@NotNull Iterator<Token> tokens,
+           boolean parseFunctionsLazily,
+           @NotNull ExpressionParser expressionParser,
+           @NotNull ErrorReporter reporter) {
         this.tokens = tokens;
-        this.pointer = 0;
+        this.parseFunctionsLazily = parseFunctionsLazily;
+        this.expressionParser = expressionParser;
+        this.reporter = reporter;
+        this.current = tokens.next();
     }
 
+    /**
+     * Parses the whole script. Syntax errors do not stop parsing: each one is
+     * reported, the parser skips to the start of the next statement and carries on,
+     * so the returned statements are whatever could be parsed around the errors.
+     */
     public List<Stmt> parse() {
         List<Stmt> out = new ArrayList<>();
 
-        while (!isAtEnd()) {
-            out.add(declaration());
+        while (hasNext()) {
+            Stmt statement = next();
+            if (statement != null) {
+                out.add(statement);
+            }
         }
 
         return out;
     }
 
+    /**
+     * @return {@code true} if there are top-level declarations left to parse.
+     */
+    boolean hasNext() {
+        return !isAtEnd();
+    }
+
+    /**
+     * Parses a single top-level declaration, consuming only the tokens it spans.
+     *
+     * @return the declaration or {@code null} if it has a syntax error, which has already been reported.
+     */
+    @Nullable
+    Stmt next() {
+        return declaration();
+    }
+
+    @Nullable
     private Stmt declaration() {
         try {
             if (match(Token.Type.VAR)) return varStatement();
             if (match(Token.Type.FUNCTION)) return funStatement("function");
             if (match(Token.Type.CLASS)) return classStatement();
+            if (match(Token.Type.IMPORT)) return importStatement();
             return statement();
-        } catch (RuntimeError error) {
+        } catch (ParsingException error) {
             synchronize();
             return null;
         }
     }
 
+    private Stmt importStatement() {
+        Token keyword = previous();
+        Token path = consume(Token.Type.STRING, "Expect module path after 'import'.");
+        consume(Token.Type.SEMICOLON, "Expect ';' after module path.");
+        return new Stmt.Import(keyword.line(), (String) path.literal());
+    }
+
     private Stmt classStatement() {
         Token name = consume(Token.Type.IDENTIFIER, "Expect class name.");
 
         Expr.Variable superclass = null;
         if (match(Token.Type.LESS)) {
-            superclass = new Expr.Variable(consume(Token.Type.IDENTIFIER, "Expect superclass name."));
+            superclass = variable(consume(Token.Type.IDENTIFIER, "Expect superclass name."));
         }
 
         consume(Token.Type.LEFT_PARENTHESIS, "Expect '{' before class body.");
@@ -55,7 +173,7 @@ public final class Parser {
         }
         consume(Token.Type.RIGHT_PARENTHESIS, "Expect '}' after class body.");
 
-        return new Stmt.Class(name, superclass, methods);
+        return new Stmt.Class(name.line(), symbolOf(name), superclass, methods);
     }
 
     private Stmt.Function funStatement(@NotNull String kind) {
@@ -67,7 +185,7 @@ public final class Parser {
         if (!check(Token.Type.RIGHT_BRACE)) {
             do {
                 if (parameters.size() >= 255) {
-                    Lox.error(peek().line(), "Can't have more than 255 parameters.");
+                    reporter.error(peek().line(), "Can't have more than 255 parameters.");
                 }
                 parameters.add(consume(Token.Type.IDENTIFIER, "Expect parameter name."));
             } while (match(Token.Type.COMA));
@@ -76,8 +194,48 @@ public final class Parser {
         consume(Token.Type.RIGHT_BRACE, "Expect ')' after parameters.");
 
         consume(Token.Type.LEFT_PARENTHESIS, String.format("Expect '{' before %s body.", kind));
-        List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        List<Stmt> body = parseFunctionsLazily ? skipBlock(name) : block();
+        int[] params = parameters.stream().mapToInt(Parser::symbolOf).toArray();
+        return new Stmt.Function(name.line(), symbolOf(name), params, body);
+    }
+
+    /**
+     * Skips the rest of a block, only checking that braces
+     * and parentheses are balanced.
+     */
+    private List<Stmt> skipBlock(@NotNull Token name) {
+        List<Token> body = new ArrayList<>();
+        int braces = 0;
+        int parentheses = 0;
+
+        while (!isAtEnd()) {
+            Token token = peek();
+
+            switch (token.type()) {
+                case LEFT_PARENTHESIS -> braces += 1;
+                case RIGHT_PARENTHESIS -> braces -= 1;
+                case LEFT_BRACE -> parentheses += 1;
+                case RIGHT_BRACE -> parentheses -= 1;
+            }
+
+            if (braces < 0) {
+                break;
+            }
+
+            if (parentheses < 0) {
+                throw error(token, "Unexpected ')' in function body.");
+            }
+
+            body.add(advance());
+        }
+
+        Token closingBrace = consume(Token.Type.RIGHT_PARENTHESIS, "Expect '}' after block.");
+        if (parentheses != 0) {
+            throw error(closingBrace, "Expect ')' before '}'.");
+        }
+
+        body.add(Token.from(Token.Type.EOF, closingBrace.line()));
+        return new LazyFunctionBody(name, body);
     }
 
     private Stmt varStatement() {
@@ -89,12 +247,12 @@ public final class Parser {
         }
 
         consume(Token.Type.SEMICOLON, "Expect ';' after variable declaration.");
-        return new Stmt.Var(name, expression);
+        return new Stmt.Var(name.line(), symbolOf(name), expression);
     }
 
     private Stmt statement() {
         if (match(Token.Type.PRINT)) return printStatement();
-        if (match(Token.Type.LEFT_PARENTHESIS)) return new Stmt.Block(block());
+        if (match(Token.Type.LEFT_PARENTHESIS)) return new Stmt.Block(previous().line(), block());
         if (match(Token.Type.IF)) return ifStatement();
         if (match(Token.Type.WHILE)) return whileStatement();
         if (match(Token.Type.FOR)) return forStatement();
@@ -110,10 +268,11 @@ public final class Parser {
             expr = expression();
         }
         consume(Token.Type.SEMICOLON, "Expect ';' after return value.");
-        return new Stmt.Return(keyword, expr);
+        return new Stmt.Return(keyword.line(), expr);
     }
 
     private Stmt forStatement() {
+        int line = previous().line();
         consume(Token.Type.LEFT_BRACE, "Expect '(' after for.");
 
         Stmt initialiser;
@@ -141,30 +300,32 @@ public final class Parser {
 
         // Desugaring for loop into a while loop.
         if (increment != null) {
-            body = new Stmt.Block(List.of(body, new Stmt.Expression(increment)));
+            body = new Stmt.Block(line, List.of(body, new Stmt.Expression(increment.line, increment)));
         }
 
         if (condition == null) {
-            condition = new Expr.Literal(true);
+            condition = new Expr.Literal(line, true);
         }
-        body = new Stmt.While(condition, body);
+        body = new Stmt.While(line, condition, body);
 
         if (initialiser != null) {
-            body = new Stmt.Block(List.of(initialiser, body));
+            body = new Stmt.Block(line, List.of(initialiser, body));
         }
 
         return body;
     }
 
     private Stmt whileStatement() {
+        int line = previous().line();
         consume(Token.Type.LEFT_BRACE, "Expect '(' after while.");
         Expr condition = expression();
         consume(Token.Type.RIGHT_BRACE, "Expect ')' after condition.");
         Stmt body = statement();
-        return new Stmt.While(condition, body);
+        return new Stmt.While(line, condition, body);
     }
 
     private Stmt ifStatement() {
+        int line = previous().line();
         consume(Token.Type.LEFT_BRACE, "Expect '(' after 'if'.");
         Expr condition = expression();
         consume(Token.Type.RIGHT_BRACE, "Expect ')' after if condition.");
@@ -175,52 +336,103 @@ public final class Parser {
             elseBranch = statement();
         }
 
-        return new Stmt.If(condition, thenBranch, elseBranch);
+        return new Stmt.If(line, condition, thenBranch, elseBranch);
     }
 
     private Stmt printStatement() {
+        int line = previous().line();
         Expr expr = expression();
         consume(Token.Type.SEMICOLON, "Expected ';' after value.");
-        return new Stmt.Print(expr);
+        return new Stmt.Print(line, expr);
     }
 
     private List<Stmt> block() {
         List<Stmt> statements = new ArrayList<>();
 
         while (!check(Token.Type.RIGHT_PARENTHESIS) && !isAtEnd()) {
-            statements.add(declaration());
+            Stmt statement = declaration();
+            if (statement != null) {
+                statements.add(statement);
+            }
         }
 
-        consume(Token.Type.RIGHT_PARENTHESIS, "Expect '} after block.");
+        consume(Token.Type.RIGHT_PARENTHESIS, "Expect '}' after block.");
         return statements;
     }
 
     private Stmt expressionStatement() {
         Expr expr = expression();
         consume(Token.Type.SEMICOLON, "Expected ';' after expression.");
-        return new Stmt.Expression(expr);
+        return new Stmt.Expression(expr.line, expr);
     }
 
     private Expr expression() {
+        if (expressionParser == ExpressionParser.PRATT) {
+            return expression(0);
+        }
         return assignment();
     }
 
+    /**
+     * Pratt parser: parses a prefix expression, then keeps extending it
+     * while the next operator binds tighter than {@code minBindingPower}.
+     */
+    private Expr expression(int minBindingPower) {
+        Expr left = prefix();
+
+        while (true) {
+            Token operator = peek();
+            int bindingPower = BINDING_POWERS[operator.type().ordinal()];
+            if (bindingPower <= minBindingPower) {
+                return left;
+            }
+            advance();
+
+            left = switch (operator.type()) {
+                case LEFT_BRACE -> finishCall(left);
+                case DOT -> get(left, consume(Token.Type.IDENTIFIER, "Expect property name after '.'."));
+                case LEFT_BRACKET -> finishIndex(left);
+                // Assignment is right-associative, so its value is parsed with a lower binding power.
+                case EQUAL -> assignment(left, operator, expression(bindingPower - 1));
+                case OR, AND -> new Expr.Logical(operator.line(), left, operator.type(), expression(bindingPower));
+                default -> new Expr.Binary(operator.line(), left, operator.type(), expression(bindingPower));
+            };
+        }
+    }
+
+    private Expr prefix() {
+        Token.Type type = peek().type();
+        if (type == Token.Type.MINUS || type == Token.Type.NOT) {
+            Token operator = advance();
+            return new Expr.Unary(operator.line(), operator.type(), expression(UNARY));
+        }
+        return primary();
+    }
+
+    private Expr assignment(@NotNull Expr target, @NotNull Token equals, @NotNull Expr value) {
+        if (target instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable) target;
+            return new Expr.Assign(variable.line, variable.name, value);
+        } else if (target instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get) target;
+            return new Expr.Set(get.line, get.object, get.name, value);
+        } else if (target instanceof Expr.Index) {
+            Expr.Index index = (Expr.Index) target;
+            return new Expr.IndexSet(index.line, index.object, index.index, value);
+        }
+
+        // The parser is not confused, so there is no need to synchronise.
+        reporter.error(equals.line(), "Invalid assignment target.");
+        return target;
+    }
+
     private Expr assignment() {
         Expr expr = or();
 
         if (match(Token.Type.EQUAL)) {
             Token equals = previous();
             Expr value = assignment();
-
-            if (expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable) expr).name;
-                return new Expr.Assign(name, value);
-            } else if (expr instanceof Expr.Get) {
-                Expr.Get get = (Expr.Get) expr;
-                return new Expr.Set(get.object, get.name, value);
-            }
-
-            Lox.error(equals.line(), "Invalid assignment target.");
+            return assignment(expr, equals, value);
         }
 
         return expr;
@@ -232,7 +444,7 @@ public final class Parser {
         while (match(Token.Type.OR)) {
             Token operator = previous();
             Expr right = and();
-            left = new Expr.Logical(left, operator, right);
+            left = new Expr.Logical(operator.line(), left, operator.type(), right);
         }
 
         return left;
@@ -244,7 +456,7 @@ public final class Parser {
         while (match(Token.Type.AND)) {
             Token operator = previous();
             Expr right = equality();
-            left = new Expr.Logical(left, operator, right);
+            left = new Expr.Logical(operator.line(), left, operator.type(), right);
         }
 
         return left;
@@ -257,7 +469,7 @@ public final class Parser {
             Token operand = previous();
             Expr rhs = comparison();
 
-            lhs = new Expr.Binary(lhs, operand, rhs);
+            lhs = new Expr.Binary(operand.line(), lhs, operand.type(), rhs);
         }
 
         return lhs;
@@ -270,7 +482,7 @@ public final class Parser {
             Token operand = previous();
             Expr rhs = term();
 
-            lhs = new Expr.Binary(lhs, operand, rhs);
+            lhs = new Expr.Binary(operand.line(), lhs, operand.type(), rhs);
         }
 
         return lhs;
@@ -283,7 +495,7 @@ public final class Parser {
             Token operand = previous();
             Expr rhs = factor();
 
-            lhs = new Expr.Binary(lhs, operand, rhs);
+            lhs = new Expr.Binary(operand.line(), lhs, operand.type(), rhs);
         }
 
         return lhs;
@@ -296,7 +508,7 @@ public final class Parser {
             Token operand = previous();
             Expr rhs = unary();
 
-            lhs = new Expr.Binary(lhs, operand, rhs);
+            lhs = new Expr.Binary(operand.line(), lhs, operand.type(), rhs);
         }
 
         return lhs;
@@ -304,7 +516,8 @@ public final class Parser {
 
     private Expr unary() {
         if (match(Token.Type.MINUS, Token.Type.NOT)) {
-            return new Expr.Unary(previous(), unary());
+            Token operator = previous();
+            return new Expr.Unary(operator.line(), operator.type(), unary());
         } else {
             return call();
         }
@@ -318,7 +531,9 @@ public final class Parser {
                 expr = finishCall(expr);
             } else if (match(Token.Type.DOT)) {
               Token name = consume(Token.Type.IDENTIFIER, "Expect property name after '.'.");
-              expr = new Expr.Get(expr, name);
+              expr = get(expr, name);
+            } else if (match(Token.Type.LEFT_BRACKET)) {
+                expr = finishIndex(expr);
             } else {
                 break;
             }
@@ -333,31 +548,51 @@ public final class Parser {
         if (!check(Token.Type.RIGHT_BRACE)) {
             do {
                 if (arguments.size() >= 255) {
-                    Lox.error(peek().line(), "Can't have more than 255 arguments.");
+                    reporter.error(peek().line(), "Can't have more than 255 arguments.");
                 }
                 arguments.add(expression());
             } while (match(Token.Type.COMA));
         }
 
         Token paren = consume(Token.Type.RIGHT_BRACE, "Expect ')' after arguments.");
-        return new Expr.Call(callee, paren, arguments);
+        return new Expr.Call(paren.line(), callee, arguments);
+    }
+
+    private Expr finishIndex(@NotNull Expr object) {
+        Expr index = expression();
+        Token bracket = consume(Token.Type.RIGHT_BRACKET, "Expect ']' after index.");
+        return new Expr.Index(bracket.line(), object, index);
+    }
+
+    @NotNull
+    private static Expr.Variable variable(@NotNull Token name) {
+        return new Expr.Variable(name.line(), symbolOf(name));
+    }
+
+    @NotNull
+    private static Expr.Get get(@NotNull Expr object, @NotNull Token name) {
+        return new Expr.Get(name.line(), object, symbolOf(name));
+    }
+
+    private static int symbolOf(@NotNull Token name) {
+        return Names.idOf(name.lexeme());
     }
 
     private Expr primary() {
         if (match(Token.Type.FALSE)) {
-            return new Expr.Literal(false);
+            return new Expr.Literal(previous().line(), false);
         }
 
         if (match(Token.Type.TRUE)) {
-            return new Expr.Literal(true);
+            return new Expr.Literal(previous().line(), true);
         }
 
         if (match(Token.Type.NIL)) {
-            return new Expr.Literal(null);
+            return new Expr.Literal(previous().line(), null);
         }
 
         if (match(Token.Type.NUMBER, Token.Type.STRING)) {
-            return new Expr.Literal(previous().literal());
+            return new Expr.Literal(previous().line(), previous().literal());
         }
 
         if (match(Token.Type.LEFT_BRACE)) {
@@ -367,21 +602,21 @@ public final class Parser {
         }
 
         if (match(Token.Type.THIS)) {
-            return new Expr.This(previous());
+            return new Expr.This(previous().line());
         }
 
         if (match(Token.Type.SUPER)) {
             Token keyword = previous();
             consume(Token.Type.DOT, "Expect '.' after super.");
             Token method = consume(Token.Type.IDENTIFIER, "Expect superclass method name.");
-            return new Expr.Super(keyword, method);
+            return new Expr.Super(keyword.line(), symbolOf(method));
         }
 
         if (match(Token.Type.IDENTIFIER)) {
-            return new Expr.Variable(previous());
+            return variable(previous());
         }
 
-        throw new ParsingException("Expression expected but " + peek().type() + " found");
+        throw error(peek(), "Expression expected but " + peek().type() + " found.");
     }
 
     private void synchronize() {
@@ -392,6 +627,7 @@ public final class Parser {
 
             switch (peek().type()) {
                 case CLASS:
+                case IMPORT:
                 case FUNCTION:
                 case VAR:
                 case FOR:
@@ -411,8 +647,18 @@ public final class Parser {
             return advance();
         }
 
-        // TODO(st235): implement errors propagation.
-        throw new ParsingException(message);
+        throw error(peek(), message);
+    }
+
+    /**
+     * Reports a syntax error at the given token.
+     *
+     * @return exception to unwind the parser to the closest declaration, where it can recover.
+     */
+    @NotNull
+    private ParsingException error(@NotNull Token token, @NotNull String message) {
+        reporter.error(token.line(), message);
+        return new ParsingException(message);
     }
 
     private boolean match(Token.Type... types) {
@@ -439,11 +685,11 @@ public final class Parser {
     }
 
     private Token peek() {
-        return tokens.get(pointer);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(pointer - 1);
+        return previous;
     }
 
     private Token advance() {
@@ -451,9 +697,9 @@ public final class Parser {
             return peek();
         }
 
-        Token token = peek();
-        pointer += 1;
-        return token;
+        previous = current;
+        current = tokens.next();
+        return previous;
     }
 
     final class ParsingException extends RuntimeException {
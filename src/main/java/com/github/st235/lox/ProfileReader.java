@@ -0,0 +1,72 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.st235.lox.ProfileWriter.*;
+
+/**
+ * Reads a profile written by {@link ProfileWriter}.
+ */
+final class ProfileReader {
+
+    private ProfileReader() {
+    }
+
+    /**
+     * Matches the observations of the profile with the expressions of the statements,
+     * which have to be parsed from the script the profile was recorded for.
+     *
+     * @throws IllegalArgumentException or {@link java.nio.BufferUnderflowException}
+     * if the buffer does not hold a profile of the current {@link ProfileWriter#VERSION}
+     * or the profile has been recorded for another script.
+     */
+    @NotNull
+    static Map<Expr, Tracing.Observation> read(@NotNull ByteBuffer buffer,
+                                               byte @NotNull [] hash,
+                                               @NotNull List<Stmt> statements) {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a Lox profile.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported version %d, expected %d.", version, VERSION));
+        }
+
+        byte[] profileHash = new byte[hash.length];
+        buffer.get(profileHash);
+        List<Expr> expressions = expressionsOf(statements);
+        if (!Arrays.equals(hash, profileHash) || readVarInt(buffer) != expressions.size()) {
+            throw new IllegalArgumentException("The profile has been recorded for another script.");
+        }
+
+        Map<Expr, Tracing.Observation> observations = new IdentityHashMap<>();
+        for (int i = readVarInt(buffer); i > 0; i--) {
+            int index = readVarInt(buffer);
+            if (index >= expressions.size()) {
+                throw new IllegalArgumentException(String.format("Unknown expression %d.", index));
+            }
+            int kinds = buffer.get();
+            boolean isPolymorphic = buffer.get() != 0;
+            observations.put(expressions.get(index), new Tracing.Observation(kinds, isPolymorphic));
+        }
+        return observations;
+    }
+
+    private static int readVarInt(@NotNull ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte part;
+        do {
+            part = buffer.get();
+            value |= (part & 0x7F) << shift;
+            shift += 7;
+        } while ((part & 0x80) != 0);
+        return value;
+    }
+}
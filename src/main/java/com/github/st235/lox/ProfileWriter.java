@@ -0,0 +1,181 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes what {@link Tracing} has observed during a whole run of a script,
+ * so {@link ProfileReader} can hand it to later runs of the same script.
+ *
+ * <p>The layout is:
+ * <pre>
+ * magic: int, version: short,
+ * hash: the SHA-256 hash of the script, see {@link ProgramCache#hash(java.nio.ByteBuffer)},
+ * expressions: varint count of the expressions of the script,
+ * observations: varint count, then every observation as varint index of the expression,
+ * byte kinds of values and boolean polymorphism.
+ * </pre>
+ * Expressions are numbered in pre-order of the statements of the script, so
+ * a tree parsed from the same script numbers them the same way. Expressions of lazy function bodies
+ * and imported modules are not numbered, and their observations are not kept.
+ */
+final class ProfileWriter {
+
+    static final int MAGIC = 0x4C4F5850;
+    // Has to change every time the kinds of values or the layout change.
+    static final short VERSION = 1;
+
+    private ProfileWriter() {
+    }
+
+    static byte @NotNull [] write(byte @NotNull [] hash,
+                                  @NotNull List<Stmt> statements,
+                                  @NotNull Map<Expr, Tracing.Observation> observations) {
+        ByteArrayOutputStream profile = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(profile);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.write(hash);
+
+            List<Expr> expressions = expressionsOf(statements);
+            writeVarInt(out, expressions.size());
+
+            List<Integer> observed = new ArrayList<>();
+            for (int i = 0; i < expressions.size(); i++) {
+                if (observations.containsKey(expressions.get(i))) {
+                    observed.add(i);
+                }
+            }
+
+            writeVarInt(out, observed.size());
+            for (int index: observed) {
+                Tracing.Observation observation = observations.get(expressions.get(index));
+                writeVarInt(out, index);
+                out.writeByte(observation.kinds);
+                out.writeBoolean(observation.isPolymorphic);
+            }
+        } catch (IOException exception) {
+            // Nothing is written anywhere but into memory.
+            throw new UncheckedIOException(exception);
+        }
+        return profile.toByteArray();
+    }
+
+    /**
+     * @return expressions of the statements in pre-order, which is what profiles refer to.
+     */
+    @NotNull
+    static List<Expr> expressionsOf(@NotNull List<Stmt> statements) {
+        List<Expr> expressions = new ArrayList<>();
+        for (Stmt statement: statements) {
+            collect(statement, expressions);
+        }
+        return expressions;
+    }
+
+    private static void collect(@Nullable Stmt statement, @NotNull List<Expr> expressions) {
+        if (statement == null) {
+            return;
+        }
+
+        switch (statement.kind) {
+            case EXPRESSION -> collect(((Stmt.Expression) statement).expression, expressions);
+            case PRINT -> collect(((Stmt.Print) statement).expression, expressions);
+            case VAR -> collect(((Stmt.Var) statement).initializer, expressions);
+            case BLOCK -> {
+                for (Stmt blockStatement: ((Stmt.Block) statement).statements) {
+                    collect(blockStatement, expressions);
+                }
+            }
+            case IF -> {
+                Stmt.If node = (Stmt.If) statement;
+                collect(node.condition, expressions);
+                collect(node.thenBranch, expressions);
+                collect(node.elseBranch, expressions);
+            }
+            case WHILE -> {
+                Stmt.While node = (Stmt.While) statement;
+                collect(node.condition, expressions);
+                collect(node.body, expressions);
+            }
+            case FUNCTION -> {
+                // Whether a lazy body has been parsed depends on the run.
+                if (!(((Stmt.Function) statement).body instanceof LazyFunctionBody)) {
+                    for (Stmt bodyStatement: ((Stmt.Function) statement).body) {
+                        collect(bodyStatement, expressions);
+                    }
+                }
+            }
+            case RETURN -> collect(((Stmt.Return) statement).value, expressions);
+            case CLASS -> {
+                Stmt.Class node = (Stmt.Class) statement;
+                collect(node.superclass, expressions);
+                for (Stmt.Function method: node.methods) {
+                    collect(method, expressions);
+                }
+            }
+            case IMPORT -> {
+            }
+        }
+    }
+
+    private static void collect(@Nullable Expr expression, @NotNull List<Expr> expressions) {
+        if (expression == null) {
+            return;
+        }
+
+        expressions.add(expression);
+        switch (expression.kind) {
+            case BINARY -> {
+                collect(((Expr.Binary) expression).left, expressions);
+                collect(((Expr.Binary) expression).right, expressions);
+            }
+            case GROUPING -> collect(((Expr.Grouping) expression).expression, expressions);
+            case UNARY -> collect(((Expr.Unary) expression).right, expressions);
+            case ASSIGN -> collect(((Expr.Assign) expression).expression, expressions);
+            case LOGICAL -> {
+                collect(((Expr.Logical) expression).left, expressions);
+                collect(((Expr.Logical) expression).right, expressions);
+            }
+            case CALL -> {
+                collect(((Expr.Call) expression).callee, expressions);
+                for (Expr argument: ((Expr.Call) expression).arguments) {
+                    collect(argument, expressions);
+                }
+            }
+            case GET -> collect(((Expr.Get) expression).object, expressions);
+            case SET -> {
+                collect(((Expr.Set) expression).object, expressions);
+                collect(((Expr.Set) expression).value, expressions);
+            }
+            case INDEX -> {
+                collect(((Expr.Index) expression).object, expressions);
+                collect(((Expr.Index) expression).index, expressions);
+            }
+            case INDEX_SET -> {
+                collect(((Expr.IndexSet) expression).object, expressions);
+                collect(((Expr.IndexSet) expression).index, expressions);
+                collect(((Expr.IndexSet) expression).value, expressions);
+            }
+            case LITERAL, VARIABLE, THIS, SUPER -> {
+            }
+        }
+    }
+
+    private static void writeVarInt(@NotNull DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
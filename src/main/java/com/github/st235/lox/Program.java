@@ -0,0 +1,12 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Statements of a script together with their resolution, ready to be interpreted.
+ */
+record Program(@NotNull List<Stmt> statements,
+               @NotNull Resolution resolution) {
+}
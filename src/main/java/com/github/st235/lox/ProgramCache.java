@@ -0,0 +1,127 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Keeps parsed and resolved scripts on disk, so running an unchanged script
+ * skips scanning, parsing and resolution.
+ *
+ * <p>Entries are named after the SHA-256 hash of the script and hold the hash itself,
+ * the directory of the script, which imports were resolved against, and the
+ * statements as written by {@link AstWriter}. An entry is read with a single mapping
+ * of the file. Anything unexpected in an entry, including an older version of
+ * the format, is treated as a miss and the entry is written anew.
+ */
+final class ProgramCache {
+
+    private static final int HASH_LENGTH = 32;
+
+    @NotNull
+    private final Path directory;
+
+    ProgramCache(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The cache in {@code $XDG_CACHE_HOME/jlox}, or in {@code ~/.cache/jlox} by default.
+     */
+    @NotNull
+    static ProgramCache inUserCacheDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        Path root = cacheHome != null && !cacheHome.isEmpty()
+                ? Path.of(cacheHome)
+                : Path.of(System.getProperty("user.home"), ".cache");
+        return new ProgramCache(root.resolve("jlox"));
+    }
+
+    static byte @NotNull [] hash(@NotNull ByteBuffer script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(script.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException exception) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * @param hash of the script, see {@link #hash(ByteBuffer)}.
+     * @param scriptDirectory the directory the script is in.
+     * @return the cached program or {@code null} if there is no usable entry.
+     */
+    @Nullable
+    Program load(byte @NotNull [] hash, @NotNull Path scriptDirectory) {
+        try (FileChannel channel = FileChannel.open(entry(hash), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            byte[] entryHash = new byte[HASH_LENGTH];
+            buffer.get(entryHash);
+            byte[] entryDirectory = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(entryDirectory);
+
+            if (!Arrays.equals(hash, entryHash) ||
+                    !scriptDirectory.toString().equals(new String(entryDirectory, StandardCharsets.UTF_8))) {
+                return null;
+            }
+
+            return AstReader.read(buffer);
+        } catch (IOException | RuntimeException exception) {
+            // No entry, or a broken or outdated one, which is going to be overwritten.
+            return null;
+        }
+    }
+
+    /**
+     * Writes the program, failures are ignored as the cache is only an optimisation.
+     *
+     * @param program resolved without errors and parsed eagerly.
+     */
+    void store(byte @NotNull [] hash,
+               @NotNull Path scriptDirectory,
+               @NotNull Program program) {
+        byte[] directoryBytes = scriptDirectory.toString().getBytes(StandardCharsets.UTF_8);
+        if (directoryBytes.length > 0xFFFF) {
+            return;
+        }
+        byte[] tree = AstWriter.write(program.statements(), program.resolution());
+
+        ByteBuffer entry = ByteBuffer.allocate(HASH_LENGTH + Short.BYTES + directoryBytes.length + tree.length);
+        entry.put(hash).putShort((short) directoryBytes.length).put(directoryBytes).put(tree);
+
+        try {
+            Files.createDirectories(directory);
+            // Readers never see a partially written entry.
+            Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+            try {
+                Files.write(temporary, entry.array());
+                Files.move(temporary, entry(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ignored) {
+            // Same as above.
+        }
+    }
+
+    @NotNull
+    private Path entry(byte @NotNull [] hash) {
+        return directory.resolve(HexFormat.of().formatHex(hash) + ".loxa");
+    }
+}
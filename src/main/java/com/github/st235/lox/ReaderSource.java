@@ -0,0 +1,104 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Script read from a {@link Reader} as the scanner advances.
+ *
+ * <p>Only a window of the script is kept in memory: the text before
+ * the {@link #release(int) released} position is dropped whenever the
+ * window needs room for more input, so memory does not grow with the script size.
+ */
+final class ReaderSource implements Source {
+
+    private static final int INITIAL_WINDOW_SIZE = 8192;
+
+    @NotNull
+    private final Reader reader;
+
+    @NotNull
+    private char[] window = new char[INITIAL_WINDOW_SIZE];
+    // Position in the script of the first char in the window.
+    private int offset = 0;
+    private int size = 0;
+    private int released = 0;
+
+    private boolean isExhausted = false;
+
+    ReaderSource(@NotNull Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean isAtEnd(int position) {
+        return !fill(position);
+    }
+
+    @Override
+    public char charAt(int position) {
+        if (!fill(position)) {
+            throw new IndexOutOfBoundsException(position);
+        }
+        return window[position - offset];
+    }
+
+    @NotNull
+    @Override
+    public String substring(int start, int end) {
+        return new String(window, start - offset, end - start);
+    }
+
+    @Override
+    public void release(int position) {
+        released = Math.max(released, position);
+    }
+
+    /**
+     * Reads the script until the given position is in the window.
+     *
+     * @return {@code false} if the script ends before the position.
+     */
+    private boolean fill(int position) {
+        while (position - offset >= size) {
+            if (isExhausted) {
+                return false;
+            }
+
+            if (size == window.length) {
+                makeRoom();
+            }
+
+            try {
+                int read = reader.read(window, size, window.length - size);
+                if (read < 0) {
+                    isExhausted = true;
+                } else {
+                    size += read;
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        return true;
+    }
+
+    private void makeRoom() {
+        int droppable = released - offset;
+        if (droppable > 0) {
+            System.arraycopy(window, droppable, window, 0, size - droppable);
+            offset += droppable;
+            size -= droppable;
+        }
+
+        // The unreleased part still fills most of the window, e.g. a long string literal.
+        if (size > window.length / 2) {
+            char[] grown = new char[window.length * 2];
+            System.arraycopy(window, 0, grown, 0, size);
+            window = grown;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of {@link Resolver#resolve(List)}.
+ *
+ * @param depths how many scopes away every resolved local variable is declared,
+ *               see {@link Interpreter#resolve(Resolution)}.
+ * @param lazyBodies function bodies which are resolved only after they are parsed.
+ * @param imports canonical paths of the imported modules.
+ */
+record Resolution(@NotNull Map<Expr, Integer> depths,
+                  @NotNull List<LazyFunctionBody> lazyBodies,
+                  @NotNull Map<Stmt.Import, Path> imports,
+                  @NotNull List<Diagnostic> diagnostics) {
+
+    boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+
+    void reportTo(@NotNull ErrorReporter reporter) {
+        for (Diagnostic diagnostic: diagnostics) {
+            diagnostic.reportTo(reporter);
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.github.st235.lox;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
@@ -23,21 +30,112 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     @NotNull
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final SymbolTable scopes;
 
+    // Module paths are relative to it.
     @NotNull
-    private final Interpreter interpreter;
+    private final Path directory;
+
+    // Function bodies resolved on the fork/join pool, null unless resolving in parallel.
+    @Nullable
+    private final ParallelBodies functions;
+
+    @NotNull
+    private Map<Expr, Integer> depths = new HashMap<>();
+    @NotNull
+    private List<LazyFunctionBody> lazyBodies = new ArrayList<>();
+    @NotNull
+    private Map<Stmt.Import, Path> imports = new HashMap<>();
+    @NotNull
+    private Diagnostics diagnostics = new Diagnostics();
 
     @NotNull
     private FunctionType functionType = FunctionType.NONE;
 
     private ClassType classType = ClassType.NONE;
 
-    public Resolver(@NotNull Interpreter interpreter) {
-        this.interpreter = interpreter;
+    public Resolver() {
+        this(false);
+    }
+
+    /**
+     * @param resolveFunctionsInParallel resolves the bodies of functions and methods
+     *                                   declared in the resolved statements concurrently,
+     *                                   nested functions are resolved along with their enclosing one.
+     */
+    public Resolver(boolean resolveFunctionsInParallel) {
+        this(resolveFunctionsInParallel, Path.of(""));
+    }
+
+    /**
+     * @param directory of the resolved script, imported modules are looked up relative to it.
+     */
+    public Resolver(boolean resolveFunctionsInParallel,
+                    @NotNull Path directory) {
+        this.scopes = new SymbolTable();
+        this.directory = directory;
+        this.functions = resolveFunctionsInParallel ? new ParallelBodies() : null;
+    }
+
+    /**
+     * Creates a resolver continuing from the state of another one,
+     * used to resolve a single function body separately.
+     */
+    private Resolver(@NotNull SymbolTable scopes,
+                     @NotNull Path directory,
+                     @NotNull FunctionType functionType,
+                     @NotNull ClassType classType) {
+        this.scopes = scopes;
+        this.directory = directory;
+        this.functions = null;
+        this.functionType = functionType;
+        this.classType = classType;
+    }
+
+    /**
+     * Resolves top-level statements. Errors do not stop resolution,
+     * all of them are collected into the returned {@link Resolution}.
+     */
+    @NotNull
+    Resolution resolve(@NotNull List<Stmt> statements) {
+        resolveAll(statements);
+
+        if (functions == null) {
+            return result();
+        }
+
+        functions.joinInOrder(this::merge);
+        Resolution resolution = result();
+
+        // Errors of the forked bodies were merged after the rest,
+        // though they are expected in the order of the script.
+        List<Diagnostic> diagnostics = new ArrayList<>(resolution.diagnostics());
+        diagnostics.sort(Comparator.comparingInt(Diagnostic::line));
+        return new Resolution(resolution.depths(), resolution.lazyBodies(), resolution.imports(), diagnostics);
+    }
+
+    @NotNull
+    private Resolution result() {
+        Resolution resolution = new Resolution(depths, lazyBodies, imports, diagnostics.asList());
+        depths = new HashMap<>();
+        lazyBodies = new ArrayList<>();
+        imports = new HashMap<>();
+        diagnostics = new Diagnostics();
+        return resolution;
+    }
+
+    private void merge(@NotNull Resolution resolution) {
+        depths.putAll(resolution.depths());
+        lazyBodies.addAll(resolution.lazyBodies());
+        imports.putAll(resolution.imports());
+        resolution.reportTo(diagnostics);
+    }
+
+    private void error(int line, @NotNull String message) {
+        diagnostics.error(line, message);
     }
 
-    void resolve(@NotNull List<Stmt> statements) {
+    private void resolveAll(@NotNull List<Stmt> statements) {
         for (Stmt statement: statements) {
             statement.visit(this);
         }
@@ -52,31 +150,32 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.beginScope();
     }
 
     private void endScope() {
-        scopes.pop();
+        scopes.endScope();
     }
 
-    private void declare(@NotNull Token name) {
+    /**
+     * @param name symbol id of the declared name.
+     * @param line to report a repeated declaration at.
+     */
+    private void declare(int name, int line) {
         if (scopes.isEmpty()) {
             return;
         }
 
-        if (scopes.peek().containsKey(name.lexeme())) {
-            Lox.error(name.line(), String.format("Variable '%s' was already declared in the scope.", name.lexeme()));
-            return;
+        if (!scopes.declare(Names.of(name))) {
+            error(line, String.format("Variable '%s' was already declared in the scope.", Names.of(name)));
         }
-
-        scopes.peek().put(name.lexeme(), false);
     }
 
-    private void define(@NotNull Token name) {
+    private void define(int name) {
         if (scopes.isEmpty()) {
             return;
         }
-        scopes.peek().put(name.lexeme(), true);
+        scopes.define(Names.of(name));
     }
 
     @Override
@@ -105,29 +204,26 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariable(Expr.Variable node) {
-        if (!scopes.isEmpty() &&
-            scopes.peek().get(node.name.lexeme()) == Boolean.FALSE) {
-            Lox.error(node.name.line(), "Can't read local variable in its own initialisation.");
+        if (scopes.isDeclaredButNotDefined(Names.of(node.name))) {
+            error(node.line, "Can't read local variable in its own initialisation.");
             return null;
         }
 
-        resolveLocal(node, node.name);
+        resolveLocal(node, Names.of(node.name));
         return null;
     }
 
     @Override
     public Void visitAssign(Expr.Assign node) {
         resolve(node.expression);
-        resolveLocal(node, node.name);
+        resolveLocal(node, Names.of(node.name));
         return null;
     }
 
-    private void resolveLocal(@NotNull Expr expression, @NotNull Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme())) {
-                interpreter.resolve(expression, scopes.size() - i - 1);
-                return;
-            }
+    private void resolveLocal(@NotNull Expr expression, @NotNull String name) {
+        int distance = scopes.distanceTo(name);
+        if (distance >= 0) {
+            depths.put(expression, distance);
         }
     }
 
@@ -160,6 +256,21 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitIndex(Expr.Index node) {
+        resolve(node.object);
+        resolve(node.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSet(Expr.IndexSet node) {
+        resolve(node.object);
+        resolve(node.index);
+        resolve(node.value);
+        return null;
+    }
+
     @Override
     public Void visitExpression(Stmt.Expression node) {
         resolve(node.expression);
@@ -174,7 +285,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVar(Stmt.Var node) {
-        declare(node.name);
+        declare(node.name, node.line);
         if (node.initializer != null) {
             resolve(node.initializer);
         }
@@ -185,7 +296,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitBlock(Stmt.Block node) {
         beginScope();
-        resolve(node.statements);
+        resolveAll(node.statements);
         endScope();
         return null;
     }
@@ -209,7 +320,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunction(Stmt.Function node) {
-        declare(node.name);
+        declare(node.name, node.line);
         define(node.name);
 
         resolveFunction(node, FunctionType.FUNCTION);
@@ -219,16 +330,52 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void resolveFunction(@NotNull Stmt.Function function,
                                  @NotNull FunctionType newFunctionType) {
+        if (function.body instanceof LazyFunctionBody body && !body.isParsed()) {
+            // The enclosing scopes will change by the time the body is parsed,
+            // so the resolver continues from a copy of what is visible now.
+            Resolver resolver = new Resolver(scopes.copyVisible(), directory, functionType, classType);
+
+            body.deferResolution(statements -> {
+                resolver.resolveFunction(function, newFunctionType, statements);
+
+                Resolution resolution = resolver.result();
+                if (resolution.hasErrors()) {
+                    Diagnostic error = resolution.diagnostics().get(0);
+                    throw new RuntimeError(function.line, String.format("Cannot resolve body of '%s', line %d: %s",
+                            Names.of(function.name), error.line(), error.message()));
+                }
+                return resolution;
+            });
+            lazyBodies.add(body);
+            return;
+        }
+
+        if (functions != null) {
+            Resolver resolver = new Resolver(scopes.copyVisible(), directory, functionType, classType);
+
+            functions.fork(() -> {
+                resolver.resolveFunction(function, newFunctionType, function.body);
+                return resolver.result();
+            });
+            return;
+        }
+
+        resolveFunction(function, newFunctionType, function.body);
+    }
+
+    private void resolveFunction(@NotNull Stmt.Function function,
+                                 @NotNull FunctionType newFunctionType,
+                                 @NotNull List<Stmt> body) {
         FunctionType oldFunctionType = functionType;
         functionType = newFunctionType;
         beginScope();
 
-        for (Token parameter: function.params) {
-            declare(parameter);
+        for (int parameter: function.params) {
+            declare(parameter, function.line);
             define(parameter);
         }
 
-        resolve(function.body);
+        resolveAll(body);
 
         endScope();
         functionType = oldFunctionType;
@@ -237,13 +384,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturn(Stmt.Return node) {
         if (functionType == FunctionType.NONE) {
-            Lox.error(node.keyword.line(), "Return is not allowed here.");
+            error(node.line, "Return is not allowed here.");
             return null;
         }
 
         if (node.value != null) {
             if (functionType == FunctionType.INITIALISER) {
-                Lox.error(node.keyword.line(), "Can't return a value from an initialiser.");
+                error(node.line, "Can't return a value from an initialiser.");
             }
             resolve(node.value);
         }
@@ -256,26 +403,26 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         classType = ClassType.CLASS;
         if (node.superclass != null) classType = ClassType.SUBCLASS;
 
-        declare(node.name);
+        declare(node.name, node.line);
         define(node.name);
 
         if (node.superclass != null) {
-            if (node.superclass.name.lexeme().equals(node.name.lexeme())) {
-                Lox.error(node.superclass.name.line(), "A class cannot inherit from itself.");
+            if (node.superclass.name == node.name) {
+                error(node.superclass.line, "A class cannot inherit from itself.");
             }
 
             resolve(node.superclass);
 
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.define("super");
         }
 
         beginScope();
-        scopes.peek().put("this", true);
+        scopes.define("this");
 
         for (Stmt.Function method: node.methods) {
             FunctionType declaration = FunctionType.METHOD;
-            if (method.name.lexeme().equals("init")) {
+            if (Names.of(method.name).equals("init")) {
                 declaration = FunctionType.INITIALISER;
             }
             resolveFunction(method, declaration);
@@ -292,26 +439,73 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImport(Stmt.Import node) {
+        if (!scopes.isEmpty() || functionType != FunctionType.NONE) {
+            error(node.line, "Import is only allowed at the top level.");
+            return null;
+        }
+
+        String module = node.path;
+        Path path;
+        try {
+            path = directory.resolve(module).toRealPath();
+        } catch (IOException | RuntimeException exception) {
+            error(node.line, String.format("Cannot find module '%s'.", module));
+            return null;
+        }
+
+        imports.put(node, path);
+        // The module is likely ready by the time the import is executed.
+        ModuleCache.shared().prefetch(path);
+        return null;
+    }
+
     @Override
     public Void visitThis(Expr.This node) {
         if (classType == ClassType.NONE) {
-            Lox.error(node.keyword.line(), "Cannot use 'this' outside of a class.");
+            error(node.line, "Cannot use 'this' outside of a class.");
             return null;
         }
 
-        resolveLocal(node, node.keyword);
+        resolveLocal(node, "this");
         return null;
     }
 
     @Override
     public Void visitSuper(Expr.Super node) {
         if (classType == ClassType.NONE) {
-            Lox.error(node.keyword.line(), "Can't use 'super' outside of a class.");
+            error(node.line, "Can't use 'super' outside of a class.");
         } else if (classType == ClassType.CLASS) {
-            Lox.error(node.keyword.line(), "Can't use 'super' in a class with no superclass.");
+            error(node.line, "Can't use 'super' in a class with no superclass.");
         }
 
-        resolveLocal(node, node.keyword);
+        resolveLocal(node, "super");
         return null;
     }
+
+    /**
+     * Function bodies resolved on the common fork/join pool, each one by its own resolver.
+     * Results are handed back in the order the bodies were forked, so merging them
+     * gives the same outcome as resolving the bodies one after another.
+     */
+    private static final class ParallelBodies {
+
+        @NotNull
+        private final List<ForkJoinTask<Resolution>> tasks = new ArrayList<>();
+
+        void fork(@NotNull Callable<Resolution> body) {
+            tasks.add(ForkJoinTask.adapt(body).fork());
+        }
+
+        /**
+         * Waits for every forked body and passes the results to {@code merge} in the fork order.
+         */
+        void joinInOrder(@NotNull Consumer<Resolution> merge) {
+            for (ForkJoinTask<Resolution> task: tasks) {
+                merge.accept(task.join());
+            }
+            tasks.clear();
+        }
+    }
 }
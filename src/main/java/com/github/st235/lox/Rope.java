@@ -0,0 +1,124 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * A string made by concatenation, which keeps its parts instead of copying them.
+ *
+ * <p>Building a string piece by piece copies it once, when its characters are
+ * first needed: it is printed, compared or hashed. Then the parts are dropped
+ * and the flat string is kept. Ropes are strings for Lox, see {@link #isText(Object)}.
+ */
+final class Rope implements CharSequence {
+
+    // Shorter strings are copied right away, that is cheaper than keeping their parts.
+    private static final int MIN_LENGTH = 64;
+
+    // Every part is either a String or a Rope.
+    @Nullable
+    private CharSequence left;
+    @Nullable
+    private CharSequence right;
+    private final int length;
+
+    @Nullable
+    private String flat;
+
+    private Rope(@NotNull CharSequence left, @NotNull CharSequence right, int length) {
+        this.left = left;
+        this.right = right;
+        this.length = length;
+    }
+
+    static boolean isText(@Nullable Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    /**
+     * Concatenates two values, one of which is a string. The other one is turned
+     * into a string right away, as {@link String#valueOf(Object)} does.
+     */
+    @NotNull
+    static CharSequence concat(@Nullable Object left, @Nullable Object right) {
+        CharSequence leftText = textOf(left);
+        CharSequence rightText = textOf(right);
+
+        int length = leftText.length() + rightText.length();
+        if (length < 0) {
+            throw new OutOfMemoryError("Strings cannot be longer than " + Integer.MAX_VALUE + " characters.");
+        }
+        if (length < MIN_LENGTH) {
+            return leftText.toString().concat(rightText.toString());
+        }
+        return new Rope(leftText, rightText, length);
+    }
+
+    @NotNull
+    private static CharSequence textOf(@Nullable Object value) {
+        if (value instanceof Rope rope) {
+            return rope;
+        }
+        if (value instanceof Double number) {
+            return NumberFormatter.toString(number);
+        }
+        return String.valueOf(value);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @NotNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = flatten();
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+    @NotNull
+    private String flatten() {
+        StringBuilder builder = new StringBuilder(length);
+        // Ropes built in loops are deep, so parts are walked without recursion.
+        ArrayDeque<CharSequence> parts = new ArrayDeque<>();
+        parts.push(this);
+        while (!parts.isEmpty()) {
+            CharSequence part = parts.pop();
+            if (part instanceof Rope rope && rope.flat == null) {
+                parts.push(rope.right);
+                parts.push(rope.left);
+            } else {
+                builder.append(part instanceof Rope rope ? rope.flat : part);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Rope rope && toString().equals(rope.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
@@ -2,10 +2,10 @@ package com.github.st235.lox;
 
 public class RuntimeError extends RuntimeException {
 
-    final Token token;
+    final int line;
 
-    public RuntimeError(Token token, String message) {
+    public RuntimeError(int line, String message) {
         super(message);
-        this.token = token;
+        this.line = line;
     }
 }
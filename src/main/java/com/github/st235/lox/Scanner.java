@@ -3,10 +3,17 @@ package com.github.st235.lox;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Reader;
 import java.util.*;
 
 public final class Scanner {
 
+    /**
+     * Sources of at least this many units are split into chunks
+     * and scanned in parallel, see {@link ParallelScanner}.
+     */
+    static final int PARALLEL_SCAN_THRESHOLD = 1 << 20;
+
     @NotNull
     private static final Map<String, Token.Type> RESERVED_KEYWORDS = new HashMap<>();
 
@@ -27,34 +34,219 @@ public final class Scanner {
         RESERVED_KEYWORDS.put("super", Token.Type.SUPER);
         RESERVED_KEYWORDS.put("this", Token.Type.THIS);
         RESERVED_KEYWORDS.put("while", Token.Type.WHILE);
+        RESERVED_KEYWORDS.put("import", Token.Type.IMPORT);
+    }
+
+    /**
+     * Lexemes of operators and keywords by their type,
+     * so tokens of the same type share one string.
+     */
+    @NotNull
+    private static final Map<Token.Type, String> FIXED_LEXEMES = new EnumMap<>(Token.Type.class);
+
+    static {
+        FIXED_LEXEMES.put(Token.Type.LEFT_PARENTHESIS, "{");
+        FIXED_LEXEMES.put(Token.Type.RIGHT_PARENTHESIS, "}");
+        FIXED_LEXEMES.put(Token.Type.LEFT_BRACE, "(");
+        FIXED_LEXEMES.put(Token.Type.RIGHT_BRACE, ")");
+        FIXED_LEXEMES.put(Token.Type.LEFT_BRACKET, "[");
+        FIXED_LEXEMES.put(Token.Type.RIGHT_BRACKET, "]");
+        FIXED_LEXEMES.put(Token.Type.PLUS, "+");
+        FIXED_LEXEMES.put(Token.Type.MINUS, "-");
+        FIXED_LEXEMES.put(Token.Type.SLASH, "/");
+        FIXED_LEXEMES.put(Token.Type.STAR, "*");
+        FIXED_LEXEMES.put(Token.Type.COMA, ",");
+        FIXED_LEXEMES.put(Token.Type.DOT, ".");
+        FIXED_LEXEMES.put(Token.Type.SEMICOLON, ";");
+        FIXED_LEXEMES.put(Token.Type.GREATER, ">");
+        FIXED_LEXEMES.put(Token.Type.GREATER_EQUAL, ">=");
+        FIXED_LEXEMES.put(Token.Type.LESS, "<");
+        FIXED_LEXEMES.put(Token.Type.LESS_EQUAL, "<=");
+        FIXED_LEXEMES.put(Token.Type.NOT, "!");
+        FIXED_LEXEMES.put(Token.Type.NOT_EQUAL, "!=");
+        FIXED_LEXEMES.put(Token.Type.EQUAL, "=");
+        FIXED_LEXEMES.put(Token.Type.EQUAL_EQUAL, "==");
+        for (Map.Entry<String, Token.Type> keyword: RESERVED_KEYWORDS.entrySet()) {
+            FIXED_LEXEMES.put(keyword.getValue(), keyword.getKey());
+        }
+    }
+
+    /**
+     * @return the lexeme of every token of the type, e.g. of an operator kept by a node.
+     */
+    @NotNull
+    static String lexemeOf(@NotNull Token.Type type) {
+        String lexeme = FIXED_LEXEMES.get(type);
+        if (lexeme == null) {
+            throw new IllegalArgumentException(String.format("Tokens of %s have no fixed lexeme.", type));
+        }
+        return lexeme;
     }
 
     private final List<Token> tokens = new ArrayList<>();
 
     @NotNull
-    private final String script;
+    private final Source source;
     @NotNull
     private final ScannerStream stream;
+    @NotNull
+    private final ErrorReporter reporter;
+
+    /**
+     * Keeps one string for every identifier, so all the tokens of the same name
+     * share it, however many of them the syntax tree retains.
+     */
+    @NotNull
+    private final Map<String, String> symbols;
+
+    private final int parallelThreshold;
 
-    private int line = 1;
+    private int line;
     private int start = 0;
 
+    private int unterminatedStringStart = -1;
+    private int unterminatedStringLine;
+
     public Scanner(@NotNull String script) {
-        this.script = script;
-        this.stream = new ScannerStream(script);
+        this(new StringSource(script));
+    }
+
+    Scanner(@NotNull SizedSource source) {
+        this(source, PARALLEL_SCAN_THRESHOLD);
+    }
+
+    Scanner(@NotNull SizedSource source, int parallelThreshold) {
+        this(source, 0, source.length(), 1, Lox::error, new HashMap<>(), parallelThreshold);
+    }
+
+    Scanner(@NotNull SizedSource source, @NotNull ErrorReporter reporter) {
+        this(source, 0, source.length(), 1, reporter, new HashMap<>(), PARALLEL_SCAN_THRESHOLD);
+    }
+
+    /**
+     * Creates a scanner reading the script as it arrives from the reader.
+     * Tokens should be taken one by one with {@link #tokens()}.
+     */
+    Scanner(@NotNull Reader reader) {
+        this(reader, Lox::error);
+    }
+
+    Scanner(@NotNull Reader reader, @NotNull ErrorReporter reporter) {
+        this(new ReaderSource(reader), 0, Integer.MAX_VALUE, 1, reporter, new HashMap<>(), Integer.MAX_VALUE);
+    }
+
+    private Scanner(@NotNull Source source,
+                    int from,
+                    int to,
+                    int line,
+                    @NotNull ErrorReporter reporter,
+                    @NotNull Map<String, String> symbols,
+                    int parallelThreshold) {
+        this.source = source;
+        this.stream = new ScannerStream(source, from, to);
+        this.line = line;
+        this.reporter = reporter;
+        this.symbols = symbols;
+        this.parallelThreshold = parallelThreshold;
     }
 
     @NotNull
     public List<Token> scan() {
-        while (stream.hasNext()) {
-            start = stream.position;
-            scanToken();
+        if (source instanceof SizedSource sized && sized.length() >= parallelThreshold) {
+            return ParallelScanner.scan(sized, parallelThreshold, reporter);
+        }
+
+        scanTokens();
+
+        if (unterminatedStringStart >= 0) {
+            reportUnterminatedString(line, reporter);
         }
 
         tokens.add(Token.from(Token.Type.EOF, line));
         return new ArrayList<>(tokens);
     }
 
+    /**
+     * Lazily scans tokens, so no more of the source is read than
+     * is needed to produce the next token. The last token is always {@link Token.Type#EOF}.
+     */
+    @NotNull
+    Iterator<Token> tokens() {
+        return new Iterator<>() {
+
+            private boolean hasReachedEnd = false;
+
+            @Override
+            public boolean hasNext() {
+                return !hasReachedEnd;
+            }
+
+            @Override
+            public Token next() {
+                if (hasReachedEnd) {
+                    throw new NoSuchElementException();
+                }
+
+                Token token = nextToken();
+                hasReachedEnd = token.type() == Token.Type.EOF;
+                return token;
+            }
+        };
+    }
+
+    @NotNull
+    private Token nextToken() {
+        tokens.clear();
+
+        // Every call of scanToken adds at most one token.
+        while (tokens.isEmpty() && stream.hasNext()) {
+            start = stream.position;
+            source.release(start);
+            scanToken();
+        }
+
+        if (!tokens.isEmpty()) {
+            return tokens.get(0);
+        }
+
+        if (unterminatedStringStart >= 0) {
+            reportUnterminatedString(line, reporter);
+        }
+
+        return Token.from(Token.Type.EOF, line);
+    }
+
+    /**
+     * Scans units from {@code from} (inclusive) to {@code to} (exclusive) of the source.
+     * The range should start at the beginning of a line, outside of any string literal.
+     *
+     * <p>Nothing is reported directly: errors are collected into the chunk,
+     * and a string literal that is still open at the end of the range is
+     * recorded so the caller can decide whether it continues in the next chunk.
+     *
+     * @param symbols shared by all chunks of the source, so it has to be thread-safe.
+     */
+    @NotNull
+    static Chunk scanChunk(@NotNull Source source, int from, int to, int firstLine,
+                           @NotNull Map<String, String> symbols) {
+        Diagnostics diagnostics = new Diagnostics();
+        Scanner scanner = new Scanner(source, from, to, firstLine, diagnostics, symbols, Integer.MAX_VALUE);
+        scanner.scanTokens();
+        return new Chunk(scanner.tokens, diagnostics.asList(), scanner.line,
+                scanner.unterminatedStringStart, scanner.unterminatedStringLine);
+    }
+
+    static void reportUnterminatedString(int line, @NotNull ErrorReporter reporter) {
+        reporter.error(line, "Unexpected EOF, string should start and finish with closing brackets \".");
+    }
+
+    private void scanTokens() {
+        while (stream.hasNext()) {
+            start = stream.position;
+            scanToken();
+        }
+    }
+
     private void scanToken() {
         char c = stream.next();
 
@@ -63,6 +255,8 @@ public final class Scanner {
             case '}': addToken(Token.Type.RIGHT_PARENTHESIS); break;
             case '(': addToken(Token.Type.LEFT_BRACE); break;
             case ')': addToken(Token.Type.RIGHT_BRACE); break;
+            case '[': addToken(Token.Type.LEFT_BRACKET); break;
+            case ']': addToken(Token.Type.RIGHT_BRACKET); break;
             case '+': addToken(Token.Type.PLUS); break;
             case '-': addToken(Token.Type.MINUS); break;
             case '*': addToken(Token.Type.STAR); break;
@@ -96,32 +290,42 @@ public final class Scanner {
                 } else if (Symbols.isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unknown identifier.");
+                    reporter.error(line, "Unknown identifier.");
                 }
         }
     }
 
     private void string() {
-        StringBuilder literal = new StringBuilder();
-
-        if (!stream.hasNext()) {
-            Lox.error(line, "Cannot parse string");
-        }
+        int startLine = line;
+        boolean isAscii = true;
 
         // Lox allows multi-line strings by design.
         while (stream.hasNext() && stream.peek() != '"') {
-           char c = stream.next();
-           literal.append(c);
+            char c = stream.next();
+            if (c == '\n') {
+                line += 1;
+            }
+            isAscii &= Symbols.isAscii(c);
         }
 
         if (!stream.hasNext()) {
-            Lox.error(line, "Unexpected EOF, string should start and finish with closing brackets \".");
+            // Either the script is broken, or the literal carries on
+            // past the end of the chunk this scanner was given.
+            unterminatedStringStart = start;
+            unterminatedStringLine = startLine;
+            return;
         }
 
         // Reading \".
         stream.next();
-        // Let's skip adding bracket to the literal.
-        addToken(Token.Type.STRING, literal.toString());
+
+        // Only string literals may contain non-ASCII text,
+        // so this is the only place where the source needs decoding.
+        String lexeme = isAscii
+                ? source.asciiSubstring(start, stream.position)
+                : source.substring(start, stream.position);
+        // Let's skip adding brackets to the literal.
+        addToken(Token.Type.STRING, lexeme, lexeme.substring(1, lexeme.length() - 1));
     }
 
     private void identifier() {
@@ -129,9 +333,15 @@ public final class Scanner {
             stream.next();
         }
 
-        String rawValue = script.substring(start, stream.position);
-        Token.Type keywordType = RESERVED_KEYWORDS.get(rawValue);
-        addToken(Objects.requireNonNullElse(keywordType, Token.Type.IDENTIFIER));
+        String lexeme = source.asciiSubstring(start, stream.position);
+        Token.Type keywordType = RESERVED_KEYWORDS.get(lexeme);
+        if (keywordType != null) {
+            addToken(keywordType);
+            return;
+        }
+
+        String symbol = symbols.putIfAbsent(lexeme, lexeme);
+        addToken(Token.Type.IDENTIFIER, symbol != null ? symbol : lexeme, null);
     }
 
     private void number() {
@@ -148,26 +358,43 @@ public final class Scanner {
             }
         }
 
-        addToken(Token.Type.NUMBER,
-                Double.parseDouble(script.substring(start, stream.position)));
+        String lexeme = source.asciiSubstring(start, stream.position);
+        addToken(Token.Type.NUMBER, lexeme, Double.parseDouble(lexeme));
     }
 
     private void addToken(@NotNull Token.Type type) {
-        addToken(type, null);
+        addToken(type, FIXED_LEXEMES.get(type), null);
     }
 
-    private void addToken(@NotNull Token.Type type, @Nullable Object literal) {
-        String lexeme = script.substring(start, stream.position);
+    private void addToken(@NotNull Token.Type type, @NotNull String lexeme, @Nullable Object literal) {
         tokens.add(Token.from(type, lexeme, literal, line));
     }
 
+    /**
+     * Tokens of a part of the source, with line numbers counted
+     * from the line the part was scanned from.
+     */
+    record Chunk(@NotNull List<Token> tokens,
+                 @NotNull List<Diagnostic> diagnostics,
+                 int lastLine,
+                 int unterminatedStringStart,
+                 int unterminatedStringLine) {
+
+        boolean hasUnterminatedString() {
+            return unterminatedStringStart >= 0;
+        }
+    }
+
     private static final class ScannerStream {
 
         private int position;
-        @NotNull private final String script;
+        private final int end;
+        @NotNull private final Source source;
 
-        public ScannerStream(@NotNull String script) {
-            this.script = script;
+        public ScannerStream(@NotNull Source source, int from, int to) {
+            this.source = source;
+            this.position = from;
+            this.end = to;
         }
 
         char next() {
@@ -186,19 +413,19 @@ public final class Scanner {
         }
 
         char peek() {
-            return script.charAt(position);
+            return source.charAt(position);
         }
 
         char peekNext() {
-            if (position + 1 >= script.length()) {
+            if (position + 1 >= end || source.isAtEnd(position + 1)) {
                 return '\0';
             }
 
-            return script.charAt(position + 1);
+            return source.charAt(position + 1);
         }
 
         boolean hasNext() {
-            return position < script.length();
+            return position < end && !source.isAtEnd(position);
         }
     }
 }
@@ -0,0 +1,14 @@
+package com.github.st235.lox;
+
+/**
+ * Source whose whole text is at hand, so it can be split and scanned in parallel chunks.
+ */
+interface SizedSource extends Source {
+
+    int length();
+
+    @Override
+    default boolean isAtEnd(int position) {
+        return position >= length();
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.github.st235.lox.SnapshotWriter.*;
+
+/**
+ * Restores a global scope written by {@link SnapshotWriter}.
+ */
+final class SnapshotReader {
+
+    @NotNull
+    private final ByteBuffer buffer;
+    @NotNull
+    private final Interpreter interpreter;
+
+    private SnapshotReader(@NotNull ByteBuffer buffer,
+                           @NotNull Interpreter interpreter) {
+        this.buffer = buffer;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Defines every variable of the snapshot in the global scope of the interpreter,
+     * as if the script the snapshot was taken after has just run in it.
+     *
+     * @throws IllegalArgumentException or {@link java.nio.BufferUnderflowException}
+     * if the buffer does not hold a snapshot of the current {@link SnapshotWriter#VERSION}
+     * or the snapshot refers to a native function the interpreter does not have.
+     */
+    static void restore(@NotNull ByteBuffer buffer,
+                        @NotNull Interpreter interpreter) {
+        new SnapshotReader(buffer, interpreter).restore();
+    }
+
+    private void restore() {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a Lox snapshot.");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported version %d, expected %d.", version, VERSION));
+        }
+
+        int treeSize = buffer.getInt();
+        Program declarations = AstReader.read(buffer.slice(buffer.position(), treeSize));
+        buffer.position(buffer.position() + treeSize);
+
+        List<Path> modules = new ArrayList<>();
+        for (int i = readVarInt(); i > 0; i--) {
+            modules.add(Path.of(readString()));
+        }
+
+        Object[] objects = new Object[readVarInt()];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = readHeader(objects, declarations.statements());
+        }
+
+        for (Object object: objects) {
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                if (object instanceof LoxArray array) {
+                    array.push(readValue(objects));
+                    continue;
+                }
+
+                String name = readString();
+                Object value = readValue(objects);
+                if (object instanceof Environment environment) {
+                    environment.define(name, value);
+                } else if (object instanceof LoxClass klass) {
+                    klass.methods.put(name, cast(value, LoxMethod.class));
+                } else if (object instanceof LoxInstance instance) {
+                    instance.set(name, value);
+                } else {
+                    throw new IllegalArgumentException(String.format("%s cannot have members.", object));
+                }
+            }
+        }
+
+        // Only now that the snapshot is valid, its functions become runnable.
+        interpreter.resolve(declarations.resolution());
+        // Modules imported before the snapshot has been taken do not run again.
+        interpreter.importedModules().addAll(modules);
+    }
+
+    @NotNull
+    private Object readHeader(@NotNull Object[] objects,
+                              @NotNull List<Stmt> declarations) {
+        byte kind = buffer.get();
+        switch (kind) {
+            case GLOBALS -> {
+                return interpreter.globals();
+            }
+            case ENVIRONMENT -> {
+                return new Environment(cast(objects[readVarInt()], Environment.class));
+            }
+            case CLASS -> {
+                String name = readString();
+                int superclass = readVarInt();
+                return new LoxClass(name,
+                        superclass == 0 ? null : cast(objects[superclass - 1], LoxClass.class),
+                        new HashMap<>());
+            }
+            case FUNCTION -> {
+                Stmt.Function declaration = cast(declarations.get(readVarInt()), Stmt.Function.class);
+                Environment closure = cast(objects[readVarInt()], Environment.class);
+                return new LoxFunction(declaration, closure, buffer.get() != 0);
+            }
+            case INSTANCE -> {
+                return new LoxInstance(cast(objects[readVarInt()], LoxClass.class));
+            }
+            case NATIVE -> {
+                String name = readString();
+                if (!(interpreter.globals().values().get(name) instanceof NativeFunction function)) {
+                    throw new IllegalArgumentException(String.format("Native function '%s' is not defined.", name));
+                }
+                return function;
+            }
+            case ARRAY -> {
+                if (buffer.get() == 0) {
+                    // Elements follow in the content.
+                    return new LoxArray();
+                }
+
+                int size = readVarInt();
+                if (size < 0 || size > buffer.remaining() / Double.BYTES) {
+                    throw new IllegalArgumentException(String.format("Array of %d numbers does not fit into the snapshot.", size));
+                }
+                double[] numbers = new double[size];
+                buffer.asDoubleBuffer().get(numbers);
+                buffer.position(buffer.position() + size * Double.BYTES);
+                return LoxArray.ofNumbers(numbers);
+            }
+            default -> throw new IllegalArgumentException(String.format("Unknown object kind %d.", kind));
+        }
+    }
+
+    @Nullable
+    private Object readValue(@NotNull Object[] objects) {
+        byte tag = buffer.get();
+        return switch (tag) {
+            case NIL_VALUE -> null;
+            case FALSE_VALUE -> false;
+            case TRUE_VALUE -> true;
+            case NUMBER_VALUE -> buffer.getDouble();
+            case STRING_VALUE -> readString();
+            case OBJECT_VALUE -> objects[readVarInt()];
+            default -> throw new IllegalArgumentException(String.format("Unknown value tag %d.", tag));
+        };
+    }
+
+    // Objects only refer to earlier ones in their headers, a missing one means the snapshot is broken.
+    @NotNull
+    private static <T> T cast(@Nullable Object object, @NotNull Class<T> type) {
+        if (!type.isInstance(object)) {
+            throw new IllegalArgumentException(String.format("Expected %s, found %s.", type.getSimpleName(), object));
+        }
+        return type.cast(object);
+    }
+
+    @NotNull
+    private String readString() {
+        byte[] bytes = new byte[readVarInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte part;
+        do {
+            part = buffer.get();
+            value |= (part & 0x7F) << shift;
+            shift += 7;
+        } while ((part & 0x80) != 0);
+        return value;
+    }
+}
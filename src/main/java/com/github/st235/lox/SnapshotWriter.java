@@ -0,0 +1,291 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the global scope of an interpreter together with everything reachable
+ * from it, so {@link SnapshotReader} can restore it without running the script again.
+ *
+ * <p>The layout is:
+ * <pre>
+ * magic: int, version: short,
+ * declarations: int size, then the declarations of functions written by {@link AstWriter},
+ * modules: varint count, then the path of every imported module,
+ * objects: varint count, then the header of every object, then the content of every object.
+ * </pre>
+ * Objects are environments, classes, functions, instances, arrays and native functions, the global
+ * environment always comes first. The header holds what the object is created with: the parent of
+ * an environment, the name and the superclass of a class, the declaration, the closure
+ * and the initialiser flag of a function, the class of an instance, the name of a native function,
+ * which is looked up in the interpreter the snapshot is restored into, or whether an array holds
+ * only numbers, which follow as raw doubles then. Objects only refer to earlier ones in their headers.
+ * The content holds variables, methods, fields and elements of other arrays, which may refer
+ * to any object, so cycles survive the round trip.
+ */
+final class SnapshotWriter {
+
+    static final int MAGIC = 0x4C4F5853;
+    // Has to change every time objects or the layout change, and together with AstWriter#VERSION.
+    static final short VERSION = 3;
+
+    // Kinds of objects.
+    static final byte GLOBALS = 0;
+    static final byte ENVIRONMENT = 1;
+    static final byte CLASS = 2;
+    static final byte FUNCTION = 3;
+    static final byte INSTANCE = 4;
+    static final byte NATIVE = 5;
+    static final byte ARRAY = 6;
+
+    // Tags of values.
+    static final byte NIL_VALUE = 0;
+    static final byte FALSE_VALUE = 1;
+    static final byte TRUE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+    static final byte OBJECT_VALUE = 5;
+
+    @NotNull
+    private final Environment globals;
+
+    @NotNull
+    private final Map<Object, Integer> objectIndices = new IdentityHashMap<>();
+    @NotNull
+    private final List<Object> objects = new ArrayList<>();
+
+    @NotNull
+    private final Map<Stmt.Function, Integer> declarationIndices = new IdentityHashMap<>();
+    @NotNull
+    private final List<Stmt> declarations = new ArrayList<>();
+
+    @NotNull
+    private final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+    @NotNull
+    private final DataOutputStream out = new DataOutputStream(snapshot);
+
+    private SnapshotWriter(@NotNull Environment globals) {
+        this.globals = globals;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the global scope holds compiled functions
+     * or functions with lazy bodies, neither of them can be written.
+     */
+    static byte @NotNull [] write(@NotNull Interpreter interpreter) {
+        try {
+            SnapshotWriter writer = new SnapshotWriter(interpreter.globals());
+            writer.write(interpreter.resolution(), interpreter.importedModules());
+            return writer.snapshot.toByteArray();
+        } catch (IOException exception) {
+            // Nothing is written anywhere but into memory.
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void write(@NotNull Resolution resolution,
+                       @NotNull Iterable<Path> modules) throws IOException {
+        reference(globals);
+        // Objects found while walking the contents are appended to the list.
+        for (int i = 0; i < objects.size(); i++) {
+            for (Object value: valuesOf(objects.get(i))) {
+                if (isObject(value)) {
+                    reference(value);
+                }
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        byte[] tree = AstWriter.write(declarations, resolution);
+        out.writeInt(tree.length);
+        out.write(tree);
+
+        List<String> paths = new ArrayList<>();
+        for (Path module: modules) {
+            paths.add(module.toString());
+        }
+        writeVarInt(paths.size());
+        for (String path: paths) {
+            writeString(path);
+        }
+
+        writeVarInt(objects.size());
+        for (Object object: objects) {
+            writeHeader(object);
+        }
+        for (Object object: objects) {
+            if (object instanceof LoxArray array) {
+                writeElements(array);
+                continue;
+            }
+
+            Map<String, ?> content = contentOf(object);
+            writeVarInt(content.size());
+            for (Map.Entry<String, ?> entry: content.entrySet()) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gives the object an index, after the objects its header refers to.
+     */
+    private int reference(@NotNull Object object) {
+        Integer index = objectIndices.get(object);
+        if (index != null) {
+            return index;
+        }
+
+        if (object instanceof Environment environment) {
+            if (environment != globals) {
+                reference(environment.getParent());
+            }
+        } else if (object instanceof LoxClass klass) {
+            if (klass.superclass() != null) {
+                reference(klass.superclass());
+            }
+        } else if (object instanceof LoxFunction function) {
+            reference(function.closure());
+            declarationIndices.computeIfAbsent(function.declaration(), declaration -> {
+                declarations.add(declaration);
+                return declarations.size() - 1;
+            });
+        } else if (object instanceof LoxInstance instance) {
+            reference(instance.klass());
+        } else if (!(object instanceof NativeFunction) && !(object instanceof LoxArray)) {
+            throw new IllegalArgumentException(String.format("Cannot write %s into a snapshot.", object));
+        }
+
+        index = objects.size();
+        objectIndices.put(object, index);
+        objects.add(object);
+        return index;
+    }
+
+    private static boolean isObject(@Nullable Object value) {
+        return value != null && !(value instanceof Boolean) && !(value instanceof Double) && !Rope.isText(value);
+    }
+
+    @NotNull
+    private static Collection<?> valuesOf(@NotNull Object object) {
+        if (object instanceof LoxArray array) {
+            if (array.holdsNumbers()) {
+                return List.of();
+            }
+
+            List<Object> elements = new ArrayList<>(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                elements.add(array.elementAt(i));
+            }
+            return elements;
+        }
+        return contentOf(object).values();
+    }
+
+    @NotNull
+    private static Map<String, ?> contentOf(@NotNull Object object) {
+        if (object instanceof Environment environment) {
+            return environment.values();
+        } else if (object instanceof LoxClass klass) {
+            return klass.methods;
+        } else if (object instanceof LoxInstance instance) {
+            return instance.fields();
+        }
+        return Map.of();
+    }
+
+    private void writeHeader(@NotNull Object object) throws IOException {
+        if (object == globals) {
+            out.writeByte(GLOBALS);
+        } else if (object instanceof Environment environment) {
+            out.writeByte(ENVIRONMENT);
+            writeVarInt(objectIndices.get(environment.getParent()));
+        } else if (object instanceof LoxClass klass) {
+            out.writeByte(CLASS);
+            writeString(klass.name);
+            // The index is shifted by one, so a missing superclass is written as 0.
+            writeVarInt(klass.superclass() == null ? 0 : objectIndices.get(klass.superclass()) + 1);
+        } else if (object instanceof LoxFunction function) {
+            out.writeByte(FUNCTION);
+            writeVarInt(declarationIndices.get(function.declaration()));
+            writeVarInt(objectIndices.get(function.closure()));
+            out.writeBoolean(function.isInitialiser());
+        } else if (object instanceof LoxInstance instance) {
+            out.writeByte(INSTANCE);
+            writeVarInt(objectIndices.get(instance.klass()));
+        } else if (object instanceof NativeFunction function) {
+            out.writeByte(NATIVE);
+            writeString(function.name);
+        } else if (object instanceof LoxArray array) {
+            out.writeByte(ARRAY);
+            out.writeBoolean(array.holdsNumbers());
+            if (array.holdsNumbers()) {
+                writeVarInt(array.size());
+                for (int i = 0; i < array.size(); i++) {
+                    out.writeDouble((double) array.elementAt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the elements of an array that may hold any value, the numbers of others are in the header.
+     */
+    private void writeElements(@NotNull LoxArray array) throws IOException {
+        if (array.holdsNumbers()) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            writeValue(array.elementAt(i));
+        }
+    }
+
+    private void writeValue(@Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NIL_VALUE);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof Double number) {
+            out.writeByte(NUMBER_VALUE);
+            out.writeDouble(number);
+        } else if (Rope.isText(value)) {
+            out.writeByte(STRING_VALUE);
+            writeString(value.toString());
+        } else {
+            out.writeByte(OBJECT_VALUE);
+            writeVarInt(objectIndices.get(value));
+        }
+    }
+
+    private void writeString(@NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * View over the text of a script, which may not be known up to its end yet.
+ *
+ * <p>Positions are measured in source units: chars for in-memory strings
+ * and bytes for UTF-8 encoded sources. Every character Lox assigns a meaning
+ * to is ASCII, so {@link Scanner} can classify units without decoding them.
+ * Sources whose length is known upfront are {@link SizedSource sized}.
+ */
+interface Source {
+
+    /**
+     * Checks whether the script ends before the given position,
+     * reading the script up to the position if needed.
+     */
+    boolean isAtEnd(int position);
+
+    /**
+     * Returns the unit at the given position. Units of byte-based sources
+     * are returned as unsigned values, so non-ASCII bytes are always {@code >= 0x80}.
+     */
+    char charAt(int position);
+
+    /**
+     * Decodes the text in the given range.
+     */
+    @NotNull
+    String substring(int start, int end);
+
+    /**
+     * Same as {@link #substring(int, int)}, though the caller guarantees
+     * the range contains only ASCII characters and no decoding is needed.
+     */
+    @NotNull
+    default String asciiSubstring(int start, int end) {
+        return substring(start, end);
+    }
+
+    /**
+     * Hints that units before the given position will not be read anymore.
+     */
+    default void release(int position) {
+        // Random-access sources keep everything.
+    }
+}
@@ -2,15 +2,49 @@ package com.github.st235.lox;
 
 import java.util.List;
 
-public abstract class Stmt {
+public abstract sealed class Stmt permits
+        Stmt.Expression,
+        Stmt.Print,
+        Stmt.Var,
+        Stmt.Block,
+        Stmt.If,
+        Stmt.While,
+        Stmt.Function,
+        Stmt.Return,
+        Stmt.Class,
+        Stmt.Import {
+
+    enum Kind {
+        EXPRESSION,
+        PRINT,
+        VAR,
+        BLOCK,
+        IF,
+        WHILE,
+        FUNCTION,
+        RETURN,
+        CLASS,
+        IMPORT,
+    }
+
+    final Kind kind;
+
+    // Nodes keep no tokens, errors are reported at this line.
+    final int line;
+
+    private Stmt(Kind kind, int line) {
+        this.kind = kind;
+        this.line = line;
+    }
 
     abstract <R> R visit(Visitor<R> visitor);
 
-    public static class Expression extends Stmt {
+    public static final class Expression extends Stmt {
 
         final Expr expression;
 
-        Expression(Expr expression) {
+        Expression(int line, Expr expression) {
+            super(Kind.EXPRESSION, line);
             this.expression = expression;
         }
 
@@ -21,11 +55,12 @@ public abstract class Stmt {
 
     }
 
-    public static class Print extends Stmt {
+    public static final class Print extends Stmt {
 
         final Expr expression;
 
-        Print(Expr expression) {
+        Print(int line, Expr expression) {
+            super(Kind.PRINT, line);
             this.expression = expression;
         }
 
@@ -36,12 +71,13 @@ public abstract class Stmt {
 
     }
 
-    public static class Var extends Stmt {
+    public static final class Var extends Stmt {
 
-        final Token name;
+        final int name;
         final Expr initializer;
 
-        Var(Token name,  Expr initializer) {
+        Var(int line, int name,  Expr initializer) {
+            super(Kind.VAR, line);
             this.name = name;
             this.initializer = initializer;
         }
@@ -53,11 +89,12 @@ public abstract class Stmt {
 
     }
 
-    public static class Block extends Stmt {
+    public static final class Block extends Stmt {
 
         final List<Stmt> statements;
 
-        Block(List<Stmt> statements) {
+        Block(int line, List<Stmt> statements) {
+            super(Kind.BLOCK, line);
             this.statements = statements;
         }
 
@@ -68,13 +105,14 @@ public abstract class Stmt {
 
     }
 
-    public static class If extends Stmt {
+    public static final class If extends Stmt {
 
         final Expr condition;
         final Stmt thenBranch;
         final Stmt elseBranch;
 
-        If(Expr condition,  Stmt thenBranch,  Stmt elseBranch) {
+        If(int line, Expr condition,  Stmt thenBranch,  Stmt elseBranch) {
+            super(Kind.IF, line);
             this.condition = condition;
             this.thenBranch = thenBranch;
             this.elseBranch = elseBranch;
@@ -87,12 +125,13 @@ public abstract class Stmt {
 
     }
 
-    public static class While extends Stmt {
+    public static final class While extends Stmt {
 
         final Expr condition;
         final Stmt body;
 
-        While(Expr condition, Stmt body) {
+        While(int line, Expr condition,  Stmt body) {
+            super(Kind.WHILE, line);
             this.condition = condition;
             this.body = body;
         }
@@ -104,13 +143,14 @@ public abstract class Stmt {
 
     }
 
-    public static class Function extends Stmt {
+    public static final class Function extends Stmt {
 
-        final Token name;
-        final List<Token> params;
+        final int name;
+        final int[] params;
         final List<Stmt> body;
 
-        Function(Token name,  List<Token> params,  List<Stmt> body) {
+        Function(int line, int name,  int[] params,  List<Stmt> body) {
+            super(Kind.FUNCTION, line);
             this.name = name;
             this.params = params;
             this.body = body;
@@ -123,13 +163,12 @@ public abstract class Stmt {
 
     }
 
-    public static class Return extends Stmt {
+    public static final class Return extends Stmt {
 
-        final Token keyword;
         final Expr value;
 
-        Return(Token keyword,  Expr value) {
-            this.keyword = keyword;
+        Return(int line, Expr value) {
+            super(Kind.RETURN, line);
             this.value = value;
         }
 
@@ -140,13 +179,14 @@ public abstract class Stmt {
 
     }
 
-    public static class Class extends Stmt {
+    public static final class Class extends Stmt {
 
-        final Token name;
+        final int name;
         final Expr.Variable superclass;
         final List<Stmt.Function> methods;
 
-        Class(Token name,  Expr.Variable superclass,  List<Stmt.Function> methods) {
+        Class(int line, int name,  Expr.Variable superclass,  List<Stmt.Function> methods) {
+            super(Kind.CLASS, line);
             this.name = name;
             this.superclass = superclass;
             this.methods = methods;
@@ -159,6 +199,22 @@ public abstract class Stmt {
 
     }
 
+    public static final class Import extends Stmt {
+
+        final String path;
+
+        Import(int line, String path) {
+            super(Kind.IMPORT, line);
+            this.path = path;
+        }
+
+        @Override
+        <R> R visit(Visitor<R> visitor) {
+            return visitor.visitImport(this);
+        }
+
+    }
+
     public interface Visitor<R> {
         R visitExpression(Expression node);
         R visitPrint(Print node);
@@ -169,5 +225,7 @@ public abstract class Stmt {
         R visitFunction(Function node);
         R visitReturn(Return node);
         R visitClass(Class node);
+        R visitImport(Import node);
     }
+
 }
@@ -0,0 +1,29 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+final class StringSource implements SizedSource {
+
+    @NotNull
+    private final String script;
+
+    StringSource(@NotNull String script) {
+        this.script = script;
+    }
+
+    @Override
+    public int length() {
+        return script.length();
+    }
+
+    @Override
+    public char charAt(int position) {
+        return script.charAt(position);
+    }
+
+    @NotNull
+    @Override
+    public String substring(int start, int end) {
+        return script.substring(start, end);
+    }
+}
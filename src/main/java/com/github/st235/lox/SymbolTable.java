@@ -0,0 +1,136 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local scopes seen by {@link Resolver}, the global scope is not tracked.
+ *
+ * <p>Instead of a map per scope, every name has a chain of bindings:
+ * the head is the innermost visible declaration and each binding links
+ * to the one it shadows. Looking a name up is a single map access
+ * however deep the scopes are nested, and closing a scope only touches
+ * the names declared in it.
+ */
+final class SymbolTable {
+
+    private static final class Binding {
+
+        // Index of the scope the name is declared in, the outermost local scope is 0.
+        final int scope;
+        @Nullable
+        final Binding shadowed;
+
+        boolean isDefined;
+
+        Binding(int scope, @Nullable Binding shadowed, boolean isDefined) {
+            this.scope = scope;
+            this.shadowed = shadowed;
+            this.isDefined = isDefined;
+        }
+    }
+
+    @NotNull
+    private final Map<String, Binding> bindings = new HashMap<>();
+
+    // Names declared in each open scope, the innermost scope is at the head.
+    @NotNull
+    private final ArrayDeque<List<String>> scopes = new ArrayDeque<>();
+
+    boolean isEmpty() {
+        return scopes.isEmpty();
+    }
+
+    void beginScope() {
+        scopes.push(new ArrayList<>());
+    }
+
+    void endScope() {
+        for (String name: scopes.pop()) {
+            Binding shadowed = bindings.get(name).shadowed;
+            if (shadowed == null) {
+                bindings.remove(name);
+            } else {
+                bindings.put(name, shadowed);
+            }
+        }
+    }
+
+    /**
+     * Declares a name in the innermost scope, leaving it undefined.
+     *
+     * @return {@code false} if the scope already has the name.
+     */
+    boolean declare(@NotNull String name) {
+        int scope = innermostScope();
+        Binding binding = bindings.get(name);
+
+        if (binding != null && binding.scope == scope) {
+            return false;
+        }
+
+        bindings.put(name, new Binding(scope, binding, false));
+        scopes.peek().add(name);
+        return true;
+    }
+
+    /**
+     * Marks a name of the innermost scope as defined,
+     * declaring it first if needed.
+     */
+    void define(@NotNull String name) {
+        Binding binding = bindings.get(name);
+
+        if (binding == null || binding.scope != innermostScope()) {
+            declare(name);
+            binding = bindings.get(name);
+        }
+
+        binding.isDefined = true;
+    }
+
+    boolean isDeclaredButNotDefined(@NotNull String name) {
+        Binding binding = bindings.get(name);
+        return binding != null && binding.scope == innermostScope() && !binding.isDefined;
+    }
+
+    /**
+     * @return how many scopes away from the innermost one the name is declared,
+     * or {@code -1} if it is not declared in any local scope.
+     */
+    int distanceTo(@NotNull String name) {
+        Binding binding = bindings.get(name);
+        if (binding == null) {
+            return -1;
+        }
+        return innermostScope() - binding.scope;
+    }
+
+    /**
+     * Copies the names visible at this point, so they can be resolved against
+     * later, after this table has moved on. Shadowed bindings are dropped as
+     * the copy is never going to close the scopes it was taken in.
+     */
+    @NotNull
+    SymbolTable copyVisible() {
+        SymbolTable copy = new SymbolTable();
+        for (int i = 0; i < scopes.size(); i++) {
+            copy.scopes.push(new ArrayList<>());
+        }
+        for (Map.Entry<String, Binding> entry: bindings.entrySet()) {
+            Binding binding = entry.getValue();
+            copy.bindings.put(entry.getKey(), new Binding(binding.scope, null, binding.isDefined));
+        }
+        return copy;
+    }
+
+    private int innermostScope() {
+        return scopes.size() - 1;
+    }
+}
@@ -18,4 +18,8 @@ public final class Symbols {
         return isAlpha(c) || isDigit(c);
     }
 
+    public static boolean isAscii(char c) {
+        return c < 0x80;
+    }
+
 }
@@ -0,0 +1,123 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides when code interpreted by the {@link Interpreter} moves to the {@link VirtualMachine}.
+ *
+ * <p>Everything starts in the tree-walker, which reports every call of a function and
+ * every iteration of a loop. Once a function has been called often enough, its later calls
+ * run compiled. Once a loop has iterated often enough, it is replaced on the stack: the virtual machine
+ * continues it from the next check of the condition, in the very environment the interpreter
+ * has been running it in. Both tiers share environments and runtime objects, so nothing has
+ * to be translated. Code that cannot be compiled stays interpreted.
+ */
+final class Tiering {
+
+    static final int DEFAULT_CALL_THRESHOLD = 500;
+    static final int DEFAULT_BACK_EDGE_THRESHOLD = 5000;
+
+    record Code(@NotNull Image image, @NotNull Image.Prototype prototype) {
+    }
+
+    private final int callThreshold;
+    private final int backEdgeThreshold;
+
+    @NotNull
+    private final Map<Stmt.Function, Integer> calls = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Stmt.While, Integer> backEdges = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Object, Code> compiled = new IdentityHashMap<>();
+    // Code that failed to compile, so it is not tried again.
+    @NotNull
+    private final Set<Object> notCompilable = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    Tiering() {
+        this(DEFAULT_CALL_THRESHOLD, DEFAULT_BACK_EDGE_THRESHOLD);
+    }
+
+    Tiering(int callThreshold, int backEdgeThreshold) {
+        this.callThreshold = callThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+    }
+
+    /**
+     * Counts a call of the function.
+     *
+     * @return compiled function to run instead of interpreting it, or {@code null} while it is still cold.
+     */
+    @Nullable
+    Code onCall(@NotNull Stmt.Function declaration,
+                boolean isInitialiser,
+                @NotNull Interpreter interpreter) {
+        Code code = compiled.get(declaration);
+        if (code != null || notCompilable.contains(declaration)) {
+            return code;
+        }
+
+        int count = calls.merge(declaration, 1, Integer::sum);
+        if (count < callThreshold) {
+            return null;
+        }
+
+        calls.remove(declaration);
+        return compile(declaration, () -> {
+            Image image = Image.load(ByteBuffer.wrap(
+                    BytecodeCompiler.compileFunction(declaration, isInitialiser, interpreter.resolution())));
+            return new Code(image, image.prototypes[BytecodeCompiler.FUNCTION_PROTOTYPE]);
+        });
+    }
+
+    /**
+     * Counts an iteration of the loop, right before its condition is checked again.
+     *
+     * @return compiled loop to continue with, or {@code null} while it is still cold.
+     */
+    @Nullable
+    Code onBackEdge(@NotNull Stmt.While loop,
+                    @NotNull Interpreter interpreter) {
+        Code code = compiled.get(loop);
+        if (code != null || notCompilable.contains(loop)) {
+            return code;
+        }
+
+        int count = backEdges.merge(loop, 1, Integer::sum);
+        if (count < backEdgeThreshold) {
+            return null;
+        }
+
+        backEdges.remove(loop);
+        return compile(loop, () -> {
+            Image image = Image.load(ByteBuffer.wrap(BytecodeCompiler.compileLoop(loop, interpreter.resolution())));
+            return new Code(image, image.script());
+        });
+    }
+
+    private interface Compilation {
+        @NotNull
+        Code compile();
+    }
+
+    @Nullable
+    private Code compile(@NotNull Object node, @NotNull Compilation compilation) {
+        Code code;
+        try {
+            code = compilation.compile();
+        } catch (RuntimeException exception) {
+            // Too large for the instruction format, or a body that fails to parse.
+            // Either way, the interpreter knows how to handle it.
+            notCompilable.add(node);
+            return null;
+        }
+        compiled.put(node, code);
+        return code;
+    }
+}
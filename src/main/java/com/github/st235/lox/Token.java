@@ -7,7 +7,7 @@ public record Token(@NotNull Type type, @NotNull String lexeme, @Nullable Object
 
     public enum Type {
         // Single character operators.
-        LEFT_PARENTHESIS, RIGHT_PARENTHESIS, LEFT_BRACE, RIGHT_BRACE,
+        LEFT_PARENTHESIS, RIGHT_PARENTHESIS, LEFT_BRACE, RIGHT_BRACE, LEFT_BRACKET, RIGHT_BRACKET,
         PLUS, MINUS, SLASH, STAR, COMA, DOT, SEMICOLON,
 
         // One or two characters operators.
@@ -22,6 +22,7 @@ public record Token(@NotNull Type type, @NotNull String lexeme, @Nullable Object
         // Keywords.
         NIL, IF, ELSE, FOR, VAR, FUNCTION, RETURN, CLASS,
         TRUE, FALSE, PRINT, AND, OR, SUPER, THIS, WHILE,
+        IMPORT,
 
         // Misc.
         EOF,
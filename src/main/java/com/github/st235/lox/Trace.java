@@ -0,0 +1,437 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+import static com.github.st235.lox.Interpreter.isTruthy;
+
+/**
+ * A loop compiled for what {@link Tracing} has recorded during one of its iterations.
+ *
+ * <p>The loop becomes a tree of closures, which takes the environment as a parameter
+ * instead of looking it up in the interpreter. Depths of variables are looked up once, when compiling.
+ * Arithmetic and comparisons of operands that have only been numbers check for numbers
+ * and compute right away; calls of an expression that has always been the same function check
+ * for that function and call it without checking the number of arguments. When a check fails,
+ * the operation falls back to what the interpreter does.
+ *
+ * <p>Statements and expressions that have not run while recording, like a branch that has
+ * not been taken, leave the trace: the interpreter runs them in the environment of the trace,
+ * and the trace continues right after them. Every failed check and every exit is counted,
+ * a trace that ends up with more of them than iterations is {@link #isUnstable() unstable}.
+ */
+final class Trace {
+
+    // A trace is never unstable before that many failed checks and exits.
+    private static final int MIN_SIDE_EXITS = 100;
+
+    private interface Expression {
+        Object eval(@NotNull Environment environment);
+    }
+
+    private interface Statement {
+        void run(@NotNull Environment environment);
+    }
+
+    private interface NumberOperation {
+        Object apply(double left, double right);
+    }
+
+    @NotNull
+    private final Map<Expr, Tracing.Observation> profile;
+    @NotNull
+    private final Map<Expr, Integer> depths;
+    @NotNull
+    private final Interpreter interpreter;
+    @NotNull
+    private final Environment globals;
+
+    @NotNull
+    private final Expression condition;
+    @NotNull
+    private final Statement body;
+
+    private long iterations;
+    private long sideExits;
+
+    Trace(@NotNull Stmt.While loop,
+          @NotNull Map<Expr, Tracing.Observation> profile,
+          @NotNull Interpreter interpreter) {
+        this.profile = profile;
+        this.depths = interpreter.resolution().depths();
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals();
+
+        this.condition = compile(loop.condition);
+        this.body = compile(loop.body);
+    }
+
+    /**
+     * Runs the loop until its condition is false, starting with checking it.
+     */
+    void run(@NotNull Environment environment) {
+        while (isTruthy(condition.eval(environment))) {
+            body.run(environment);
+            iterations++;
+        }
+    }
+
+    boolean isUnstable() {
+        return sideExits > MIN_SIDE_EXITS && sideExits > iterations;
+    }
+
+    @NotNull
+    private Statement compile(@NotNull Stmt statement) {
+        return switch (statement.kind) {
+            case EXPRESSION -> {
+                Stmt.Expression node = (Stmt.Expression) statement;
+                if (!isRecorded(node.expression)) {
+                    yield exit(statement);
+                }
+                Expression expression = compile(node.expression);
+                yield environment -> expression.eval(environment);
+            }
+            case PRINT -> {
+                Stmt.Print node = (Stmt.Print) statement;
+                if (!isRecorded(node.expression)) {
+                    yield exit(statement);
+                }
+                Expression expression = compile(node.expression);
+                yield environment -> interpreter.print(expression.eval(environment));
+            }
+            case VAR -> {
+                Stmt.Var node = (Stmt.Var) statement;
+                String name = Names.of(node.name);
+                if (node.initializer == null) {
+                    yield environment -> environment.define(name, null);
+                }
+                if (!isRecorded(node.initializer)) {
+                    yield exit(statement);
+                }
+                Expression initializer = compile(node.initializer);
+                yield environment -> environment.define(name, initializer.eval(environment));
+            }
+            case BLOCK -> {
+                Statement[] statements = ((Stmt.Block) statement).statements.stream()
+                        .map(this::compile)
+                        .toArray(Statement[]::new);
+                yield environment -> {
+                    Environment blockEnvironment = new Environment(environment);
+                    for (Statement blockStatement: statements) {
+                        blockStatement.run(blockEnvironment);
+                    }
+                };
+            }
+            case IF -> {
+                Stmt.If node = (Stmt.If) statement;
+                if (!isRecorded(node.condition)) {
+                    yield exit(statement);
+                }
+                Expression condition = compile(node.condition);
+                Statement thenBranch = compile(node.thenBranch);
+                Statement elseBranch = node.elseBranch == null ? null : compile(node.elseBranch);
+                yield environment -> {
+                    if (isTruthy(condition.eval(environment))) {
+                        thenBranch.run(environment);
+                    } else if (elseBranch != null) {
+                        elseBranch.run(environment);
+                    }
+                };
+            }
+            case WHILE -> {
+                Stmt.While node = (Stmt.While) statement;
+                if (!isRecorded(node.condition)) {
+                    yield exit(statement);
+                }
+                Expression condition = compile(node.condition);
+                Statement body = compile(node.body);
+                yield environment -> {
+                    while (isTruthy(condition.eval(environment))) {
+                        body.run(environment);
+                    }
+                };
+            }
+            case RETURN -> {
+                Stmt.Return node = (Stmt.Return) statement;
+                if (node.value == null) {
+                    yield environment -> {
+                        throw new Return(null);
+                    };
+                }
+                if (!isRecorded(node.value)) {
+                    yield exit(statement);
+                }
+                Expression value = compile(node.value);
+                yield environment -> {
+                    throw new Return(value.eval(environment));
+                };
+            }
+            // Declarations are left to the interpreter, they are not worth compiling.
+            case FUNCTION, CLASS, IMPORT -> environment -> interpreter.execute(statement, environment);
+        };
+    }
+
+    @NotNull
+    private Expression compile(@NotNull Expr expression) {
+        if (!isRecorded(expression)) {
+            return exit(expression);
+        }
+
+        return switch (expression.kind) {
+            case BINARY -> compileBinary((Expr.Binary) expression);
+            case GROUPING -> compile(((Expr.Grouping) expression).expression);
+            case LITERAL -> {
+                Object value = ((Expr.Literal) expression).value;
+                yield environment -> value;
+            }
+            case UNARY -> {
+                Expr.Unary node = (Expr.Unary) expression;
+                Expression right = compile(node.right);
+                yield environment -> interpreter.unary(node.operator, node.line, right.eval(environment));
+            }
+            case VARIABLE -> compileLookup(Names.of(((Expr.Variable) expression).name), expression);
+            case THIS -> compileLookup("this", expression);
+            case ASSIGN -> {
+                Expr.Assign node = (Expr.Assign) expression;
+                Expression value = compile(node.expression);
+                String name = Names.of(node.name);
+                Integer depth = depths.get(node);
+                if (depth == null) {
+                    yield environment -> {
+                        Object result = value.eval(environment);
+                        globals.assign(name, node.line, result);
+                        return result;
+                    };
+                }
+                int localDepth = depth;
+                yield environment -> {
+                    Object result = value.eval(environment);
+                    environment.assignAt(localDepth, name, result);
+                    return result;
+                };
+            }
+            case LOGICAL -> {
+                Expr.Logical node = (Expr.Logical) expression;
+                Expression left = compile(node.left);
+                Expression right = compile(node.right);
+                boolean isOr = node.operator == Token.Type.OR;
+                yield environment -> {
+                    Object value = left.eval(environment);
+                    if (isTruthy(value) == isOr) {
+                        return value;
+                    }
+                    return right.eval(environment);
+                };
+            }
+            case CALL -> compileCall((Expr.Call) expression);
+            case GET -> {
+                Expr.Get node = (Expr.Get) expression;
+                Expression object = compile(node.object);
+                String name = Names.of(node.name);
+                yield environment -> {
+                    if (object.eval(environment) instanceof LoxInstance instance) {
+                        return instance.get(name, node.line);
+                    }
+                    throw new RuntimeError(node.line, "Only instances have properties.");
+                };
+            }
+            case SET -> {
+                Expr.Set node = (Expr.Set) expression;
+                Expression object = compile(node.object);
+                Expression value = compile(node.value);
+                String name = Names.of(node.name);
+                yield environment -> {
+                    if (object.eval(environment) instanceof LoxInstance instance) {
+                        Object result = value.eval(environment);
+                        instance.set(name, result);
+                        return result;
+                    }
+                    throw new RuntimeError(node.line, "Only instances have fields.");
+                };
+            }
+            case SUPER -> environment -> interpreter.evaluate(expression, environment);
+            case INDEX -> {
+                Expr.Index node = (Expr.Index) expression;
+                Expression object = compile(node.object);
+                Expression index = compile(node.index);
+                yield environment -> {
+                    Object array = object.eval(environment);
+                    return Interpreter.index(node.line, array, index.eval(environment));
+                };
+            }
+            case INDEX_SET -> {
+                Expr.IndexSet node = (Expr.IndexSet) expression;
+                Expression object = compile(node.object);
+                Expression index = compile(node.index);
+                Expression value = compile(node.value);
+                yield environment -> {
+                    Object array = object.eval(environment);
+                    Object position = index.eval(environment);
+                    return Interpreter.setIndex(node.line, array, position, value.eval(environment));
+                };
+            }
+        };
+    }
+
+    @NotNull
+    private Expression compileLookup(@NotNull String name, @NotNull Expr expression) {
+        Integer depth = depths.get(expression);
+        if (depth == null) {
+            int line = expression.line;
+            return environment -> globals.get(name, line);
+        }
+        int localDepth = depth;
+        return environment -> environment.getAt(localDepth, name);
+    }
+
+    @NotNull
+    private Expression compileBinary(@NotNull Expr.Binary node) {
+        Expression left = compile(node.left);
+        Expression right = compile(node.right);
+        Token.Type operator = node.operator;
+        int line = node.line;
+
+        if (!isOnly(node.left, Tracing.NUMBER) || !isOnly(node.right, Tracing.NUMBER)) {
+            return environment -> interpreter.binary(operator, line, left.eval(environment), right.eval(environment));
+        }
+
+        return switch (operator) {
+            case PLUS -> compileNumberOperation(operator, line, left, right, (a, b) -> a + b);
+            case MINUS -> compileNumberOperation(operator, line, left, right, (a, b) -> a - b);
+            case STAR -> compileNumberOperation(operator, line, left, right, (a, b) -> a * b);
+            // Division by zero is an error the interpreter reports.
+            case SLASH -> compileNumberOperation(operator, line, left, right,
+                    (a, b) -> b == 0 ? interpreter.binary(operator, line, a, b) : a / b);
+            case GREATER -> compileNumberOperation(operator, line, left, right, (a, b) -> a > b);
+            case GREATER_EQUAL -> compileNumberOperation(operator, line, left, right, (a, b) -> a >= b);
+            case LESS -> compileNumberOperation(operator, line, left, right, (a, b) -> a < b);
+            case LESS_EQUAL -> compileNumberOperation(operator, line, left, right, (a, b) -> a <= b);
+            default -> environment -> interpreter.binary(operator, line, left.eval(environment), right.eval(environment));
+        };
+    }
+
+    @NotNull
+    private Expression compileNumberOperation(@NotNull Token.Type operator,
+                                              int line,
+                                              @NotNull Expression left,
+                                              @NotNull Expression right,
+                                              @NotNull NumberOperation operation) {
+        return environment -> {
+            Object leftValue = left.eval(environment);
+            Object rightValue = right.eval(environment);
+            if (leftValue instanceof Double a && rightValue instanceof Double b) {
+                return operation.apply(a, b);
+            }
+            sideExits++;
+            return interpreter.binary(operator, line, leftValue, rightValue);
+        };
+    }
+
+    @NotNull
+    private Expression compileCall(@NotNull Expr.Call node) {
+        Expression callee = compile(node.callee);
+        Expression[] arguments = node.arguments.stream()
+                .map(this::compile)
+                .toArray(Expression[]::new);
+
+        // The callee may have been evaluated before the recording has started, inside the call.
+        Tracing.Observation observation = profile.get(node.callee);
+        if (observation == null || observation.isPolymorphic || !observation.isOnly(Tracing.OBJECT)) {
+            return environment -> interpreter.call(node.line, callee.eval(environment), evalAll(arguments, environment));
+        }
+
+        return new CallSite(node.line, callee, arguments, observation.value);
+    }
+
+    /**
+     * Call of a function that has always been the same one, which is checked for before calling it.
+     * Profiles of earlier runs cannot tell which function it is, then the first one called is taken.
+     */
+    private final class CallSite implements Expression {
+
+        private final int line;
+        @NotNull
+        private final Expression callee;
+        @NotNull
+        private final Expression[] arguments;
+
+        @Nullable
+        private LoxCallable target;
+
+        CallSite(int line,
+                 @NotNull Expression callee,
+                 @NotNull Expression[] arguments,
+                 @Nullable Object recordedCallee) {
+            this.line = line;
+            this.callee = callee;
+            this.arguments = arguments;
+            this.target = accepts(recordedCallee) ? (LoxCallable) recordedCallee : null;
+        }
+
+        @Override
+        public Object eval(@NotNull Environment environment) {
+            Object function = callee.eval(environment);
+            Object[] values = evalAll(arguments, environment);
+            if (target != null && function == target) {
+                return callTarget(values);
+            }
+
+            if (target == null && accepts(function)) {
+                target = (LoxCallable) function;
+                return callTarget(values);
+            }
+
+            sideExits++;
+            return interpreter.call(line, function, values);
+        }
+
+        private Object callTarget(@NotNull Object[] values) {
+            try {
+                return target.call(interpreter, values);
+            } catch (NativeError error) {
+                throw new RuntimeError(line, error.getMessage());
+            }
+        }
+
+        private boolean accepts(@Nullable Object function) {
+            return function instanceof LoxCallable callable && callable.arity() == arguments.length;
+        }
+    }
+
+    @NotNull
+    private static Object[] evalAll(@NotNull Expression[] expressions,
+                                    @NotNull Environment environment) {
+        Object[] values = new Object[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            values[i] = expressions[i].eval(environment);
+        }
+        return values;
+    }
+
+    @NotNull
+    private Statement exit(@NotNull Stmt statement) {
+        return environment -> {
+            sideExits++;
+            interpreter.execute(statement, environment);
+        };
+    }
+
+    @NotNull
+    private Expression exit(@NotNull Expr expression) {
+        return environment -> {
+            sideExits++;
+            return interpreter.evaluate(expression, environment);
+        };
+    }
+
+    private boolean isRecorded(@NotNull Expr expression) {
+        return profile.containsKey(expression);
+    }
+
+    private boolean isOnly(@NotNull Expr expression, int kind) {
+        Tracing.Observation observation = profile.get(expression);
+        return observation != null && observation.isOnly(kind);
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records what hot loops do and replaces them with {@link Trace traces}.
+ *
+ * <p>The tree-walker reports every iteration of a loop. Once a loop has iterated often enough,
+ * the values of every expression evaluated during its next iteration are recorded: what kinds of values
+ * they are and whether it is always the very same one, as it is for a called function.
+ * The branches taken follow from the recorded conditions. At the end of the iteration the loop
+ * is compiled into a trace specialised for what has been recorded, which runs the rest of the loop.
+ *
+ * <p>A trace whose guards fail too often is dropped, the loop goes back to the interpreter and
+ * gets recorded again later. After {@link #MAX_RECORDINGS} recordings the loop stays interpreted.
+ *
+ * <p>Observations may also come from a {@link ProfileReader profile} of an earlier run, then loops
+ * are traced as soon as they iterate for the first time. Such a profile is recorded by
+ * {@link #recordingEverything()}, which observes every expression of the run and traces nothing.
+ */
+final class Tracing {
+
+    static final int DEFAULT_BACK_EDGE_THRESHOLD = 100;
+    static final int MAX_RECORDINGS = 3;
+
+    // An iteration that never reaches the back edge, for example because
+    // it returns from a function, stops being recorded after that many values.
+    private static final int MAX_RECORDED_VALUES = 100_000;
+
+    // Kinds of recorded values.
+    // Booleans are told apart, so conditions show which branches have been taken.
+    static final int NIL = 1;
+    static final int FALSE = 1 << 1;
+    static final int TRUE = 1 << 2;
+    static final int NUMBER = 1 << 3;
+    static final int STRING = 1 << 4;
+    static final int OBJECT = 1 << 5;
+
+    /**
+     * What the values of an expression have been during the recorded iteration.
+     */
+    static final class Observation {
+
+        // Bits of the kinds of values.
+        int kinds;
+        // The first value, which is the only one unless the expression is polymorphic.
+        // Unknown for observations read from a profile.
+        @Nullable
+        final Object value;
+        boolean isPolymorphic;
+
+        Observation(@Nullable Object value) {
+            this.value = value;
+            this.kinds = kindOf(value);
+        }
+
+        Observation(int kinds, boolean isPolymorphic) {
+            this.value = null;
+            this.kinds = kinds;
+            this.isPolymorphic = isPolymorphic;
+        }
+
+        void add(@Nullable Object value) {
+            kinds |= kindOf(value);
+            if (value != this.value) {
+                isPolymorphic = true;
+            }
+        }
+
+        boolean isOnly(int kind) {
+            return kinds == kind;
+        }
+
+        private static int kindOf(@Nullable Object value) {
+            if (value == null) {
+                return NIL;
+            } else if (value instanceof Boolean bool) {
+                return bool ? TRUE : FALSE;
+            } else if (value instanceof Double) {
+                return NUMBER;
+            } else if (Rope.isText(value)) {
+                return STRING;
+            }
+            return OBJECT;
+        }
+    }
+
+    private final int backEdgeThreshold;
+    // Observations of an earlier run, if any.
+    @Nullable
+    private final Map<Expr, Observation> profile;
+    private final boolean isRecordingEverything;
+
+    @NotNull
+    private final Map<Stmt.While, Integer> backEdges = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Stmt.While, Integer> recordings = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Stmt.While, Trace> traces = new IdentityHashMap<>();
+    @NotNull
+    private final Set<Stmt.While> notTraceable = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Loops traced from the profile, they are recorded like any other loop once their trace is dropped.
+    @NotNull
+    private final Set<Stmt.While> speculated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // The loop being recorded and its observations, if any.
+    @Nullable
+    private Stmt.While recordedLoop;
+    @NotNull
+    private Map<Expr, Observation> observations = new IdentityHashMap<>();
+    private int recordedValues;
+
+    Tracing() {
+        this(DEFAULT_BACK_EDGE_THRESHOLD);
+    }
+
+    Tracing(int backEdgeThreshold) {
+        this(backEdgeThreshold, null, false);
+    }
+
+    /**
+     * @param profile observations of an earlier run of the same program, as read by {@link ProfileReader}.
+     */
+    Tracing(@NotNull Map<Expr, Observation> profile) {
+        this(DEFAULT_BACK_EDGE_THRESHOLD, profile, false);
+    }
+
+    private Tracing(int backEdgeThreshold,
+                    @Nullable Map<Expr, Observation> profile,
+                    boolean isRecordingEverything) {
+        this.backEdgeThreshold = backEdgeThreshold;
+        this.profile = profile;
+        this.isRecordingEverything = isRecordingEverything;
+    }
+
+    /**
+     * Observes every expression from start to end instead of tracing loops,
+     * so the {@link #observations()} can be written as a profile.
+     */
+    @NotNull
+    static Tracing recordingEverything() {
+        return new Tracing(DEFAULT_BACK_EDGE_THRESHOLD, null, true);
+    }
+
+    boolean isRecording() {
+        return isRecordingEverything || recordedLoop != null;
+    }
+
+    /**
+     * @return observations recorded so far.
+     */
+    @NotNull
+    Map<Expr, Observation> observations() {
+        return observations;
+    }
+
+    /**
+     * Records the value of the expression, while a loop is being recorded.
+     *
+     * @return the same value.
+     */
+    Object observe(@NotNull Expr expression, @Nullable Object value) {
+        Observation observation = observations.get(expression);
+        if (observation == null) {
+            observations.put(expression, new Observation(value));
+        } else {
+            observation.add(value);
+        }
+
+        if (!isRecordingEverything && ++recordedValues > MAX_RECORDED_VALUES) {
+            stopRecording();
+        }
+        return value;
+    }
+
+    /**
+     * Counts an iteration of the loop, right before its condition is checked again,
+     * and runs the rest of the loop as a trace if there is one.
+     *
+     * @return {@code true} if the loop has been completed by a trace.
+     */
+    boolean onBackEdge(@NotNull Stmt.While loop,
+                       @NotNull Interpreter interpreter,
+                       @NotNull Environment environment) {
+        if (isRecordingEverything) {
+            return false;
+        }
+
+        Trace trace = traces.get(loop);
+        if (trace == null) {
+            trace = record(loop, interpreter);
+            if (trace == null) {
+                return false;
+            }
+            traces.put(loop, trace);
+        }
+
+        trace.run(environment);
+
+        if (trace.isUnstable()) {
+            // Whatever has been recorded does not hold anymore.
+            traces.remove(loop);
+        }
+        return true;
+    }
+
+    /**
+     * Stops recording the loop, if it ends during the recorded iteration.
+     */
+    void onExit(@NotNull Stmt.While loop) {
+        if (recordedLoop == loop) {
+            stopRecording();
+        }
+    }
+
+    @Nullable
+    private Trace record(@NotNull Stmt.While loop,
+                         @NotNull Interpreter interpreter) {
+        if (recordedLoop == loop) {
+            // The recorded iteration is over.
+            Map<Expr, Observation> profile = observations;
+            stopRecording();
+            return new Trace(loop, profile, interpreter);
+        }
+
+        if (recordedLoop != null || notTraceable.contains(loop)) {
+            return null;
+        }
+
+        if (profile != null && profile.containsKey(loop.condition) && speculated.add(loop)) {
+            return new Trace(loop, profile, interpreter);
+        }
+
+        int count = backEdges.merge(loop, 1, Integer::sum);
+        if (count < backEdgeThreshold) {
+            return null;
+        }
+
+        backEdges.remove(loop);
+        if (recordings.merge(loop, 1, Integer::sum) > MAX_RECORDINGS) {
+            notTraceable.add(loop);
+        } else {
+            recordedLoop = loop;
+        }
+        return null;
+    }
+
+    private void stopRecording() {
+        recordedLoop = null;
+        observations = new IdentityHashMap<>();
+        recordedValues = 0;
+    }
+}
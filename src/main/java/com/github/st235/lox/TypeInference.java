@@ -0,0 +1,555 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Infers types of local variables and expressions of resolved statements, to find arithmetic
+ * and comparisons which operands are always numbers, so they need no checks.
+ *
+ * <p>A type is a set of kinds of values. Globals, parameters, fields and results of calls can hold anything.
+ * Locals are followed through the flow of their function: assignments replace their type,
+ * branches join types and loops are analysed until their types do not change anymore.
+ * Another function can assign a local it has captured at any call, so such locals have the
+ * same type everywhere: everything ever assigned to them. Locals visible to lazy function bodies
+ * can hold anything, as nothing is known about those bodies.
+ *
+ * <p>An operation is numeric only if its operands are numbers every time it runs,
+ * whatever path leads to it.
+ */
+final class TypeInference {
+
+    // Kinds of values.
+    static final int NIL = 1;
+    static final int BOOLEAN = 1 << 1;
+    static final int NUMBER = 1 << 2;
+    static final int STRING = 1 << 3;
+    static final int INSTANCE = 1 << 4;
+    static final int CALLABLE = 1 << 5;
+    static final int UNKNOWN = NIL | BOOLEAN | NUMBER | STRING | INSTANCE | CALLABLE;
+
+    private static final class Variable {
+
+        // The function the variable is declared in, null for the top level of the script.
+        @Nullable
+        final Stmt.Function owner;
+        // Everything ever assigned to the variable.
+        int type;
+        boolean isFollowed = true;
+
+        Variable(@Nullable Stmt.Function owner) {
+            this.owner = owner;
+        }
+    }
+
+    private record Definition(@NotNull Variable variable, @Nullable Expr value, int type) {
+    }
+
+    @NotNull
+    private final Map<Expr, Integer> depths;
+
+    // Bindings of names in every open local scope, the innermost scope is the last one.
+    @NotNull
+    private final List<Map<String, Variable>> scopes = new ArrayList<>();
+    @Nullable
+    private Stmt.Function function;
+
+    @NotNull
+    private final Map<Expr, Variable> references = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Stmt, Variable> declarations = new IdentityHashMap<>();
+    @NotNull
+    private final Map<Stmt.Function, Variable[]> parameters = new IdentityHashMap<>();
+    @NotNull
+    private final List<Definition> definitions = new ArrayList<>();
+
+    @NotNull
+    private final Set<Expr> numeric = Collections.newSetFromMap(new IdentityHashMap<>());
+    @NotNull
+    private final Set<Expr> notNumeric = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private TypeInference(@NotNull Map<Expr, Integer> depths) {
+        this.depths = depths;
+    }
+
+    /**
+     * @param depths of local variables, as found by {@link Resolver}.
+     * @return binary and unary expressions which operands are always numbers.
+     */
+    @NotNull
+    static Set<Expr> numericOperations(@NotNull List<Stmt> statements,
+                                       @NotNull Map<Expr, Integer> depths) {
+        TypeInference inference = new TypeInference(depths);
+
+        inference.bindAll(statements);
+        inference.summarise();
+        inference.analyseFunction(null, new Variable[0], statements);
+
+        inference.numeric.removeAll(inference.notNumeric);
+        return inference.numeric;
+    }
+
+    // Binding: finds the variable of every local reference and everything assigned to variables.
+
+    private void bindAll(@NotNull List<Stmt> statements) {
+        for (Stmt statement: statements) {
+            bind(statement);
+        }
+    }
+
+    private void bind(@Nullable Stmt statement) {
+        if (statement == null) {
+            return;
+        }
+
+        switch (statement.kind) {
+            case EXPRESSION -> bind(((Stmt.Expression) statement).expression);
+            case PRINT -> bind(((Stmt.Print) statement).expression);
+            case VAR -> {
+                Stmt.Var node = (Stmt.Var) statement;
+                bind(node.initializer);
+                declare(statement, node.name, node.initializer, node.initializer == null ? NIL : 0);
+            }
+            case BLOCK -> {
+                beginScope();
+                bindAll(((Stmt.Block) statement).statements);
+                endScope();
+            }
+            case IF -> {
+                Stmt.If node = (Stmt.If) statement;
+                bind(node.condition);
+                bind(node.thenBranch);
+                bind(node.elseBranch);
+            }
+            case WHILE -> {
+                Stmt.While node = (Stmt.While) statement;
+                bind(node.condition);
+                bind(node.body);
+            }
+            case FUNCTION -> {
+                Stmt.Function node = (Stmt.Function) statement;
+                declare(statement, node.name, null, CALLABLE);
+                bindFunction(node);
+            }
+            case RETURN -> bind(((Stmt.Return) statement).value);
+            case CLASS -> {
+                Stmt.Class node = (Stmt.Class) statement;
+                declare(statement, node.name, null, CALLABLE);
+                bind(node.superclass);
+                if (node.superclass != null) {
+                    beginScope();
+                    define("super", CALLABLE);
+                }
+                beginScope();
+                define("this", INSTANCE);
+                for (Stmt.Function method: node.methods) {
+                    bindFunction(method);
+                }
+                endScope();
+                if (node.superclass != null) {
+                    endScope();
+                }
+            }
+            case IMPORT -> {
+            }
+        }
+    }
+
+    private void bindFunction(@NotNull Stmt.Function declaration) {
+        if (declaration.body instanceof LazyFunctionBody) {
+            // Nothing is known about what the body does with the locals it can see,
+            // even once it is parsed its depths may not be known yet.
+            for (Map<String, Variable> scope: scopes) {
+                for (Variable variable: scope.values()) {
+                    variable.isFollowed = false;
+                    variable.type = UNKNOWN;
+                }
+            }
+            return;
+        }
+
+        Stmt.Function enclosing = function;
+        function = declaration;
+        beginScope();
+        Variable[] variables = new Variable[declaration.params.length];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = define(Names.of(declaration.params[i]), UNKNOWN);
+        }
+        parameters.put(declaration, variables);
+        bindAll(declaration.body);
+        endScope();
+        function = enclosing;
+    }
+
+    private void bind(@Nullable Expr expression) {
+        if (expression == null) {
+            return;
+        }
+
+        switch (expression.kind) {
+            case BINARY -> {
+                bind(((Expr.Binary) expression).left);
+                bind(((Expr.Binary) expression).right);
+            }
+            case GROUPING -> bind(((Expr.Grouping) expression).expression);
+            case UNARY -> bind(((Expr.Unary) expression).right);
+            case VARIABLE -> reference(expression, Names.of(((Expr.Variable) expression).name));
+            case ASSIGN -> {
+                Expr.Assign node = (Expr.Assign) expression;
+                bind(node.expression);
+                Variable variable = reference(expression, Names.of(node.name));
+                if (variable != null) {
+                    definitions.add(new Definition(variable, node.expression, 0));
+                    if (variable.owner != function) {
+                        variable.isFollowed = false;
+                    }
+                }
+            }
+            case LOGICAL -> {
+                bind(((Expr.Logical) expression).left);
+                bind(((Expr.Logical) expression).right);
+            }
+            case CALL -> {
+                bind(((Expr.Call) expression).callee);
+                for (Expr argument: ((Expr.Call) expression).arguments) {
+                    bind(argument);
+                }
+            }
+            case GET -> bind(((Expr.Get) expression).object);
+            case SET -> {
+                bind(((Expr.Set) expression).object);
+                bind(((Expr.Set) expression).value);
+            }
+            case INDEX -> {
+                bind(((Expr.Index) expression).object);
+                bind(((Expr.Index) expression).index);
+            }
+            case INDEX_SET -> {
+                bind(((Expr.IndexSet) expression).object);
+                bind(((Expr.IndexSet) expression).index);
+                bind(((Expr.IndexSet) expression).value);
+            }
+            case LITERAL, THIS, SUPER -> {
+            }
+        }
+    }
+
+    private void beginScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void declare(@NotNull Stmt declaration, int name, @Nullable Expr value, int type) {
+        Variable variable = define(Names.of(name), type);
+        if (variable != null) {
+            declarations.put(declaration, variable);
+            if (value != null) {
+                definitions.add(new Definition(variable, value, 0));
+            }
+        }
+    }
+
+    @Nullable
+    private Variable define(@NotNull String name, int type) {
+        // Globals are not followed.
+        if (scopes.isEmpty()) {
+            return null;
+        }
+        Variable variable = new Variable(function);
+        variable.type = type;
+        scopes.get(scopes.size() - 1).put(name, variable);
+        return variable;
+    }
+
+    @Nullable
+    private Variable reference(@NotNull Expr expression, @NotNull String name) {
+        Integer depth = depths.get(expression);
+        if (depth == null) {
+            return null;
+        }
+        Variable variable = scopes.get(scopes.size() - 1 - depth).get(name);
+        if (variable != null) {
+            references.put(expression, variable);
+        }
+        return variable;
+    }
+
+    // Summaries: what every variable may hold at any point.
+
+    private void summarise() {
+        boolean hasChanged = true;
+        while (hasChanged) {
+            hasChanged = false;
+            for (Definition definition: definitions) {
+                Variable variable = definition.variable();
+                int type = variable.type | definition.type();
+                if (definition.value() != null) {
+                    type |= analyse(definition.value(), null);
+                }
+                if (type != variable.type) {
+                    variable.type = type;
+                    hasChanged = true;
+                }
+            }
+        }
+    }
+
+    // Flow: types of followed locals at every point of their function.
+
+    private void analyseFunction(@Nullable Stmt.Function declaration,
+                                 @NotNull Variable[] parameters,
+                                 @NotNull List<Stmt> body) {
+        Stmt.Function enclosing = function;
+        function = declaration;
+
+        Map<Variable, Integer> state = new HashMap<>();
+        for (Variable variable: parameters) {
+            if (variable != null) {
+                assign(variable, UNKNOWN, state);
+            }
+        }
+        for (Stmt statement: body) {
+            analyse(statement, state);
+        }
+
+        function = enclosing;
+    }
+
+    private void analyse(@Nullable Stmt statement, @NotNull Map<Variable, Integer> state) {
+        if (statement == null) {
+            return;
+        }
+
+        switch (statement.kind) {
+            case EXPRESSION -> analyse(((Stmt.Expression) statement).expression, state);
+            case PRINT -> analyse(((Stmt.Print) statement).expression, state);
+            case VAR -> {
+                Stmt.Var node = (Stmt.Var) statement;
+                int type = node.initializer == null ? NIL : analyse(node.initializer, state);
+                Variable variable = declarations.get(statement);
+                if (variable != null) {
+                    assign(variable, type, state);
+                }
+            }
+            case BLOCK -> {
+                for (Stmt blockStatement: ((Stmt.Block) statement).statements) {
+                    analyse(blockStatement, state);
+                }
+            }
+            case IF -> {
+                Stmt.If node = (Stmt.If) statement;
+                analyse(node.condition, state);
+                Map<Variable, Integer> elseState = new HashMap<>(state);
+                analyse(node.thenBranch, state);
+                analyse(node.elseBranch, elseState);
+                join(state, elseState);
+            }
+            case WHILE -> {
+                Stmt.While node = (Stmt.While) statement;
+                Map<Variable, Integer> head = new HashMap<>(state);
+                while (true) {
+                    Map<Variable, Integer> iteration = new HashMap<>(head);
+                    analyse(node.condition, iteration);
+                    // The loop ends right after checking the condition.
+                    state.clear();
+                    state.putAll(iteration);
+
+                    analyse(node.body, iteration);
+                    Map<Variable, Integer> nextHead = new HashMap<>(head);
+                    join(nextHead, iteration);
+                    if (nextHead.equals(head)) {
+                        break;
+                    }
+                    head = nextHead;
+                }
+            }
+            case FUNCTION -> {
+                Stmt.Function node = (Stmt.Function) statement;
+                analyseBody(node);
+            }
+            case RETURN -> analyse(((Stmt.Return) statement).value, state);
+            case CLASS -> {
+                Stmt.Class node = (Stmt.Class) statement;
+                analyse(node.superclass, state);
+                for (Stmt.Function method: node.methods) {
+                    analyseBody(method);
+                }
+            }
+            case IMPORT -> {
+            }
+        }
+    }
+
+    private void analyseBody(@NotNull Stmt.Function declaration) {
+        if (declaration.body instanceof LazyFunctionBody) {
+            return;
+        }
+        analyseFunction(declaration, parameters.getOrDefault(declaration, new Variable[0]), declaration.body);
+    }
+
+    /**
+     * @param state types of followed locals, which the expression changes,
+     *              or {@code null} to use the types of their summaries.
+     * @return type of the value of the expression.
+     */
+    private int analyse(@Nullable Expr expression, @Nullable Map<Variable, Integer> state) {
+        if (expression == null) {
+            return NIL;
+        }
+
+        return switch (expression.kind) {
+            case BINARY -> {
+                Expr.Binary node = (Expr.Binary) expression;
+                int left = analyse(node.left, state);
+                int right = analyse(node.right, state);
+                yield binary(node, left, right, state != null);
+            }
+            case GROUPING -> analyse(((Expr.Grouping) expression).expression, state);
+            case LITERAL -> {
+                Object value = ((Expr.Literal) expression).value;
+                if (value == null) {
+                    yield NIL;
+                } else if (value instanceof Boolean) {
+                    yield BOOLEAN;
+                } else if (value instanceof Double) {
+                    yield NUMBER;
+                }
+                yield STRING;
+            }
+            case UNARY -> {
+                Expr.Unary node = (Expr.Unary) expression;
+                int right = analyse(node.right, state);
+                if (node.operator == Token.Type.NOT) {
+                    yield BOOLEAN;
+                }
+                if (state != null) {
+                    (right == NUMBER ? numeric : notNumeric).add(expression);
+                }
+                yield NUMBER;
+            }
+            case VARIABLE -> typeOf(references.get(expression), state);
+            case ASSIGN -> {
+                int type = analyse(((Expr.Assign) expression).expression, state);
+                Variable variable = references.get(expression);
+                if (variable != null && state != null) {
+                    assign(variable, type, state);
+                }
+                yield type;
+            }
+            case LOGICAL -> {
+                Expr.Logical node = (Expr.Logical) expression;
+                int left = analyse(node.left, state);
+                if (state == null) {
+                    yield left | analyse(node.right, null);
+                }
+                // The right operand may not run at all.
+                Map<Variable, Integer> rightState = new HashMap<>(state);
+                int right = analyse(node.right, rightState);
+                join(state, rightState);
+                yield left | right;
+            }
+            case CALL -> {
+                Expr.Call node = (Expr.Call) expression;
+                analyse(node.callee, state);
+                for (Expr argument: node.arguments) {
+                    analyse(argument, state);
+                }
+                yield UNKNOWN;
+            }
+            case GET -> {
+                analyse(((Expr.Get) expression).object, state);
+                yield UNKNOWN;
+            }
+            case SET -> {
+                Expr.Set node = (Expr.Set) expression;
+                analyse(node.object, state);
+                yield analyse(node.value, state);
+            }
+            case INDEX -> {
+                Expr.Index node = (Expr.Index) expression;
+                analyse(node.object, state);
+                analyse(node.index, state);
+                yield UNKNOWN;
+            }
+            case INDEX_SET -> {
+                Expr.IndexSet node = (Expr.IndexSet) expression;
+                analyse(node.object, state);
+                analyse(node.index, state);
+                yield analyse(node.value, state);
+            }
+            case THIS -> INSTANCE;
+            case SUPER -> CALLABLE;
+        };
+    }
+
+    private int binary(@NotNull Expr.Binary node, int left, int right, boolean isFlowing) {
+        return switch (node.operator) {
+            case PLUS, MINUS, STAR, SLASH, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+                if (isFlowing) {
+                    (left == NUMBER && right == NUMBER ? numeric : notNumeric).add(node);
+                }
+
+                Token.Type operator = node.operator;
+                if (operator != Token.Type.PLUS) {
+                    // Anything else fails.
+                    yield operator == Token.Type.MINUS || operator == Token.Type.STAR || operator == Token.Type.SLASH
+                            ? NUMBER
+                            : BOOLEAN;
+                }
+                if (left == NUMBER && right == NUMBER) {
+                    yield NUMBER;
+                }
+                if (left == STRING || right == STRING) {
+                    yield STRING;
+                }
+                yield NUMBER | STRING;
+            }
+            default -> BOOLEAN;
+        };
+    }
+
+    private int typeOf(@Nullable Variable variable, @Nullable Map<Variable, Integer> state) {
+        if (variable == null) {
+            return UNKNOWN;
+        }
+        if (state != null && isFollowedHere(variable)) {
+            Integer type = state.get(variable);
+            if (type != null) {
+                return type;
+            }
+        }
+        return variable.type;
+    }
+
+    private void assign(@NotNull Variable variable, int type, @NotNull Map<Variable, Integer> state) {
+        if (isFollowedHere(variable)) {
+            state.put(variable, type);
+        }
+    }
+
+    private boolean isFollowedHere(@NotNull Variable variable) {
+        return variable.isFollowed && variable.owner == function;
+    }
+
+    /**
+     * Joins the other state into the state, variables that are missing in one of them
+     * are not followed past the join.
+     */
+    private static void join(@NotNull Map<Variable, Integer> state, @NotNull Map<Variable, Integer> other) {
+        state.keySet().retainAll(other.keySet());
+        for (Map.Entry<Variable, Integer> entry: state.entrySet()) {
+            entry.setValue(entry.getValue() | other.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 encoded script backed by a {@link ByteBuffer}, usually a memory-mapped file.
+ *
+ * <p>The buffer is never decoded as a whole: only lexemes that end up
+ * in tokens are copied out of it. Reads use absolute positions, so the same
+ * buffer can be shared by several scanners at once.
+ */
+final class Utf8Source implements SizedSource {
+
+    @NotNull
+    private final ByteBuffer buffer;
+
+    Utf8Source(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public char charAt(int position) {
+        return (char) (buffer.get(position) & 0xFF);
+    }
+
+    @NotNull
+    @Override
+    public String substring(int start, int end) {
+        return new String(copy(start, end), StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    @Override
+    public String asciiSubstring(int start, int end) {
+        // Latin-1 maps every byte to the same char, which is exactly ASCII
+        // for the ranges we are allowed to receive here, and skips validation.
+        return new String(copy(start, end), StandardCharsets.ISO_8859_1);
+    }
+
+    @NotNull
+    private byte[] copy(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return bytes;
+    }
+}
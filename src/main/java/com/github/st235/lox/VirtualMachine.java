@@ -0,0 +1,376 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.st235.lox.OpCode.*;
+
+/**
+ * Executes compiled functions of an {@link Image}, instruction by instruction, straight from its buffer.
+ *
+ * <p>Values live on an operand stack, variables live in the same {@link Environment environments}
+ * as in the {@link Interpreter}, which also provides the global scope and the output. Functions, classes
+ * and instances are shared with the interpreter too, so compiled code can call natives and
+ * interpreted functions, and the other way around.
+ */
+final class VirtualMachine {
+
+    @NotNull
+    private final Interpreter interpreter;
+    @NotNull
+    private final Image image;
+    @NotNull
+    private final Image.Prototype prototype;
+
+    // Absolute position of the first instruction of the function.
+    private final int base;
+    // Start of the instruction being executed, to report errors.
+    private int instruction;
+
+    @NotNull
+    private Object[] stack = new Object[16];
+    private int size = 0;
+
+    private VirtualMachine(@NotNull Interpreter interpreter,
+                           @NotNull Image image,
+                           @NotNull Image.Prototype prototype) {
+        this.interpreter = interpreter;
+        this.image = image;
+        this.prototype = prototype;
+        this.base = image.codeBase + prototype.codeOffset();
+    }
+
+    static void run(@NotNull Interpreter interpreter, @NotNull Image image) {
+        execute(interpreter, image, image.script(), interpreter.globals());
+    }
+
+    /**
+     * @return the returned value.
+     */
+    @Nullable
+    static Object execute(@NotNull Interpreter interpreter,
+                          @NotNull Image image,
+                          @NotNull Image.Prototype prototype,
+                          @NotNull Environment environment) {
+        return new VirtualMachine(interpreter, image, prototype).execute(environment);
+    }
+
+    @Nullable
+    private Object execute(@NotNull Environment environment) {
+        ByteBuffer code = image.code;
+        Object[] constants = image.constants;
+        Environment globals = interpreter.globals();
+        int pc = base;
+
+        while (true) {
+            instruction = pc;
+            byte opCode = code.get(pc++);
+
+            switch (opCode) {
+                case CONSTANT -> {
+                    push(constants[code.getInt(pc)]);
+                    pc += 4;
+                }
+                case NIL -> push(null);
+                case TRUE -> push(true);
+                case FALSE -> push(false);
+                case POP -> size--;
+
+                case GET_LOCAL -> {
+                    push(environment.getAt(code.getShort(pc), (String) constants[code.getInt(pc + 2)]));
+                    pc += 6;
+                }
+                case SET_LOCAL -> {
+                    environment.assignAt(code.getShort(pc), (String) constants[code.getInt(pc + 2)], peek());
+                    pc += 6;
+                }
+                case GET_GLOBAL -> {
+                    push(global(globals, (String) constants[code.getInt(pc)]));
+                    pc += 4;
+                }
+                case SET_GLOBAL -> {
+                    String name = (String) constants[code.getInt(pc)];
+                    if (!globals.has(name)) {
+                        throw error(String.format("Undefined variable '%s'.", name));
+                    }
+                    globals.define(name, peek());
+                    pc += 4;
+                }
+                case DEFINE -> {
+                    environment.define((String) constants[code.getInt(pc)], pop());
+                    pc += 4;
+                }
+
+                case GET_PROPERTY -> {
+                    String name = (String) constants[code.getInt(pc)];
+                    if (!(pop() instanceof LoxInstance instance)) {
+                        throw error("Only instances have properties.");
+                    }
+                    Object value = instance.get(name);
+                    if (value == LoxInstance.UNDEFINED) {
+                        throw error(String.format("Undefined property '%s'.", name));
+                    }
+                    push(value);
+                    pc += 4;
+                }
+                case ENSURE_INSTANCE -> {
+                    if (!(peek() instanceof LoxInstance)) {
+                        throw error("Only instances have fields.");
+                    }
+                }
+                case SET_PROPERTY -> {
+                    Object value = pop();
+                    LoxInstance instance = (LoxInstance) pop();
+                    instance.set((String) constants[code.getInt(pc)], value);
+                    push(value);
+                    pc += 4;
+                }
+                case GET_INDEX -> {
+                    Object index = pop();
+                    push(Interpreter.index(line(), pop(), index));
+                }
+                case SET_INDEX -> {
+                    Object value = pop();
+                    Object index = pop();
+                    push(Interpreter.setIndex(line(), pop(), index, value));
+                }
+                case GET_SUPER -> {
+                    int depth = code.getShort(pc);
+                    String name = (String) constants[code.getInt(pc + 2)];
+                    LoxClass superclass = (LoxClass) environment.getAt(depth, "super");
+                    LoxInstance object = (LoxInstance) environment.getAt(depth - 1, "this");
+                    LoxMethod method = superclass.findMethod(name);
+                    if (method == null) {
+                        throw error(String.format("Undefined property '%s'.", name));
+                    }
+                    push(method.bind(object));
+                    pc += 6;
+                }
+
+                case EQUAL -> {
+                    Object right = pop();
+                    push(Interpreter.isEqual(pop(), right));
+                }
+                case NOT_EQUAL -> {
+                    Object right = pop();
+                    push(!Interpreter.isEqual(pop(), right));
+                }
+                case GREATER -> {
+                    double right = number(pop());
+                    push(number(pop()) > right);
+                }
+                case GREATER_EQUAL -> {
+                    double right = number(pop());
+                    push(number(pop()) >= right);
+                }
+                case LESS -> {
+                    double right = number(pop());
+                    push(number(pop()) < right);
+                }
+                case LESS_EQUAL -> {
+                    double right = number(pop());
+                    push(number(pop()) <= right);
+                }
+                case ADD -> {
+                    Object right = pop();
+                    push(add(pop(), right));
+                }
+                case SUBTRACT -> {
+                    double right = number(pop());
+                    push(number(pop()) - right);
+                }
+                case MULTIPLY -> {
+                    double right = number(pop());
+                    push(number(pop()) * right);
+                }
+                case DIVIDE -> {
+                    double right = number(pop());
+                    double left = number(pop());
+                    if (right == 0) {
+                        throw error("Divide by 0");
+                    }
+                    push(left / right);
+                }
+                case NOT -> push(!Interpreter.isTruthy(pop()));
+                case NEGATE -> push(-number(pop()));
+
+                case PRINT -> interpreter.print(pop());
+                case JUMP -> pc = base + code.getInt(pc);
+                case JUMP_IF_FALSE -> pc = Interpreter.isTruthy(peek()) ? pc + 4 : base + code.getInt(pc);
+                case JUMP_IF_TRUE -> pc = Interpreter.isTruthy(peek()) ? base + code.getInt(pc) : pc + 4;
+                case CALL -> {
+                    int count = code.get(pc) & 0xFF;
+                    int first = size - count;
+                    Object callee = stack[first - 1];
+
+                    if (!(callee instanceof LoxCallable function)) {
+                        throw error("Can only call functions and classes.");
+                    }
+                    if (function.arity() != count) {
+                        throw error(String.format("Expected %d arguments but got %d.", function.arity(), count));
+                    }
+
+                    // Arguments are passed straight from the stack, most calls need no list of them.
+                    Object value;
+                    try {
+                        value = switch (count) {
+                            case 0 -> function.call0(interpreter);
+                            case 1 -> function.call1(interpreter, stack[first]);
+                            case 2 -> function.call2(interpreter, stack[first], stack[first + 1]);
+                            case 3 -> function.call3(interpreter, stack[first], stack[first + 1], stack[first + 2]);
+                            default -> function.call(interpreter, Arrays.copyOfRange(stack, first, size));
+                        };
+                    } catch (NativeError nativeError) {
+                        throw error(nativeError.getMessage());
+                    }
+                    size = first - 1;
+                    push(value);
+                    pc += 1;
+                }
+                case CLOSURE -> {
+                    push(new CompiledFunction(image, image.prototypes[code.getInt(pc)], environment));
+                    pc += 4;
+                }
+                case UNWIND_RETURN -> throw new Return(pop());
+                case RETURN -> {
+                    return pop();
+                }
+
+                case BEGIN_SCOPE -> environment = new Environment(environment);
+                case END_SCOPE -> environment = environment.getParent();
+                case INHERIT -> {
+                    Object superclass = pop();
+                    if (!(superclass instanceof LoxClass)) {
+                        throw error("Superclass must be class");
+                    }
+                    environment = new Environment(environment);
+                    environment.define("super", superclass);
+                }
+                case CLASS -> {
+                    String name = (String) constants[code.getInt(pc)];
+                    int count = code.getShort(pc + 4);
+                    boolean hasSuperclass = code.get(pc + 6) != 0;
+
+                    Map<String, LoxMethod> methods = new HashMap<>();
+                    for (int i = size - count; i < size; i++) {
+                        CompiledFunction method = (CompiledFunction) stack[i];
+                        methods.put(method.name(), method);
+                    }
+                    size -= count;
+
+                    LoxClass superclass = null;
+                    if (hasSuperclass) {
+                        superclass = (LoxClass) environment.getAt(0, "super");
+                        environment = environment.getParent();
+                    }
+
+                    push(new LoxClass(name, superclass, methods));
+                    pc += 7;
+                }
+                case IMPORT -> {
+                    String path = (String) constants[code.getInt(pc)];
+                    interpreter.importModule(Path.of(path), line());
+                    pc += 4;
+                }
+
+                case ADD_LOCAL_CONSTANT -> {
+                    int depth = code.getShort(pc);
+                    String name = (String) constants[code.getInt(pc + 2)];
+                    Object sum = add(environment.getAt(depth, name), constants[code.getInt(pc + 6)]);
+                    environment.assignAt(depth, name, sum);
+                    push(sum);
+                    pc += 10;
+                }
+                case LESS_LOCALS -> {
+                    double left = number(environment.getAt(code.getShort(pc), (String) constants[code.getInt(pc + 2)]));
+                    double right = number(environment.getAt(code.getShort(pc + 6), (String) constants[code.getInt(pc + 8)]));
+                    push(left < right);
+                    pc += 12;
+                }
+                case LESS_LOCAL_CONSTANT -> {
+                    double left = number(environment.getAt(code.getShort(pc), (String) constants[code.getInt(pc + 2)]));
+                    push(left < (double) constants[code.getInt(pc + 6)]);
+                    pc += 10;
+                }
+                case PRINT_LOCAL -> {
+                    interpreter.print(environment.getAt(code.getShort(pc), (String) constants[code.getInt(pc + 2)]));
+                    pc += 6;
+                }
+                case PRINT_GLOBAL -> {
+                    interpreter.print(global(globals, (String) constants[code.getInt(pc)]));
+                    pc += 4;
+                }
+                case GET_THIS_PROPERTY -> {
+                    LoxInstance instance = (LoxInstance) environment.getAt(code.getShort(pc), "this");
+                    String name = (String) constants[code.getInt(pc + 2)];
+                    Object value = instance.get(name);
+                    if (value == LoxInstance.UNDEFINED) {
+                        throw error(String.format("Undefined property '%s'.", name));
+                    }
+                    push(value);
+                    pc += 6;
+                }
+
+                default -> throw new IllegalStateException(String.format("Unknown instruction %d at %d.", opCode, pc - 1));
+            }
+        }
+    }
+
+    private void push(@Nullable Object value) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+        }
+        stack[size++] = value;
+    }
+
+    @Nullable
+    private Object pop() {
+        return stack[--size];
+    }
+
+    @Nullable
+    private Object peek() {
+        return stack[size - 1];
+    }
+
+    @Nullable
+    private Object global(@NotNull Environment globals, @NotNull String name) {
+        if (!globals.has(name)) {
+            throw error(String.format("Undefined variable '%s'.", name));
+        }
+        return globals.getAt(0, name);
+    }
+
+    @Nullable
+    private Object add(@Nullable Object left, @Nullable Object right) {
+        if (left instanceof Double a && right instanceof Double b) {
+            return a + b;
+        } else if (Rope.isText(left) || Rope.isText(right)) {
+            return Rope.concat(left, right);
+        }
+        throw error("Operand supports only strings or doubles.");
+    }
+
+    private double number(@Nullable Object operand) {
+        if (operand instanceof Double number) {
+            return number;
+        }
+        throw error("Operand must be a number.");
+    }
+
+    // Errors only need the line, which is looked up when one happens.
+    private int line() {
+        return image.line(prototype, instruction - base);
+    }
+
+    @NotNull
+    private RuntimeError error(@NotNull String message) {
+        return new RuntimeError(line(), message);
+    }
+}
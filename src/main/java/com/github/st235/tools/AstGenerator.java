@@ -9,9 +9,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 public class AstGenerator {
 
@@ -22,10 +24,32 @@ public class AstGenerator {
     @NotNull
     private final List<String> imports;
 
+    private final boolean isSealed;
+
+    private final boolean isCompact;
+
     public AstGenerator(@NotNull String packageName,
                         @NotNull List<String> imports) {
+        this(packageName, imports, false, false);
+    }
+
+    /**
+     * @param isSealed makes the root a sealed class permitting only its final nodes,
+     *                 every node then carries a {@code Kind} to dispatch on with a {@code switch}
+     *                 besides the visitor.
+     * @param isCompact makes every node keep the line it starts at in the root, instead of
+     *                  the tokens it was parsed from. Nodes cannot have token fields then,
+     *                  they keep only what they need: symbol ids of names, the values of literals
+     *                  and the types of operators.
+     */
+    public AstGenerator(@NotNull String packageName,
+                        @NotNull List<String> imports,
+                        boolean isSealed,
+                        boolean isCompact) {
         this.packageName = packageName.trim();
-        this.imports = imports;
+        this.imports = new ArrayList<>(imports);
+        this.isSealed = isSealed;
+        this.isCompact = isCompact;
         Collections.sort(this.imports);
     }
 
@@ -35,9 +59,17 @@ public class AstGenerator {
         definePackage(writer);
         defineImports(writer);
 
-        writer.write(String.format("public abstract class %s {", rootInterface));
-        writer.newLine();
-        writer.newLine();
+        if (isSealed) {
+            defineSealedRoot(rootInterface, entriesDefinition, DEFAULT_INDENT, writer);
+        } else {
+            writer.write(String.format("public abstract class %s {", rootInterface));
+            writer.newLine();
+            writer.newLine();
+
+            if (isCompact) {
+                defineLine(rootInterface, "", DEFAULT_INDENT, writer);
+            }
+        }
 
         writer.write(DEFAULT_INDENT + "abstract <R> R visit(Visitor<R> visitor);");
         writer.newLine();
@@ -46,7 +78,7 @@ public class AstGenerator {
         for (String entryDefinition: entriesDefinition) {
             String[] parts = entryDefinition.split(":");
             String type = parts[0].trim();
-            String[] entries = parts[1].trim().split(",");
+            String[] entries = fieldsOf(parts);
 
             defineInnerClass(rootInterface, type, entries, DEFAULT_INDENT, writer);
             writer.newLine();
@@ -58,6 +90,103 @@ public class AstGenerator {
         writer.newLine();
     }
 
+    private void defineSealedRoot(@NotNull String rootInterface,
+                                  @NotNull List<String> entriesDefinition,
+                                  @NotNull String indent,
+                                  @NotNull BufferedWriter writer) throws IOException {
+        List<String> types = new ArrayList<>();
+        for (String entryDefinition: entriesDefinition) {
+            types.add(entryDefinition.split(":")[0].trim());
+        }
+
+        writer.write(String.format("public abstract sealed class %s permits", rootInterface));
+        writer.newLine();
+        for (int i = 0; i < types.size(); i++) {
+            writer.write(indent + indent + String.format("%s.%s%s", rootInterface, types.get(i), i < types.size() - 1 ? "," : " {"));
+            writer.newLine();
+        }
+        writer.newLine();
+
+        writer.write(indent + "enum Kind {");
+        writer.newLine();
+        for (String type: types) {
+            writer.write(indent + indent + String.format("%s,", kindOf(type)));
+            writer.newLine();
+        }
+        writer.write(indent + "}");
+        writer.newLine();
+        writer.newLine();
+
+        writer.write(indent + "final Kind kind;");
+        writer.newLine();
+        writer.newLine();
+
+        if (isCompact) {
+            defineLine(rootInterface, "Kind kind", indent, writer);
+            return;
+        }
+
+        writer.write(indent + String.format("private %s(Kind kind) {", rootInterface));
+        writer.newLine();
+        writer.write(indent + indent + "this.kind = kind;");
+        writer.newLine();
+        writer.write(indent + "}");
+        writer.newLine();
+        writer.newLine();
+    }
+
+    /**
+     * Defines the line of compact nodes and the constructor of the root, which takes it.
+     *
+     * @param kind parameter of the constructor preceding the line, empty if there is none.
+     */
+    private void defineLine(@NotNull String rootInterface,
+                            @NotNull String kind,
+                            @NotNull String indent,
+                            @NotNull BufferedWriter writer) throws IOException {
+        writer.write(indent + "// Nodes keep no tokens, errors are reported at this line.");
+        writer.newLine();
+        writer.write(indent + "final int line;");
+        writer.newLine();
+        writer.newLine();
+
+        writer.write(indent + String.format("%s%s(%s) {", isSealed ? "private " : "", rootInterface,
+                kind.isEmpty() ? "int line" : kind + ", int line"));
+        writer.newLine();
+        if (!kind.isEmpty()) {
+            writer.write(indent + indent + "this.kind = kind;");
+            writer.newLine();
+        }
+        writer.write(indent + indent + "this.line = line;");
+        writer.newLine();
+        writer.write(indent + "}");
+        writer.newLine();
+        writer.newLine();
+    }
+
+    @NotNull
+    private String[] fieldsOf(@NotNull String[] definition) {
+        String fields = definition.length > 1 ? definition[1].trim() : "";
+        if (fields.isEmpty()) {
+            return new String[0];
+        }
+
+        String[] entries = fields.split(",");
+        if (isCompact) {
+            for (String entry: entries) {
+                if (entry.matches(".*\\bToken\\b(?!\\.).*")) {
+                    throw new IllegalArgumentException(String.format("Compact nodes cannot keep tokens: %s.", definition[0].trim()));
+                }
+            }
+        }
+        return entries;
+    }
+
+    @NotNull
+    private static String kindOf(@NotNull String type) {
+        return type.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
     private void definePackage(@NotNull BufferedWriter writer) throws IOException {
         writer.write(String.format("package %s;",  packageName));
         writer.newLine();
@@ -79,7 +208,7 @@ public class AstGenerator {
                                   @NotNull String[] entries,
                                   @NotNull String indent,
                                   @NotNull BufferedWriter writer) throws IOException {
-        writer.write(indent + String.format("public static class %s extends %s {", type, rootInterface));
+        writer.write(indent + String.format("public static %sclass %s extends %s {", isSealed ? "final " : "", type, rootInterface));
         writer.newLine();
         writer.newLine();
 
@@ -90,13 +219,25 @@ public class AstGenerator {
             writer.newLine();
         }
 
-        writer.newLine();
+        if (entries.length > 0) {
+            writer.newLine();
+        }
 
         String formattedDependencies = String.join(", ", entries);
+        if (isCompact) {
+            formattedDependencies = entries.length == 0 ? "int line" : "int line, " + formattedDependencies;
+        }
         writer.write(innerIndent + String.format("%s(%s) {", type, formattedDependencies));
         writer.newLine();
 
         String methodIndent = innerIndent + indent;
+        if (isSealed) {
+            writer.write(methodIndent + String.format("super(Kind.%s%s);", kindOf(type), isCompact ? ", line" : ""));
+            writer.newLine();
+        } else if (isCompact) {
+            writer.write(methodIndent + "super(line);");
+            writer.newLine();
+        }
         for (String entry: entries) {
             String argument = entry.trim().split(" ")[1].trim();
             writer.write(methodIndent + String.format("this.%s = %s;", argument, argument));
@@ -147,36 +288,40 @@ public class AstGenerator {
             return;
         }
 
-        AstGenerator generator = new AstGenerator("com.github.st235.lox", Collections.emptyList());
+        AstGenerator generator = new AstGenerator("com.github.st235.lox", List.of("java.util.List"), true, true);
 
+        // Names are symbol ids of Names.
         defineAst(args,
                 generator,
                 "Expr",
-                "Binary   : Expr left, Token operator, Expr right",
+                "Binary   : Expr left, Token.Type operator, Expr right",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
-                "Unary    : Token operator, Expr right",
-                "Variable : Token name",
-                "Assign: Token name, Expr expression",
-                "Logical : Expr left, Token operator, Expr right",
-                "Call : Expr callee, Token paren, List<Expr> arguments",
-                "Get : Expr object, Token name",
-                "Set : Expr object, Token name, Expr value",
-                "This : Token keyword",
-                "Super : Token keyword, Token method");
+                "Unary    : Token.Type operator, Expr right",
+                "Variable : int name",
+                "Assign: int name, Expr expression",
+                "Logical : Expr left, Token.Type operator, Expr right",
+                "Call : Expr callee, List<Expr> arguments",
+                "Get : Expr object, int name",
+                "Set : Expr object, int name, Expr value",
+                "This :",
+                "Super : int method",
+                "Index : Expr object, Expr index",
+                "IndexSet : Expr object, Expr index, Expr value");
 
         defineAst(args,
                 generator,
                 "Stmt",
                 "Expression: Expr expression",
                 "Print: Expr expression",
-                "Var : Token name, Expr initializer",
+                "Var : int name, Expr initializer",
                 "Block : List<Stmt> statements",
                 "If : Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "While: Expr condition, Stmt body",
-                "Function : Token name, List<Token> params, List<Stmt> body",
-                "Return : Token keyword, Expr value",
-                "Class : Token name, Expr.Variable superclass, List<Stmt.Function> methods");
+                "Function : int name, int[] params, List<Stmt> body",
+                "Return : Expr value",
+                "Class : int name, Expr.Variable superclass, List<Stmt.Function> methods",
+                "Import : String path");
 
     }
 
@@ -0,0 +1,89 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArrayTest {
+
+    private static final String SCRIPT = """
+            fun squares(count) {
+                var values = array();
+                for (var i = 0; i < count; i = i + 1) {
+                    push(values, i * i);
+                }
+                return values;
+            }
+
+            var values = squares(20);
+            var sum = 0;
+            for (var i = 0; i < length(values); i = i + 1) {
+                sum = sum + values[i];
+            }
+            print sum;
+            print values[3] = values[2] + 0.5;
+
+            var grid = filled(2, nil);
+            grid[0] = filled(3, 1);
+            grid[1] = squares(3);
+            grid[1][2] = "four";
+            push(grid, grid);
+            print grid;
+            print pop(grid[1]) + " " + length(grid[1]) + " " + pop(array());
+            """;
+
+    private static final String OUTPUT = "2470\n4.5\n[[1, 1, 1], [0, 1, four], [...]]\nfour 2.0 null\n";
+
+    @Test
+    void when_scriptUsesArrays_producesSameOutputInEveryMode() {
+        assertEquals(OUTPUT, run(SCRIPT, null, null));
+        assertEquals(OUTPUT, run(SCRIPT, new Tiering(1, 1), null));
+        assertEquals(OUTPUT, run(SCRIPT, null, new Tracing(1)));
+    }
+
+    @Test
+    void when_indexIsInvalid_stopsWithRuntimeError() {
+        for (String statement: List.of("values[3];", "values[-1];", "values[0.5];", "values[nil] = 1;", "clock[0];")) {
+            String script = "var values = filled(3, 0);\nprint 1;\n" + statement + "\nprint 2;\n";
+            assertEquals("1\n", run(script, null, null), statement);
+            assertEquals("1\n", run(script, new Tiering(1, 1), null), statement);
+        }
+    }
+
+    @Test
+    void when_nonNumberIsStored_keepsElementsAndGrows() {
+        LoxArray array = new LoxArray();
+        for (int i = 0; i < 100; i++) {
+            array.push((double) i);
+        }
+        assertTrue(array.holdsNumbers());
+
+        array.set(1, 50.0, "half");
+        array.push(true);
+        assertFalse(array.holdsNumbers());
+        assertEquals(101, array.size());
+        assertEquals(49.0, array.get(1, 49.0));
+        assertEquals("half", array.get(1, 50.0));
+        assertEquals(true, array.pop());
+        assertEquals(99.0, array.pop());
+        assertNull(LoxArray.filled(0, null).pop());
+    }
+
+    @NotNull
+    private static String run(@NotNull String script, Tiering tiering, Tracing tracing) {
+        return TestScripts.run(script, interpreter -> {
+            if (tiering != null) {
+                interpreter.enableTiering(tiering);
+            }
+            if (tracing != null) {
+                interpreter.enableTracing(tracing);
+            }
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CallTest {
+
+    private static final String SCRIPT = """
+            fun zero() { return "z"; }
+            fun one(a) { return a; }
+            fun two(a, b) { return a + b; }
+            fun three(a, b, c) { return a + b + c; }
+            fun five(a, b, c, d, e) { return a + b + c + d + e; }
+            class Point {
+                init(x, y, z, w) {
+                    this.sum = x + y + z + w;
+                }
+            }
+            class Pair {
+                init(left, right) {
+                    this.left = left;
+                    this.right = right;
+                }
+                swap() { return Pair(this.right, this.left); }
+            }
+            var order = "";
+            fun trace(name) {
+                order = order + name;
+                return name;
+            }
+            for (var i = 0; i < 3; i = i + 1) {
+                print zero() + one(nil) + two(1, 2) + three("a", "b", "c") + five(1, 2, 3, 4, 5);
+                print Point(1, 2, 3, 4).sum + Pair("l", "r").swap().left + join(trace("x"), trace("y"));
+            }
+            print order;
+            """;
+
+    @Test
+    void when_functionsOfEveryArityAreCalled_passesArgumentsInOrder() {
+        String line = "znull3.0abc15.0\n10.0r<x|y>\n";
+        String expected = line.repeat(3) + "xyxyxy\n";
+
+        assertEquals(expected, run(SCRIPT, null));
+        assertEquals(expected, run(SCRIPT, new Tiering(1, 1)));
+    }
+
+    @Test
+    void when_argumentsDoNotMatchArity_stopsAfterEvaluatingThem() {
+        String script = """
+                fun two(a, b) { return a + b; }
+                print two(1, 2);
+                fun argument() {
+                    print "evaluated";
+                    return 3;
+                }
+                two(1, 2, argument());
+                print "unreachable";
+                """;
+
+        assertEquals("3\nevaluated\n", run(script, null));
+        assertEquals("3\nevaluated\n", run(script, new Tiering(1, 1)));
+    }
+
+    @NotNull
+    private static String run(@NotNull String script, Tiering tiering) {
+        return TestScripts.run(script, interpreter -> {
+            interpreter.addFunction(new NativeFunction("join", 2) {
+                @Override
+                public Object call(Interpreter interpreter, List<Object> arguments) {
+                    return "<" + arguments.get(0) + "|" + arguments.get(1) + ">";
+                }
+            });
+            if (tiering != null) {
+                interpreter.enableTiering(tiering);
+            }
+        });
+    }
+}
@@ -6,13 +6,18 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 public class InterpreterTest {
 
@@ -44,26 +49,122 @@ public class InterpreterTest {
     @ParameterizedTest
     @MethodSource("provideScriptsForInterpreter")
     void when_providesAValidLoxScript_producesAValidOutput(@NotNull Arguments arguments) {
-        String scriptFile = readFile(arguments.inputScript);
-        String expectedOutput = readFile(arguments.expectedOutputFile);
+        assertProducesExpectedOutput(arguments, false, false, Interpreter.Dispatch.SWITCH);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_parsesFunctionsLazily_producesAValidOutput(@NotNull Arguments arguments) {
+        assertProducesExpectedOutput(arguments, true, false, Interpreter.Dispatch.SWITCH);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_resolvesFunctionsInParallel_producesAValidOutput(@NotNull Arguments arguments) {
+        assertProducesExpectedOutput(arguments, false, true, Interpreter.Dispatch.SWITCH);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_dispatchesNodesThroughVisitor_producesAValidOutput(@NotNull Arguments arguments) {
+        assertProducesExpectedOutput(arguments, false, false, Interpreter.Dispatch.VISITOR);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_everyCallAndLoopTiersUp_producesAValidOutput(@NotNull Arguments arguments) {
+        String script = TestScripts.read(arguments.inputScript);
+
+        String loxOutput = run(TestScripts.parse(script), interpreter -> interpreter.enableTiering(new Tiering(1, 1)));
+
+        assertEquals(TestScripts.read(arguments.expectedOutputFile), loxOutput);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_everyLoopIsTraced_producesAValidOutput(@NotNull Arguments arguments) {
+        String script = TestScripts.read(arguments.inputScript);
+
+        String loxOutput = run(TestScripts.parse(script), interpreter -> interpreter.enableTracing(new Tracing(1)));
+
+        assertEquals(TestScripts.read(arguments.expectedOutputFile), loxOutput);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_runsWithItsOwnProfile_producesAValidOutput(@NotNull Arguments arguments) {
+        String script = TestScripts.read(arguments.inputScript);
+        byte[] hash = ProgramCache.hash(ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8)));
+
+        List<Stmt> recorded = TestScripts.parse(script);
+        Tracing recording = Tracing.recordingEverything();
+        run(recorded, interpreter -> interpreter.enableTracing(recording));
+        byte[] profile = ProfileWriter.write(hash, recorded, recording.observations());
+
+        List<Stmt> statements = TestScripts.parse(script);
+        Map<Expr, Tracing.Observation> observations = ProfileReader.read(ByteBuffer.wrap(profile), hash, statements);
+        String loxOutput = run(statements, interpreter -> interpreter.enableTracing(new Tracing(observations)));
+
+        assertEquals(TestScripts.read(arguments.expectedOutputFile), loxOutput);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_runsCompiledImage_producesAValidOutput(@NotNull Arguments arguments) {
+        List<Stmt> statements = TestScripts.parse(TestScripts.read(arguments.inputScript));
+        Resolution resolution = new Resolver().resolve(statements);
+
+        for (boolean fusesInstructions: List.of(true, false)) {
+            Image image = Image.load(ByteBuffer.wrap(BytecodeCompiler.compile(statements, resolution, fusesInstructions)));
+
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            newInterpreter(outStream, Interpreter.Dispatch.SWITCH).interpret(image);
+
+            assertEquals(TestScripts.read(arguments.expectedOutputFile), outStream.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideScriptsForInterpreter")
+    void when_loadsProgramFromCache_producesAValidOutput(@NotNull Arguments arguments) throws IOException {
+        String script = TestScripts.read(arguments.inputScript);
+        byte[] hash = ProgramCache.hash(ByteBuffer.wrap(script.getBytes(StandardCharsets.UTF_8)));
+        Path directory = Path.of("scripts");
+        ProgramCache cache = new ProgramCache(Files.createTempDirectory("lox"));
+
+        List<Stmt> statements = TestScripts.parse(script);
+        cache.store(hash, directory, new Program(statements, new Resolver().resolve(statements)));
+        Program program = cache.load(hash, directory);
+        assertNotNull(program);
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = newInterpreter(outStream, Interpreter.Dispatch.SWITCH);
+        interpreter.resolve(program.resolution());
+        interpreter.interpret(program.statements());
+
+        assertEquals(TestScripts.read(arguments.expectedOutputFile), outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    private static void assertProducesExpectedOutput(@NotNull Arguments arguments,
+                                                     boolean parseFunctionsLazily,
+                                                     boolean resolveFunctionsInParallel,
+                                                     @NotNull Interpreter.Dispatch dispatch) {
+        String scriptFile = TestScripts.read(arguments.inputScript);
+        String expectedOutput = TestScripts.read(arguments.expectedOutputFile);
 
         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
 
         Scanner scanner = new Scanner(scriptFile);
 
         List<Token> tokens = scanner.scan();
-        Parser parser = new Parser(tokens);
+        Parser parser = new Parser(tokens.iterator(), parseFunctionsLazily);
 
         List<Stmt> statements = parser.parse();
 
-        Interpreter interpreter = new Interpreter(outStream);
-        Resolver resolver = new Resolver(interpreter);
+        Interpreter interpreter = newInterpreter(outStream, dispatch);
+        Resolver resolver = new Resolver(resolveFunctionsInParallel);
 
-        for (NativeFunction function: NATIVE_FUNCTIONS) {
-            interpreter.addFunction(function);
-        }
-
-        resolver.resolve(statements);
+        interpreter.resolve(resolver.resolve(statements));
         interpreter.interpret(statements);
 
         String loxOutput = outStream.toString(StandardCharsets.UTF_8);
@@ -71,6 +172,25 @@ public class InterpreterTest {
         assertEquals(expectedOutput, loxOutput);
     }
 
+    @NotNull
+    private static String run(@NotNull List<Stmt> statements, @NotNull Consumer<Interpreter> setUp) {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = newInterpreter(outStream, Interpreter.Dispatch.SWITCH);
+        setUp.accept(interpreter);
+        TestScripts.interpret(statements, interpreter);
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static Interpreter newInterpreter(@NotNull ByteArrayOutputStream outStream,
+                                              @NotNull Interpreter.Dispatch dispatch) {
+        Interpreter interpreter = new Interpreter(outStream, dispatch);
+        for (NativeFunction function: NATIVE_FUNCTIONS) {
+            interpreter.addFunction(function);
+        }
+        return interpreter;
+    }
+
     private record Arguments(@NotNull String inputScript, @NotNull String expectedOutputFile) {}
 
     private static Stream<Arguments> provideScriptsForInterpreter() {
@@ -88,14 +208,4 @@ public class InterpreterTest {
                 new Arguments("inheritance.lox", "inheritance.out")
         );
     }
-
-    @NotNull
-    private static String readFile(@NotNull String filename) {
-        ClassLoader classLoader = InterpreterTest.class.getClassLoader();
-        try (InputStream fileStream = classLoader.getResourceAsStream(filename)) {
-            return new String(fileStream.readAllBytes());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
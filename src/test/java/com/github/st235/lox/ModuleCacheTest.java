@@ -0,0 +1,89 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ModuleCacheTest {
+
+    @Test
+    void when_moduleDoesNotChange_compilesItOnce() throws IOException {
+        Path module = Files.createTempDirectory("lox").resolve("library.lox");
+        Files.writeString(module, "fun one() { return 1; }\n");
+        module = module.toRealPath();
+
+        Module first = ModuleCache.shared().load(module);
+        Module second = ModuleCache.shared().load(module);
+
+        Files.writeString(module, "fun one() { return 2 - 1; }\n");
+        Module changed = ModuleCache.shared().load(module);
+
+        assertSame(first, second);
+        assertNotSame(first, changed);
+    }
+
+    @Test
+    void when_modulesImportEachOther_runsEveryModuleOncePerInterpreter() throws IOException {
+        Path directory = Files.createTempDirectory("lox");
+        Files.writeString(directory.resolve("a.lox"), """
+                import "b.lox";
+                fun a() { return "a" + b(); }
+                print "a loaded";
+                """);
+        Files.writeString(directory.resolve("b.lox"), """
+                import "a.lox";
+                fun b() { return "b"; }
+                print "b loaded";
+                """);
+        String script = """
+                import "a.lox";
+                import "b.lox";
+                import "a.lox";
+                print a();
+                """;
+
+        String expected = "b loaded\na loaded\nab\n";
+        assertEquals(expected, run(script, directory));
+        assertEquals(expected, run(script, directory));
+    }
+
+    @Test
+    void when_moduleFailsToCompile_reportsErrorAtImport() throws IOException {
+        Path directory = Files.createTempDirectory("lox");
+        // Nested too deeply for the parser.
+        Files.writeString(directory.resolve("deep.lox"),
+                "print " + "(".repeat(100_000) + "1" + ")".repeat(100_000) + ";\n");
+        String script = """
+                print "before";
+                import "deep.lox";
+                print "after";
+                """;
+
+        assertEquals("before\n", run(script, directory));
+        assertEquals("before\n", run(script, directory));
+    }
+
+    @NotNull
+    private static String run(@NotNull String script, @NotNull Path directory) {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+
+        List<Stmt> statements = new Parser(new Scanner(script).scan()).parse();
+        Resolution resolution = new Resolver(false, directory).resolve(statements);
+        assertEquals(List.of(), resolution.diagnostics());
+
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+}
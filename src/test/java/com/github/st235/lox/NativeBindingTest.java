@@ -0,0 +1,89 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NativeBindingTest {
+
+    public static final class Maths implements NativeLibrary {
+
+        @LoxNative
+        public static double floor(double value) {
+            return Math.floor(value);
+        }
+
+        @LoxNative
+        public static double mod(double value, double divisor) {
+            return (int) value % (int) divisor;
+        }
+
+        @LoxNative(name = "repeat")
+        public static String repeatText(String text, double times, boolean isShouted, Object separator) {
+            String repeated = String.join(String.valueOf(separator), java.util.Collections.nCopies((int) times, text));
+            return isShouted ? repeated.toUpperCase() : repeated;
+        }
+
+        @LoxNative
+        public static void nothing() {
+        }
+
+        public static double notBound(double value) {
+            return value;
+        }
+    }
+
+    public static final class Broken {
+
+        @LoxNative
+        public static int count() {
+            return 1;
+        }
+    }
+
+    @Test
+    void when_libraryIsLoaded_runsScriptNeedingNatives() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        for (NativeFunction function: NativeBinding.load(NativeBindingTest.class.getClassLoader())) {
+            interpreter.addFunction(function);
+        }
+
+        assertEquals(TestScripts.read("functions.out"), run(TestScripts.read("functions.lox"), interpreter, outStream));
+    }
+
+    @Test
+    void when_argumentsAreLoxValues_adaptsThemToParameters() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        interpreter.addFunctions(Maths.class);
+
+        String script = """
+                print repeat("ab" + "c", 3, false, nil);
+                print repeat("x", 2, true, 1);
+                print nothing();
+                print floor(2.5) + mod(7, 4);
+                print floor("2");
+                print "unreachable";
+                """;
+        assertEquals("abcnullabcnullabc\nX1.0X\nnil\n5\n", run(script, interpreter, outStream));
+    }
+
+    @Test
+    void when_methodCannotBeBound_fails() {
+        assertThrows(IllegalArgumentException.class, () -> NativeBinding.bind(Broken.class));
+    }
+
+    @NotNull
+    private static String run(@NotNull String script,
+                              @NotNull Interpreter interpreter,
+                              @NotNull ByteArrayOutputStream outStream) {
+        TestScripts.interpret(TestScripts.parse(script), interpreter);
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+}
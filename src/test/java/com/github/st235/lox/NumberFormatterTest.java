@@ -0,0 +1,49 @@
+package com.github.st235.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NumberFormatterTest {
+
+    @Test
+    void when_numberIsPrinted_dropsOnlyTrailingPointZero() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+
+        List<Stmt> statements = new Parser(new Scanner("""
+                print 10.05;
+                print 100;
+                print -0;
+                print 0.1 + 0.2;
+                print 12345678;
+                print "n" + 10.05 + " " + 100;
+                """).scan()).parse();
+        interpreter.resolve(new Resolver().resolve(statements));
+        interpreter.interpret(statements);
+
+        assertEquals("10.05\n100\n-0\n0.30000000000000004\n1.2345678E7\nn10.05 100.0\n",
+                outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_numberIsFormatted_matchesDoubleToString() {
+        Random random = new Random(42);
+        char[] text = new char[NumberFormatter.MAX_LENGTH];
+
+        for (int i = 0; i < 100_000; i++) {
+            double value = switch (i % 3) {
+                case 0 -> random.nextDouble() * Math.pow(10, random.nextInt(12) - 4);
+                case 1 -> Math.round(random.nextDouble() * 1e6) / Math.pow(10, random.nextInt(7));
+                default -> Double.longBitsToDouble(random.nextLong());
+            };
+
+            assertEquals(Double.toString(value), new String(text, 0, NumberFormatter.format(value, true, text)));
+        }
+    }
+}
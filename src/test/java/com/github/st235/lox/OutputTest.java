@@ -0,0 +1,91 @@
+package com.github.st235.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OutputTest {
+
+    @Test
+    void when_policyIsSize_writesOnlyOnceThresholdIsReached() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Output output = new Output(outStream, Output.FlushPolicy.SIZE);
+
+        output.println("line");
+        assertEquals(0, outStream.size());
+
+        String line = "x".repeat(99);
+        int lines = 1;
+        while (5 + lines * 100 < Output.SIZE_THRESHOLD) {
+            output.println(line);
+            lines += 1;
+        }
+        assertEquals(0, outStream.size());
+
+        output.println(line);
+        assertEquals(5 + lines * 100, outStream.size());
+    }
+
+    @Test
+    void when_policyIsExit_keepsLinesUntilFlushed() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(new Output(outStream, Output.FlushPolicy.EXIT), Interpreter.Dispatch.SWITCH);
+
+        List<Stmt> statements = new Parser(new Scanner("""
+                for (var i = 0; i < 3; i = i + 1) {
+                    print "line " + i;
+                }
+                """).scan()).parse();
+        interpreter.resolve(new Resolver().resolve(statements));
+        interpreter.interpret(statements);
+        assertEquals(0, outStream.size());
+
+        interpreter.flush();
+        assertEquals("line 0.0\nline 1.0\nline 2.0\n", outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_lineIsLongerThanBuffer_writesItInChunks() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Output output = new Output(outStream, Output.FlushPolicy.EXIT);
+
+        String line = "xyz".repeat(Output.BUFFER_SIZE);
+        output.println(line);
+        output.flush();
+
+        assertEquals(line + "\n", outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_flushedFromAnotherThread_keepsEveryLineWhole() throws InterruptedException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Output output = new Output(outStream, Output.FlushPolicy.EXIT);
+
+        // Flushes as a shutdown hook would, while lines are being printed.
+        // Not interrupted to stop, as that would close the channel it writes to.
+        AtomicBoolean isPrinting = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (isPrinting.get()) {
+                output.flush();
+            }
+        });
+        flusher.start();
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            output.println("line " + i);
+            output.println(i);
+            expected.append("line ").append(i).append('\n').append(i).append('\n');
+        }
+        isPrinting.set(false);
+        flusher.join();
+        output.flush();
+
+        assertEquals(expected.toString(), outStream.toString(StandardCharsets.UTF_8));
+    }
+}
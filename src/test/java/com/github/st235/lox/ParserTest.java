@@ -0,0 +1,253 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParserTest {
+
+    private static final List<String> SCRIPTS = List.of(
+            "expressions.lox", "variables.lox", "scopes.lox", "if.lox", "while.lox", "logical.lox",
+            "for.lox", "functions.lox", "closures.lox", "classes.lox", "inheritance.lox");
+
+    @Test
+    void when_parsesTestScripts_prattAndRecursiveDescentProduceSameTrees() {
+        for (String script: SCRIPTS) {
+            assertSameTrees(TestScripts.read(script));
+        }
+    }
+
+    @Test
+    void when_parsesOperatorsOfEveryPrecedence_prattAndRecursiveDescentProduceSameTrees() {
+        assertSameTrees("""
+                a = b = c or d and e == f != g < h <= i > j >= k + l - m * n / -!o;
+                -a.b(c, d).e = f.g - h(i)(j) * (k + l) / m;
+                !a == b or !(c and d) and e;
+                a - b - c / d / e;
+                x.y.z = this.w = super.v(1, "two", true, false, nil);
+                a[b + 1][c] = d[e].f(g)[h] = -i[j] * k;
+                """);
+    }
+
+    @Test
+    void when_scriptHasSeveralSyntaxErrors_reportsAllOfThemAndKeepsValidStatements() {
+        List<Token> tokens = new Scanner("""
+                var a = 1;
+                var = 2;
+                print a;
+                print (a;
+                {
+                    print a + 1;
+                    print a * ;
+                }
+                a + 1 = 3;
+                class B { m() { return 1; } }
+                """).scan();
+        Diagnostics diagnostics = new Diagnostics();
+
+        List<Stmt> statements = new Parser(tokens.iterator(), false, Parser.ExpressionParser.PRATT, diagnostics).parse();
+
+        assertEquals(List.of(2, 4, 7, 9),
+                diagnostics.asList().stream().map(Diagnostic::line).toList());
+        assertEquals("""
+                (var a@1 (literal 1.0))
+                (print (variable a@3))
+                (block (list (print (binary +@6 (variable a@6) (literal 1.0)))))
+                (expression (binary +@9 (variable a@9) (literal 1.0)))
+                (class B@10 null (list (fun m@10 (list) (list (return return@10 (literal 1.0))))))""",
+                AstPrinter.print(statements));
+    }
+
+    @Test
+    void when_functionBodyIsNotClosed_lazyAndEagerParsersReportSameError() {
+        List<Token> tokens = new Scanner("fun f() {\n    print 1;\n").scan();
+
+        for (boolean parseFunctionsLazily: List.of(false, true)) {
+            Diagnostics diagnostics = new Diagnostics();
+            new Parser(tokens.iterator(), parseFunctionsLazily, Parser.ExpressionParser.PRATT, diagnostics).parse();
+
+            assertEquals(List.of(new Diagnostic(3, "Expect '}' after block.")), diagnostics.asList());
+        }
+    }
+
+    private static void assertSameTrees(@NotNull String script) {
+        List<Token> tokens = new Scanner(script).scan();
+
+        List<Stmt> pratt = new Parser(tokens.iterator(), false, Parser.ExpressionParser.PRATT).parse();
+        List<Stmt> descent = new Parser(tokens.iterator(), false, Parser.ExpressionParser.RECURSIVE_DESCENT).parse();
+
+        assertEquals(AstPrinter.print(descent), AstPrinter.print(pratt));
+    }
+
+    /**
+     * Prints trees as s-expressions, keeping the lines of names, operators and keywords.
+     */
+    private static final class AstPrinter implements Expr.Visitor<String>, Stmt.Visitor<String> {
+
+        private static final AstPrinter INSTANCE = new AstPrinter();
+
+        @NotNull
+        static String print(@NotNull List<Stmt> statements) {
+            return statements.stream().map(INSTANCE::print).collect(Collectors.joining("\n"));
+        }
+
+        private String print(Stmt statement) {
+            return statement == null ? "null" : statement.visit(this);
+        }
+
+        private String print(Expr expression) {
+            return expression == null ? "null" : expression.visit(this);
+        }
+
+        private static String at(String text, int line) {
+            return text + "@" + line;
+        }
+
+        private static String at(int name, int line) {
+            return at(Names.of(name), line);
+        }
+
+        private String parenthesize(String name, Object... parts) {
+            StringBuilder builder = new StringBuilder("(").append(name);
+            for (Object part: parts) {
+                builder.append(' ');
+                if (part instanceof Expr expression) {
+                    builder.append(print(expression));
+                } else if (part instanceof Stmt statement) {
+                    builder.append(print(statement));
+                } else if (part instanceof List<?> list) {
+                    builder.append(parenthesize("list", list.toArray()));
+                } else {
+                    builder.append(part);
+                }
+            }
+            return builder.append(')').toString();
+        }
+
+        @Override
+        public String visitBinary(Expr.Binary node) {
+            return parenthesize("binary", at(Scanner.lexemeOf(node.operator), node.line), node.left, node.right);
+        }
+
+        @Override
+        public String visitGrouping(Expr.Grouping node) {
+            return parenthesize("group", node.expression);
+        }
+
+        @Override
+        public String visitLiteral(Expr.Literal node) {
+            return parenthesize("literal", node.value);
+        }
+
+        @Override
+        public String visitUnary(Expr.Unary node) {
+            return parenthesize("unary", at(Scanner.lexemeOf(node.operator), node.line), node.right);
+        }
+
+        @Override
+        public String visitVariable(Expr.Variable node) {
+            return parenthesize("variable", at(node.name, node.line));
+        }
+
+        @Override
+        public String visitAssign(Expr.Assign node) {
+            return parenthesize("assign", at(node.name, node.line), node.expression);
+        }
+
+        @Override
+        public String visitLogical(Expr.Logical node) {
+            return parenthesize("logical", at(Scanner.lexemeOf(node.operator), node.line), node.left, node.right);
+        }
+
+        @Override
+        public String visitCall(Expr.Call node) {
+            return parenthesize("call", node.callee, at(")", node.line), node.arguments);
+        }
+
+        @Override
+        public String visitGet(Expr.Get node) {
+            return parenthesize("get", node.object, at(node.name, node.line));
+        }
+
+        @Override
+        public String visitSet(Expr.Set node) {
+            return parenthesize("set", node.object, at(node.name, node.line), node.value);
+        }
+
+        @Override
+        public String visitThis(Expr.This node) {
+            return parenthesize("this", at("this", node.line));
+        }
+
+        @Override
+        public String visitSuper(Expr.Super node) {
+            return parenthesize("super", at("super", node.line), at(node.method, node.line));
+        }
+
+        @Override
+        public String visitIndex(Expr.Index node) {
+            return parenthesize("index", node.object, at("]", node.line), node.index);
+        }
+
+        @Override
+        public String visitIndexSet(Expr.IndexSet node) {
+            return parenthesize("index-set", node.object, at("]", node.line), node.index, node.value);
+        }
+
+        @Override
+        public String visitExpression(Stmt.Expression node) {
+            return parenthesize("expression", node.expression);
+        }
+
+        @Override
+        public String visitPrint(Stmt.Print node) {
+            return parenthesize("print", node.expression);
+        }
+
+        @Override
+        public String visitVar(Stmt.Var node) {
+            return parenthesize("var", at(node.name, node.line), node.initializer);
+        }
+
+        @Override
+        public String visitBlock(Stmt.Block node) {
+            return parenthesize("block", node.statements);
+        }
+
+        @Override
+        public String visitIf(Stmt.If node) {
+            return parenthesize("if", node.condition, node.thenBranch, node.elseBranch);
+        }
+
+        @Override
+        public String visitWhile(Stmt.While node) {
+            return parenthesize("while", node.condition, node.body);
+        }
+
+        @Override
+        public String visitFunction(Stmt.Function node) {
+            return parenthesize("fun", at(node.name, node.line),
+                    Arrays.stream(node.params).mapToObj(param -> at(param, node.line)).toList(), node.body);
+        }
+
+        @Override
+        public String visitReturn(Stmt.Return node) {
+            return parenthesize("return", at("return", node.line), node.value);
+        }
+
+        @Override
+        public String visitClass(Stmt.Class node) {
+            return parenthesize("class", at(node.name, node.line), node.superclass, node.methods);
+        }
+
+        @Override
+        public String visitImport(Stmt.Import node) {
+            return parenthesize("import", at("import", node.line), node.path);
+        }
+    }
+}
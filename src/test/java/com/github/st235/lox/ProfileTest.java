@@ -0,0 +1,74 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ProfileTest {
+
+    @Test
+    void when_profileIsReadBack_keepsKindsOfValuesBranchesAndCallees() {
+        String source = """
+                fun half(x) { return x / 2; }
+                var f = half;
+                var sum = 0;
+                for (var i = 0; i < 10; i = i + 1) {
+                    if (i < 5) sum = sum + f(i); else sum = sum + "";
+                }
+                """;
+        List<Stmt> statements = TestScripts.parse(source);
+        Map<Expr, Tracing.Observation> observations =
+                ProfileReader.read(ByteBuffer.wrap(record(source)), hash(source), statements);
+
+        Stmt.While loop = (Stmt.While) ((Stmt.Block) statements.get(3)).statements.get(1);
+        // The body of the for loop is followed by the increment.
+        Stmt.Block body = (Stmt.Block) ((Stmt.Block) loop.body).statements.get(0);
+        Stmt.If branch = (Stmt.If) body.statements.get(0);
+        Expr.Binary sumOfCall = assignedIn(branch.thenBranch);
+        Expr.Call call = (Expr.Call) sumOfCall.right;
+        Expr.Binary sumOfString = assignedIn(branch.elseBranch);
+
+        assertEquals(Tracing.TRUE | Tracing.FALSE, observations.get(branch.condition).kinds);
+        assertEquals(Tracing.NUMBER, observations.get(call).kinds);
+        assertEquals(Tracing.OBJECT, observations.get(call.callee).kinds);
+        assertFalse(observations.get(call.callee).isPolymorphic);
+        // The sum becomes a string in the first iteration of the else branch.
+        assertEquals(Tracing.NUMBER | Tracing.STRING, observations.get(sumOfString.left).kinds);
+    }
+
+    @Test
+    void when_scriptHasChanged_rejectsProfile() {
+        byte[] profile = record("var a = 1; print a + 1;");
+        String changed = "var a = 1; print a + 2;";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ProfileReader.read(ByteBuffer.wrap(profile), hash(changed), TestScripts.parse(changed)));
+    }
+
+    @NotNull
+    private static Expr.Binary assignedIn(@NotNull Stmt statement) {
+        return (Expr.Binary) ((Expr.Assign) ((Stmt.Expression) statement).expression).expression;
+    }
+
+    private static byte @NotNull [] record(@NotNull String source) {
+        List<Stmt> statements = TestScripts.parse(source);
+        Tracing recording = Tracing.recordingEverything();
+        Interpreter interpreter = new Interpreter(new ByteArrayOutputStream());
+        interpreter.enableTracing(recording);
+        TestScripts.interpret(statements, interpreter);
+        return ProfileWriter.write(hash(source), statements, recording.observations());
+    }
+
+    private static byte @NotNull [] hash(@NotNull String source) {
+        return ProgramCache.hash(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+}
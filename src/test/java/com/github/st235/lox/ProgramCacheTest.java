@@ -0,0 +1,44 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ProgramCacheTest {
+
+    private static final Path SCRIPT_DIRECTORY = Path.of("scripts");
+
+    @Test
+    void when_entryDoesNotMatch_missesIt() throws IOException {
+        Path directory = Files.createTempDirectory("lox");
+        ProgramCache cache = new ProgramCache(directory);
+        byte[] source = "print 1;".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = ProgramCache.hash(ByteBuffer.wrap(source));
+
+        cache.store(hash, SCRIPT_DIRECTORY, compile(source));
+        assertNull(cache.load(hash, Path.of("elsewhere")));
+        assertNull(cache.load(ProgramCache.hash(ByteBuffer.wrap("print 2;".getBytes(StandardCharsets.UTF_8))), SCRIPT_DIRECTORY));
+
+        try (var entries = Files.list(directory)) {
+            Path entry = entries.findFirst().orElseThrow();
+            byte[] content = Files.readAllBytes(entry);
+            Files.write(entry, Arrays.copyOf(content, content.length - 3));
+        }
+        assertNull(cache.load(hash, SCRIPT_DIRECTORY));
+    }
+
+    @NotNull
+    private static Program compile(byte @NotNull [] source) {
+        List<Stmt> statements = TestScripts.parse(new String(source, StandardCharsets.UTF_8));
+        return new Program(statements, new Resolver().resolve(statements));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ResolverTest {
+
+    @Test
+    void when_scriptHasSeveralResolutionErrors_collectsAllOfThem() {
+        Resolution resolution = resolve("""
+                fun f() {
+                    var a = 1;
+                    var a = 2;
+                }
+                return 1;
+                print this;
+                { var x = 1; { var x = x; } }
+                class A < A {}
+                """);
+
+        assertEquals(List.of(
+                new Diagnostic(3, "Variable 'a' was already declared in the scope."),
+                new Diagnostic(5, "Return is not allowed here."),
+                new Diagnostic(6, "Cannot use 'this' outside of a class."),
+                new Diagnostic(7, "Can't read local variable in its own initialisation."),
+                new Diagnostic(8, "A class cannot inherit from itself.")),
+                resolution.diagnostics());
+    }
+
+    @Test
+    void when_namesAreShadowed_resolvesToInnermostDeclaration() {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        List<Stmt> statements = new Parser(new Scanner("""
+                var a = "global";
+                {
+                    var a = "outer";
+                    fun show() {
+                        print a;
+                    }
+                    {
+                        var a = "inner";
+                        {
+                            print a;
+                            show();
+                        }
+                    }
+                    print a;
+                }
+                print a;
+                """).scan()).parse();
+
+        Resolution resolution = new Resolver().resolve(statements);
+        interpreter.resolve(resolution);
+        interpreter.interpret(statements);
+
+        assertEquals(List.of(), resolution.diagnostics());
+        assertEquals("inner\nouter\nouter\nglobal\n", outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_resolvesFunctionsInParallel_producesSameResolutionAsSequentialResolver() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("fun f").append(i).append("(a) { var b = a; { var c = b + a; return c; } }\n");
+            script.append("class C").append(i).append(" < B { m() { return this.x + super.m(); } }\n");
+            script.append("fun g").append(i).append("() { var d = d; return 1; }\n");
+        }
+
+        List<Stmt> statements = new Parser(new Scanner(script.toString()).scan()).parse();
+
+        Resolution sequential = new Resolver(false).resolve(statements);
+        Resolution parallel = new Resolver(true).resolve(statements);
+
+        assertEquals(sequential.depths(), parallel.depths());
+        assertEquals(100, parallel.diagnostics().size());
+        assertEquals(sequential.diagnostics(), parallel.diagnostics());
+    }
+
+    @NotNull
+    private static Resolution resolve(@NotNull String script) {
+        List<Stmt> statements = new Parser(new Scanner(script).scan()).parse();
+        return new Resolver().resolve(statements);
+    }
+}
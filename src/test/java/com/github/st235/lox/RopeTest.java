@@ -0,0 +1,47 @@
+package com.github.st235.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RopeTest {
+
+    @Test
+    void when_stringIsBuiltInLoop_printsAndComparesLikeFlatString() {
+        String script = """
+                var report = "";
+                var expected = "";
+                for (var i = 0; i < 40; i = i + 1) {
+                    report = report + "row " + i + "; ";
+                }
+                for (var i = 0; i < 40; i = i + 1) {
+                    expected = expected + ("row " + i + "; ");
+                }
+                print report == expected;
+                print expected == report;
+                print report != "row 0.0; ";
+                print "[" + nil + true + "]" + report == "[nulltrue]" + expected;
+                print report;
+                """;
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            rows.append("row ").append((double) i).append("; ");
+        }
+        assertEquals("true\ntrue\ntrue\ntrue\n" + rows + "\n", TestScripts.run(script));
+    }
+
+    @Test
+    void when_ropeIsDeep_flattensWithoutRecursion() {
+        CharSequence text = "";
+        for (int i = 0; i < 200_000; i++) {
+            text = Rope.concat(text, "ab");
+        }
+
+        assertTrue(text instanceof Rope);
+        assertEquals(400_000, text.length());
+        assertEquals("ab".repeat(200_000), text.toString());
+        assertEquals("ab".repeat(200_000).hashCode(), text.hashCode());
+    }
+}
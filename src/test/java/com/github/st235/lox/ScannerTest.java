@@ -0,0 +1,160 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ScannerTest {
+
+    @Test
+    void when_scansInParallel_producesSameTokensAsSequentialScan() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            script.append("var a").append(i).append(" = ").append(i).append(".5 * (b + c);\n");
+            script.append("// comment with \"quotes\"\n");
+            script.append("print \"short\" + \"string\";\n");
+        }
+
+        assertSameTokens(script.toString());
+    }
+
+    @Test
+    void when_stringLiteralSpansSeveralChunks_keepsLiteralAndLineNumbers() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            script.append("print \"line ").append(i).append('\n');
+            for (int j = 0; j < i % 7; j++) {
+                script.append("still { inside ( the string\n");
+            }
+            script.append("end\";\n");
+            script.append("fun f").append(i).append("() { return \"\"; }\n");
+        }
+
+        assertSameTokens(script.toString());
+    }
+
+    @Test
+    void when_sourceEndsInsideOfString_reportsErrorOnce() {
+        String script = "var a = 1;\n".repeat(100) + "print \"never\nclosed;\n";
+
+        List<Token> tokens = new Scanner(new StringSource(script), 16).scan();
+
+        assertEquals(new Scanner(script).scan(), tokens);
+        assertEquals(Token.Type.EOF, tokens.get(tokens.size() - 1).type());
+        assertEquals(103, tokens.get(tokens.size() - 1).line());
+    }
+
+    @Test
+    void when_scansSameNamesInDifferentChunks_sharesTheirLexemes() {
+        String script = "var name = other + name;\n".repeat(100);
+
+        for (List<Token> tokens: List.of(new Scanner(script).scan(), new Scanner(new StringSource(script), 32).scan())) {
+            Token first = tokens.get(1);
+            Token last = tokens.get(tokens.size() - 3);
+
+            assertEquals("name", last.lexeme());
+            assertSame(first.lexeme(), last.lexeme());
+            assertSame(tokens.get(0).lexeme(), tokens.get(tokens.size() - 8).lexeme());
+            assertSame(tokens.get(4).lexeme(), tokens.get(tokens.size() - 4).lexeme());
+        }
+    }
+
+    @Test
+    void when_scansOperatorsAndKeywords_givesTokensTheirText() {
+        String script = "{ } ( ) [ ] + - / * , . ; > >= < <= ! != = == "
+                + "nil if else for var fun return class true false print and or super this while import";
+
+        List<Token> tokens = new Scanner(script).scan();
+
+        assertEquals(script, tokens.subList(0, tokens.size() - 1).stream().map(Token::lexeme)
+                .collect(Collectors.joining(" ")));
+    }
+
+    @Test
+    void when_scansMappedUtf8_decodesMultiByteCharactersOfStrings() throws IOException {
+        // Two, three and four bytes long characters, the last one is a surrogate pair in Java.
+        String text = "caf\u00e9\n\u043f\u0440\u0438\u0432\u0435\u0442 \u20ac \ud83d\ude00";
+        String script = "var a = \"" + text + "\";\nprint a;\n";
+
+        List<Token> tokens = new Scanner(new Utf8Source(map(script))).scan();
+
+        assertEquals(new Scanner(script).scan(), tokens);
+        assertEquals(text, tokens.get(3).literal());
+        assertEquals("\"" + text + "\"", tokens.get(3).lexeme());
+        assertEquals(3, tokens.get(5).line());
+        assertEquals(4, tokens.get(tokens.size() - 1).line());
+    }
+
+    @Test
+    void when_mappedUtf8EndsInsideOfString_reportsErrorOnce() throws IOException {
+        String script = "print 1;\nprint \"caf\u00e9\n\u20ac";
+        Diagnostics diagnostics = new Diagnostics();
+
+        List<Token> tokens = new Scanner(new Utf8Source(map(script)), diagnostics).scan();
+
+        assertEquals(List.of(Token.Type.PRINT, Token.Type.NUMBER, Token.Type.SEMICOLON, Token.Type.PRINT, Token.Type.EOF),
+                tokens.stream().map(Token::type).toList());
+        assertEquals(3, tokens.get(tokens.size() - 1).line());
+        assertEquals(List.of(3), diagnostics.asList().stream().map(Diagnostic::line).toList());
+    }
+
+    @Test
+    void when_readsScriptFromStream_producesSameTokensAsWholeScript() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            script.append("var a").append(i).append(" = ").append(i).append(".5 * (b + c);\n");
+        }
+        // Longer than the initial window, so the window has to grow to keep it.
+        script.append("print \"").append("long\n".repeat(4000)).append("\";\n");
+        script.append("print a1 + a2;\n".repeat(500));
+
+        // Hands out a few chars at a time, as a pipe would.
+        Reader reader = new StringReader(script.toString()) {
+            @Override
+            public int read(char @NotNull [] buffer, int offset, int length) throws java.io.IOException {
+                return super.read(buffer, offset, Math.min(length, 100));
+            }
+        };
+
+        List<Token> streamed = new ArrayList<>();
+        for (Iterator<Token> tokens = new Scanner(reader).tokens(); tokens.hasNext(); ) {
+            streamed.add(tokens.next());
+        }
+
+        assertEquals(new Scanner(script.toString()).scan(), streamed);
+    }
+
+    @NotNull
+    private static ByteBuffer map(@NotNull String script) throws IOException {
+        Path file = Files.createTempFile("script", ".lox");
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private static void assertSameTokens(@NotNull String script) {
+        List<Token> sequential = new Scanner(script).scan();
+        List<Token> parallel = new Scanner(new StringSource(script), 32).scan();
+
+        assertEquals(sequential, parallel);
+    }
+}
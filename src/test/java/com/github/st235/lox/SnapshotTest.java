@@ -0,0 +1,120 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SnapshotTest {
+
+    private static final String PRELUDE = """
+            class Shape {
+                init(name) { this.name = name; }
+                describe() { return this.name + " " + this.area(); }
+            }
+            class Square < Shape {
+                init(side) { super.init("square"); this.side = side; }
+                area() { return this.side * this.side; }
+            }
+            fun counter() {
+                var count = 0;
+                fun next() { count = count + 1; return count; }
+                return next;
+            }
+            var tick = counter();
+            tick();
+            var loop = Shape("loop");
+            loop.self = loop;
+            var now = clock;
+            """;
+
+    private static final String SCRIPT = """
+            print tick();
+            print tick();
+            print loop.self.self.name;
+            print Square(4).describe();
+            print now() > 0;
+            var square = Square(2);
+            print square.describe;
+            print square.describe();
+            """;
+
+    @Test
+    void when_restoresSnapshotOfPrelude_scriptProducesSameOutputAsAfterRunningPrelude() {
+        ByteArrayOutputStream preludeOutput = new ByteArrayOutputStream();
+        Interpreter prelude = new Interpreter(preludeOutput);
+        interpret(PRELUDE, prelude);
+        byte[] snapshot = SnapshotWriter.write(prelude);
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        SnapshotReader.restore(ByteBuffer.wrap(snapshot), interpreter);
+        interpret(SCRIPT, interpreter);
+
+        assertEquals(TestScripts.run(PRELUDE + SCRIPT), outStream.toString(StandardCharsets.UTF_8));
+        assertEquals("2\n3\nloop\nsquare 16.0\ntrue\n<fn describe>\nsquare 4.0\n", outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_preludeKeepsArrays_restoresNumbersAndElementsOfEveryKind() {
+        String prelude = """
+                var table = filled(3, 1);
+                table[1] = 2.5;
+                var mixed = array();
+                push(mixed, "a");
+                push(mixed, table);
+                push(mixed, mixed);
+                push(mixed, nil);
+                var empty = array();
+                """;
+        String script = """
+                print table;
+                print mixed;
+                print length(empty);
+                push(table, 4);
+                print mixed[1];
+                print mixed[2] == mixed;
+                mixed[0] = 7;
+                print mixed[0] + table[3];
+                """;
+
+        Interpreter preludeInterpreter = new Interpreter(new ByteArrayOutputStream());
+        interpret(prelude, preludeInterpreter);
+        byte[] snapshot = SnapshotWriter.write(preludeInterpreter);
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        SnapshotReader.restore(ByteBuffer.wrap(snapshot), interpreter);
+        interpret(script, interpreter);
+
+        assertEquals(TestScripts.run(prelude + script), outStream.toString(StandardCharsets.UTF_8));
+        assertEquals("[1, 2.5, 1]\n[a, [1, 2.5, 1], [...], nil]\n0\n[1, 2.5, 1, 4]\ntrue\n11\n",
+                outStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void when_snapshotRefersToMissingNativeFunction_refusesToRestoreIt() {
+        Interpreter prelude = new Interpreter(new ByteArrayOutputStream());
+        prelude.addFunction(new NativeFunction("answer", 0) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return 42.0;
+            }
+        });
+        interpret("var alias = answer;", prelude);
+        byte[] snapshot = SnapshotWriter.write(prelude);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SnapshotReader.restore(ByteBuffer.wrap(snapshot), new Interpreter(new ByteArrayOutputStream())));
+    }
+
+    private static void interpret(@NotNull String script, @NotNull Interpreter interpreter) {
+        TestScripts.interpret(TestScripts.parse(script), interpreter);
+    }
+}
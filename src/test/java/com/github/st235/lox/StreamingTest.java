@@ -0,0 +1,48 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamingTest {
+
+    @Test
+    void when_syntaxErrorComesLate_runsEveryStatementBeforeIt() {
+        StringBuilder script = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            script.append("print ").append(i).append(";\n");
+            expected.append(i).append('\n');
+        }
+        script.append("print ;\n");
+        script.append("print \"unreachable\";\n");
+
+        assertEquals(expected.toString(), run(script.toString()));
+    }
+
+    @Test
+    void when_errorFollowsStatementOnSameLine_runsStatementOnly() {
+        assertEquals("1\n", run("print 1; @\nprint 2;\n"));
+    }
+
+    @Test
+    void when_statementHasError_doesNotRunIt() {
+        assertEquals("1\n", run("print 1;\nprint 2 = 3;\nprint 4;\n"));
+    }
+
+    @NotNull
+    private static String run(@NotNull String script) {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+
+        Lox.runStreaming(new StringReader(script), interpreter);
+
+        interpreter.flush();
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+}
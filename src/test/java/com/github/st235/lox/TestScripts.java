@@ -0,0 +1,60 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads scripts from the test resources and runs them, for the tests of every mode.
+ */
+final class TestScripts {
+
+    private TestScripts() {
+    }
+
+    @NotNull
+    static String read(@NotNull String filename) {
+        ClassLoader classLoader = TestScripts.class.getClassLoader();
+        try (InputStream fileStream = classLoader.getResourceAsStream(filename)) {
+            return new String(fileStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @NotNull
+    static List<Stmt> parse(@NotNull String script) {
+        return new Parser(new Scanner(script).scan()).parse();
+    }
+
+    @NotNull
+    static String run(@NotNull String script) {
+        return run(script, interpreter -> {});
+    }
+
+    /**
+     * Runs the script in a new interpreter.
+     *
+     * @param setUp prepares the interpreter before the script runs, e.g. enables tiering.
+     * @return whatever the script has printed.
+     */
+    @NotNull
+    static String run(@NotNull String script, @NotNull Consumer<Interpreter> setUp) {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        Interpreter interpreter = new Interpreter(outStream);
+        setUp.accept(interpreter);
+        interpret(parse(script), interpreter);
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+
+    static void interpret(@NotNull List<Stmt> statements, @NotNull Interpreter interpreter) {
+        interpreter.resolve(new Resolver().resolve(statements));
+        interpreter.interpret(statements);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.st235.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TieringTest {
+
+    @Test
+    void when_loopIsReplacedOnStack_continuesInSameEnvironmentAndReturnsFromFunction() {
+        String script = """
+                class Counter {
+                    init(start) {
+                        this.count = start;
+                        while (this.count < 100) {
+                            this.count = this.count + 1;
+                            if (this.count == 50) return;
+                        }
+                    }
+                }
+                fun find(limit) {
+                    var seen = "";
+                    var i = 0;
+                    while (true) {
+                        i = i + 1;
+                        if (i < 4) seen = seen + i;
+                        if (i > limit) return seen + " " + i;
+                    }
+                }
+                print find(30);
+                print Counter(0).count;
+                print Counter(60).count;
+                var j = 0;
+                while (j < 25) j = j + 1;
+                print j;
+                """;
+
+        String expected = "1.02.03.0 31.0\n50\n100\n25\n";
+        assertEquals(expected, TestScripts.run(script));
+        assertEquals(expected, TestScripts.run(script, interpreter -> interpreter.enableTiering(new Tiering(2, 10))));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.st235.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TracingTest {
+
+    @Test
+    void when_recordedBranchesTypesAndCalleesChange_leavesTraceAndKeepsSemantics() {
+        String script = """
+                fun twice(x) { return x * 2; }
+                fun thrice(x) { return x * 3; }
+                fun count(limit) {
+                    var i = 0;
+                    var sum = 0;
+                    var label = 0;
+                    var f = twice;
+                    while (i < limit) {
+                        i = i + 1;
+                        if (i > 5) {
+                            f = thrice;
+                            var skipped = i / 2;
+                        } else {
+                            sum = sum + f(i);
+                        }
+                        if (i == 8) label = "at" + label;
+                        if (i == 9) return sum + " " + label + " " + f(i);
+                    }
+                    return "never";
+                }
+                print count(100);
+                var k = 0;
+                var seen = "";
+                while (k < 300) {
+                    k = k + 1;
+                    if (k > 3 and k < 6) seen = seen + k;
+                }
+                print seen + " " + k;
+                """;
+
+        String expected = "30.0 at0.0 27.0\n4.05.0 300.0\n";
+        assertEquals(expected, TestScripts.run(script));
+        assertEquals(expected, TestScripts.run(script, interpreter -> interpreter.enableTracing(new Tracing(1))));
+        assertEquals(expected, TestScripts.run(script, interpreter -> interpreter.enableTracing(new Tracing(3))));
+    }
+}
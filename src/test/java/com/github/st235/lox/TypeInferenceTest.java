@@ -0,0 +1,107 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TypeInferenceTest {
+
+    @Test
+    void when_localsOnlyHoldNumbers_findsNumericOperations() {
+        assertEquals(List.of("<@3", "+@4", "*@4", "-@5", "+@3"), numericOperations("""
+                {
+                    var sum = 0;
+                    for (var i = 0; i < 10; i = i + 1) {
+                        sum = sum + i * 2;
+                        print -sum;
+                    }
+                }
+                """));
+    }
+
+    @Test
+    void when_typesDependOnFlow_followsAssignmentsBranchesAndLoops() {
+        assertEquals(List.of("*@5", "-@6"), numericOperations("""
+                {
+                    var a = 1;
+                    if (clock()) a = "one";
+                    print a + 1;
+                    a = 2 * 2;
+                    print a - 1;
+                    var b = 1;
+                    while (b != nil) {
+                        print b - 1;
+                        b = nil;
+                    }
+                }
+                """));
+    }
+
+    @Test
+    void when_valuesComeFromOutside_doesNotTrustGlobalsParametersAndCapturedAssignments() {
+        assertEquals(List.of("+@8", "*@11"), numericOperations("""
+                var g = 1;
+                print g + 1;
+                fun f(x) { return x * 2; }
+                {
+                    var a = 1;
+                    var c = 1;
+                    fun set() { a = "s"; }
+                    fun get() { return c + 1; }
+                    set();
+                    print a - 1;
+                    print c * 3;
+                }
+                """));
+    }
+
+    @Test
+    void when_operationsAreNumeric_producesSameOutputAndErrors() {
+        String script = """
+                {
+                    var x = 10;
+                    var y = 0;
+                    print x / 4 + 1;
+                    print -(x - 1);
+                    print x <= 3 * 3;
+                    print x / y;
+                    print "never";
+                }
+                """;
+
+        assertEquals("3.5\n-9\nfalse\n", run(script, true));
+        assertEquals("3.5\n-9\nfalse\n", run(script, false));
+    }
+
+    /**
+     * @return numeric operations in pre-order, as their operators and lines.
+     */
+    @NotNull
+    private static List<String> numericOperations(@NotNull String script) {
+        List<Stmt> statements = new Parser(new Scanner(script).scan()).parse();
+        Set<Expr> numeric = TypeInference.numericOperations(statements, new Resolver().resolve(statements).depths());
+
+        return ProfileWriter.expressionsOf(statements).stream()
+                .filter(numeric::contains)
+                .map(expression -> {
+                    Token.Type operator = expression instanceof Expr.Binary binary
+                            ? binary.operator
+                            : ((Expr.Unary) expression).operator;
+                    return Scanner.lexemeOf(operator) + "@" + expression.line;
+                })
+                .toList();
+    }
+
+    @NotNull
+    private static String run(@NotNull String script, boolean infersTypes) {
+        return TestScripts.run(script, interpreter -> {
+            if (!infersTypes) {
+                interpreter.disableTypeInference();
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.st235.lox;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VirtualMachineTest {
+
+    @Test
+    void when_runsSuperinstructions_producesSameOutputAsInterpreter() {
+        String script = """
+                class Point {
+                    init(x) { this.x = x; }
+                    shifted() { return this.x + 1; }
+                }
+                var total = "total: ";
+                print total;
+                {
+                    var i = 0;
+                    var limit = 3;
+                    var text = "a";
+                    while (i < limit) {
+                        print i;
+                        i = i + 1;
+                        text = text + 2;
+                    }
+                    print text;
+                    print i < 10;
+                    print Point(i).shifted();
+                    print (i = i + 0.5) < 3;
+                }
+                """;
+
+        String expected = "total: \n0\n1\n2\na2.02.02.0\ntrue\n4\nfalse\n";
+        assertEquals(expected, run(Image.load(ByteBuffer.wrap(compile(script, true)))));
+        assertEquals(expected, run(Image.load(ByteBuffer.wrap(compile(script, false)))));
+    }
+
+    @Test
+    void when_runtimeErrorHappensInsideOfFunction_reportsLineOfTheInstruction() {
+        Image image = Image.load(ByteBuffer.wrap(compile("""
+                fun subtract(a, b) {
+                    var difference = a;
+
+                    return difference -
+                        b;
+                }
+                print subtract(3, 2);
+                print subtract(1, "two");
+                """)));
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        RuntimeError error = assertThrows(RuntimeError.class,
+                () -> VirtualMachine.run(new Interpreter(outStream), image));
+
+        assertEquals("1\n", outStream.toString(StandardCharsets.UTF_8));
+        assertEquals(4, error.line);
+        assertEquals("Operand must be a number.", error.getMessage());
+    }
+
+    private static byte @NotNull [] compile(@NotNull String source) {
+        return compile(source, true);
+    }
+
+    private static byte @NotNull [] compile(@NotNull String source, boolean fusesInstructions) {
+        List<Stmt> statements = TestScripts.parse(source);
+        return BytecodeCompiler.compile(statements, new Resolver().resolve(statements), fusesInstructions);
+    }
+
+    @NotNull
+    private static String run(@NotNull Image image) {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        new Interpreter(outStream).interpret(image);
+        return outStream.toString(StandardCharsets.UTF_8);
+    }
+}